@@ -0,0 +1,65 @@
+package com.dws.challenge.loadtest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigDecimal;
+import java.net.URI;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.service.AccountsService;
+
+/**
+ * Runs every load scenario over HTTP against the application on a random
+ * local port, through Jackson, validation, the controller, the service and
+ * the notifications, and fails the scenarios that miss their SLO.
+ *
+ * Per-account rate and velocity limits are disabled, as they would reject
+ * most of a synthetic load on few accounts.
+ */
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT, properties = { "transfer.rate-limit.enabled=false",
+		"transfer.velocity.enabled=false" })
+class AccountsLoadTest {
+
+	private static final BigDecimal INITIAL_BALANCE = new BigDecimal(1_000_000_000_000L);
+
+	@LocalServerPort
+	private int port;
+
+	@Autowired
+	private AccountsService accountsService;
+
+	static Stream<Arguments> scenarios() {
+		return LoadScenarios.selected().stream().map(scenario -> Arguments.of(scenario.getName(), scenario));
+	}
+
+	@ParameterizedTest(name = "{0}")
+	@MethodSource("scenarios")
+	void meets_slo(String name, Scenario scenario) throws Exception {
+		LoadDriver driver = new LoadDriver(URI.create("http://localhost:" + port), scenario,
+				"LT-" + name + "-" + System.nanoTime() + "-");
+		accountsService.getAccountsRepository().clearAccounts();
+		for (int i = 0; i < scenario.getAccounts(); i++) {
+			accountsService.createAccount(new Account(driver.accountId(i), INITIAL_BALANCE));
+		}
+
+		LoadReport report = driver.run();
+		report.print(System.out);
+		Path reportDir = Paths.get(System.getProperty("loadtest.report-dir", "build/reports/loadtest"));
+		System.out.println("Latency distribution written to " + report.write(reportDir));
+		assertThat(report.violations()).as("SLO of load scenario " + name).isEmpty();
+	}
+}
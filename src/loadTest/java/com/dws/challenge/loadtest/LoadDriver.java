@@ -0,0 +1,190 @@
+package com.dws.challenge.loadtest;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Drives an open-model load: requests are sent at a constant arrival rate
+ * whether or not earlier ones have completed, as independent clients would.
+ *
+ * Every request has an intended send time on the arrival schedule, and its
+ * latency is taken from that time rather than from the actual send. A
+ * stalled server, or a stalled generator, is thereby charged for the time
+ * the requests behind it waited, instead of hiding it (coordinated
+ * omission). A request not sent because too many are outstanding is charged
+ * from its intended send time to the end of the run. Requests of the warmup
+ * are sent but not measured.
+ */
+@Slf4j
+public class LoadDriver {
+
+	private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.MINUTES.toMicros(1);
+
+	private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+
+	private final URI baseUri;
+
+	private final Scenario scenario;
+
+	private final String accountPrefix;
+
+	private final HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1)
+			.connectTimeout(Duration.ofSeconds(5)).build();
+
+	private final Histogram latency = new ConcurrentHistogram(HIGHEST_TRACKABLE_MICROS, 3);
+
+	private final LongAdder sent = new LongAdder();
+
+	private final LongAdder succeeded = new LongAdder();
+
+	private final LongAdder rejected = new LongAdder();
+
+	private final LongAdder errors = new LongAdder();
+
+	private final LongAdder dropped = new LongAdder();
+
+	/**
+	 * Intended send times of the dropped requests, only written by the thread
+	 * running the schedule.
+	 */
+	private long[] droppedIntendedNanos = new long[64];
+
+	public LoadDriver(URI baseUri, Scenario scenario, String accountPrefix) {
+		this.baseUri = baseUri;
+		this.scenario = scenario;
+		this.accountPrefix = accountPrefix;
+	}
+
+	public LoadReport run() throws InterruptedException {
+		Semaphore outstanding = new Semaphore(scenario.getMaxOutstanding());
+		double intervalNanos = TimeUnit.SECONDS.toNanos(1) / (double) scenario.getRatePerSecond();
+		long startNanos = System.nanoTime();
+		long measureFromNanos = startNanos + scenario.getWarmup().toNanos();
+		long endNanos = measureFromNanos + scenario.getDuration().toNanos();
+		log.info("Running load scenario {} at {}/s", scenario.getName(), scenario.getRatePerSecond());
+
+		for (long i = 0;; i++) {
+			long intendedNanos = startNanos + (long) (i * intervalNanos);
+			if (intendedNanos >= endNanos) {
+				break;
+			}
+			long waitNanos;
+			while ((waitNanos = intendedNanos - System.nanoTime()) > 0) {
+				LockSupport.parkNanos(waitNanos);
+			}
+			boolean measured = intendedNanos >= measureFromNanos;
+			if (!outstanding.tryAcquire()) {
+				if (measured) {
+					dropped(intendedNanos);
+				}
+				continue;
+			}
+			if (measured) {
+				sent.increment();
+			}
+			client.sendAsync(nextRequest(), HttpResponse.BodyHandlers.discarding()).whenComplete((response, failure) -> {
+				try {
+					if (measured) {
+						record(intendedNanos, response, failure);
+					}
+				} finally {
+					outstanding.release();
+				}
+			});
+		}
+		double measuredSeconds = (System.nanoTime() - measureFromNanos) / (double) TimeUnit.SECONDS.toNanos(1);
+		if (!outstanding.tryAcquire(scenario.getMaxOutstanding(), REQUEST_TIMEOUT.toSeconds() + 5, TimeUnit.SECONDS)) {
+			log.warn("Requests of load scenario {} still in flight after the timeout", scenario.getName());
+		}
+		long runEndNanos = System.nanoTime();
+		for (int i = 0; i < dropped.intValue(); i++) {
+			recordLatency(runEndNanos - droppedIntendedNanos[i]);
+		}
+		return LoadReport.builder().scenario(scenario).latency(latency.copy()).sent(sent.sum())
+				.succeeded(succeeded.sum()).rejected(rejected.sum()).errors(errors.sum()).dropped(dropped.sum())
+				.achievedRatePerSecond((sent.sum() + dropped.sum()) / measuredSeconds).build();
+	}
+
+	private void dropped(long intendedNanos) {
+		int count = dropped.intValue();
+		if (count == droppedIntendedNanos.length) {
+			droppedIntendedNanos = Arrays.copyOf(droppedIntendedNanos, count * 2);
+		}
+		droppedIntendedNanos[count] = intendedNanos;
+		dropped.increment();
+	}
+
+	private void record(long intendedNanos, HttpResponse<Void> response, Throwable failure) {
+		recordLatency(System.nanoTime() - intendedNanos);
+		if (failure != null) {
+			errors.increment();
+			return;
+		}
+		int status = response.statusCode();
+		if (status >= 200 && status < 300) {
+			succeeded.increment();
+		} else if (status == 409 || status == 406) {
+			// busy account or insufficient balance
+			rejected.increment();
+		} else {
+			errors.increment();
+		}
+	}
+
+	private void recordLatency(long nanos) {
+		latency.recordValue(Math.min(TimeUnit.NANOSECONDS.toMicros(nanos), HIGHEST_TRACKABLE_MICROS));
+	}
+
+	private HttpRequest nextRequest() {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		if (random.nextDouble() < scenario.getReadShare()) {
+			return HttpRequest.newBuilder(baseUri.resolve("/v1/accounts/" + accountId(pickAccount(random))))
+					.timeout(REQUEST_TIMEOUT).GET().build();
+		}
+		int from;
+		int to;
+		if (scenario.getCrossPairs() > 0) {
+			int pair = random.nextInt(scenario.getCrossPairs());
+			boolean forward = random.nextBoolean();
+			from = 2 * pair + (forward ? 0 : 1);
+			to = 2 * pair + (forward ? 1 : 0);
+		} else {
+			from = pickAccount(random);
+			do {
+				to = pickAccount(random);
+			} while (to == from);
+		}
+		String body = "{\"fromAccountId\":\"" + accountId(from) + "\",\"toAccountId\":\"" + accountId(to)
+				+ "\",\"balance\":" + random.nextInt(1, 100) + "}";
+		return HttpRequest.newBuilder(baseUri.resolve("/v1/accounts/transferAmount")).timeout(REQUEST_TIMEOUT)
+				.header("Content-Type", "application/json").POST(HttpRequest.BodyPublishers.ofString(body)).build();
+	}
+
+	/**
+	 * Hot accounts are the first {@link Scenario#getHotAccounts()} accounts.
+	 */
+	private int pickAccount(ThreadLocalRandom random) {
+		if (scenario.getHotAccounts() > 0 && random.nextDouble() < scenario.getHotShare()) {
+			return random.nextInt(scenario.getHotAccounts());
+		}
+		return random.nextInt(scenario.getAccounts());
+	}
+
+	public String accountId(int account) {
+		return accountPrefix + account;
+	}
+}
@@ -0,0 +1,115 @@
+package com.dws.challenge.loadtest;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.HdrHistogram.Histogram;
+
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * Outcome of one scenario run, latencies in microseconds from the intended
+ * send time of each request.
+ */
+@Value
+@Builder
+public class LoadReport {
+
+	private static final double MICROS_PER_MILLI = 1000.0;
+
+	private final Scenario scenario;
+
+	private final Histogram latency;
+
+	private final long sent;
+
+	private final long succeeded;
+
+	/**
+	 * Busy accounts and insufficient balances.
+	 */
+	private final long rejected;
+
+	private final long errors;
+
+	/**
+	 * Due while {@link Scenario#getMaxOutstanding()} requests were in flight,
+	 * not sent and counted as errors; their latency is recorded up to the end
+	 * of the run.
+	 */
+	private final long dropped;
+
+	private final double achievedRatePerSecond;
+
+	public double percentileMillis(double percentile) {
+		return latency.getValueAtPercentile(percentile) / MICROS_PER_MILLI;
+	}
+
+	public double errorRate() {
+		long total = sent + dropped;
+		return total == 0 ? 0 : (double) (errors + dropped) / total;
+	}
+
+	public double rejectionRate() {
+		return sent == 0 ? 0 : (double) rejected / sent;
+	}
+
+	/**
+	 * @return one line per missed SLO threshold, empty if the run passed
+	 */
+	public List<String> violations() {
+		List<String> violations = new ArrayList<>();
+		check(violations, "p50", percentileMillis(50), scenario.getP50Millis());
+		check(violations, "p99", percentileMillis(99), scenario.getP99Millis());
+		check(violations, "p99.9", percentileMillis(99.9), scenario.getP999Millis());
+		if (errorRate() > scenario.getMaxErrorRate()) {
+			violations.add(String.format("error rate %.4f above %.4f", errorRate(), scenario.getMaxErrorRate()));
+		}
+		if (rejectionRate() > scenario.getMaxRejectionRate()) {
+			violations.add(String.format("rejection rate %.4f above %.4f", rejectionRate(),
+					scenario.getMaxRejectionRate()));
+		}
+		if (achievedRatePerSecond < scenario.getRatePerSecond() * 0.95) {
+			violations.add(String.format("achieved %.0f/s of %d/s, the load generator fell behind",
+					achievedRatePerSecond, scenario.getRatePerSecond()));
+		}
+		return violations;
+	}
+
+	private static void check(List<String> violations, String name, double actualMillis, double maxMillis) {
+		if (actualMillis > maxMillis) {
+			violations.add(String.format("%s latency %.2f ms above %.2f ms", name, actualMillis, maxMillis));
+		}
+	}
+
+	public void print(PrintStream out) {
+		List<String> violations = violations();
+		out.printf("%n== %s: %s at %.0f/s of %d/s for %s%n", scenario.getName(), violations.isEmpty() ? "PASS" : "FAIL",
+				achievedRatePerSecond, scenario.getRatePerSecond(), scenario.getDuration());
+		out.printf("requests %d, succeeded %d, rejected %d, errors %d, dropped %d%n", sent, succeeded, rejected, errors,
+				dropped);
+		out.printf("latency ms p50 %.2f (<= %.2f), p90 %.2f, p99 %.2f (<= %.2f), p99.9 %.2f (<= %.2f), max %.2f%n",
+				percentileMillis(50), scenario.getP50Millis(), percentileMillis(90), percentileMillis(99),
+				scenario.getP99Millis(), percentileMillis(99.9), scenario.getP999Millis(),
+				latency.getMaxValue() / MICROS_PER_MILLI);
+		violations.forEach(violation -> out.println("SLO missed: " + violation));
+	}
+
+	/**
+	 * Writes the percentile distribution in milliseconds, e.g. for the
+	 * HdrHistogram plotter.
+	 */
+	public Path write(Path directory) throws IOException {
+		Files.createDirectories(directory);
+		Path file = directory.resolve(scenario.getName() + ".hgrm");
+		try (PrintStream out = new PrintStream(Files.newOutputStream(file), false, "UTF-8")) {
+			latency.outputPercentileDistribution(out, MICROS_PER_MILLI);
+		}
+		return file;
+	}
+}
@@ -0,0 +1,51 @@
+package com.dws.challenge.loadtest;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * The scenarios run by {@code gradlew loadTest}. Rates and SLOs are sized
+ * for a developer machine; {@code -Ploadtest.rate-scale},
+ * {@code -Ploadtest.duration-seconds} and {@code -Ploadtest.scenarios}
+ * adjust a run.
+ */
+public final class LoadScenarios {
+
+	private LoadScenarios() {
+	}
+
+	public static List<Scenario> all() {
+		return List.of(
+				// most transfers touch a handful of accounts, so many find them locked
+				Scenario.builder().name("skewed-hot-accounts").ratePerSecond(400).hotAccounts(10).hotShare(0.8)
+						.readShare(0.1).maxRejectionRate(0.3).build(),
+				// pairs of accounts paying each other, the pattern lock ordering must survive
+				Scenario.builder().name("cross-transfers").ratePerSecond(300).crossPairs(5).maxRejectionRate(0.2)
+						.build(),
+				// balance reads with some uniformly spread transfers
+				Scenario.builder().name("read-heavy").ratePerSecond(1000).readShare(0.9).p50Millis(5).build());
+	}
+
+	/**
+	 * @return the scenarios named by {@code loadtest.scenarios}, all if unset,
+	 *         scaled by {@code loadtest.rate-scale} and
+	 *         {@code loadtest.duration-seconds}
+	 */
+	public static List<Scenario> selected() {
+		String names = System.getProperty("loadtest.scenarios");
+		Set<String> selected = names == null || names.isBlank() ? null
+				: Arrays.stream(names.split(",")).map(String::trim).collect(Collectors.toSet());
+		double rateScale = Double.parseDouble(System.getProperty("loadtest.rate-scale", "1"));
+		String durationSeconds = System.getProperty("loadtest.duration-seconds");
+		Duration duration = durationSeconds != null ? Duration.ofSeconds(Long.parseLong(durationSeconds)) : null;
+		List<Scenario> scenarios = all().stream()
+				.filter(scenario -> selected == null || selected.contains(scenario.getName())).map(scenario -> scenario.scaled(rateScale, duration)).collect(Collectors.toList());
+		if (scenarios.isEmpty()) {
+			throw new IllegalArgumentException("No load scenario named " + names + ".");
+		}
+		return scenarios;
+	}
+}
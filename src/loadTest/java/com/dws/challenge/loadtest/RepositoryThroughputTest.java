@@ -0,0 +1,145 @@
+package com.dws.challenge.loadtest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import com.dws.challenge.config.JdbcRepositoryProperties;
+import com.dws.challenge.config.JdbcRepositoryProperties.WriteMode;
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.repository.AccountsRepository;
+import com.dws.challenge.repository.AccountsRepositoryInMemory;
+import com.dws.challenge.repository.AccountsRepositoryJdbc;
+
+/**
+ * Compares the update throughput of the in-memory repository with the JDBC
+ * repository in each write mode, on an embedded H2 database. Every thread
+ * updates its own range of accounts, like transfers holding the account
+ * locks would; each repository gets a warmup round before the measured one.
+ *
+ * The updates per second are printed and written to
+ * {@code repository-throughput.txt} in the report directory. The run fails
+ * if write behind, which keeps the database off the update path, is not
+ * faster than writing every update through.
+ */
+class RepositoryThroughputTest {
+
+	private static final int ACCOUNTS = 10000;
+
+	private static final int THREADS = 4;
+
+	private static final int UPDATES_PER_THREAD = Integer
+			.parseInt(System.getProperty("loadtest.repository-updates-per-thread", "25000"));
+
+	@Test
+	void compares_update_throughput() throws Exception {
+		Map<String, Double> opsPerSecond = new LinkedHashMap<>();
+		opsPerSecond.put("in-memory", measure(AccountsRepositoryInMemory::new));
+		for (WriteMode writeMode : WriteMode.values()) {
+			EmbeddedDatabase database = new EmbeddedDatabaseBuilder().setType(EmbeddedDatabaseType.H2)
+					.setName("throughput-" + UUID.randomUUID()).build();
+			List<AccountsRepositoryJdbc> repositories = new ArrayList<>();
+			try {
+				opsPerSecond.put(writeMode.name().toLowerCase().replace('_', '-'), measure(() -> {
+					JdbcRepositoryProperties properties = new JdbcRepositoryProperties();
+					properties.setWriteMode(writeMode);
+					properties.setCacheSize(ACCOUNTS * 2);
+					AccountsRepositoryJdbc repository = new AccountsRepositoryJdbc(database, properties);
+					repository.start();
+					repository.clearAccounts();
+					repositories.add(repository);
+					return repository;
+				}));
+			} finally {
+				repositories.forEach(AccountsRepositoryJdbc::stop);
+				database.shutdown();
+			}
+		}
+
+		report(opsPerSecond, System.out);
+		Path reportDir = Paths.get(System.getProperty("loadtest.report-dir", "build/reports/loadtest"));
+		Files.createDirectories(reportDir);
+		try (PrintStream out = new PrintStream(
+				Files.newOutputStream(reportDir.resolve("repository-throughput.txt")), false, "UTF-8")) {
+			report(opsPerSecond, out);
+		}
+		assertThat(opsPerSecond.get("write-behind")).as("write-behind updates per second")
+				.isGreaterThan(opsPerSecond.get("write-through"));
+	}
+
+	private static void report(Map<String, Double> opsPerSecond, PrintStream out) {
+		out.printf("%n== repository update throughput, %d threads x %d updates%n", THREADS, UPDATES_PER_THREAD);
+		opsPerSecond.forEach((repository, ops) -> out.printf("%-14s %,12.0f updates/s%n", repository, ops));
+	}
+
+	private interface RepositoryFactory {
+
+		AccountsRepository create() throws Exception;
+	}
+
+	/**
+	 * @return updates per second of the measured round
+	 */
+	private static double measure(RepositoryFactory factory) throws Exception {
+		updateConcurrently(factory.create());
+		return updateConcurrently(factory.create());
+	}
+
+	private static double updateConcurrently(AccountsRepository repository) throws Exception {
+		for (int i = 0; i < ACCOUNTS; i++) {
+			repository.createAccount(new Account("Id-RT" + i, BigDecimal.ZERO));
+		}
+		if (repository instanceof AccountsRepositoryJdbc) {
+			((AccountsRepositoryJdbc) repository).flush();
+		}
+		int accountsPerThread = ACCOUNTS / THREADS;
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		List<Future<?>> futures = new ArrayList<>();
+		long startNanos = System.nanoTime();
+		for (int t = 0; t < THREADS; t++) {
+			int first = t * accountsPerThread;
+			futures.add(executor.submit(() -> {
+				for (int i = 0; i < UPDATES_PER_THREAD; i++) {
+					int index = first + ThreadLocalRandom.current().nextInt(accountsPerThread);
+					Account account = repository.getAccount("Id-RT" + index);
+					account.setBalance(account.getBalance().add(BigDecimal.ONE));
+					repository.updateAccount(account);
+				}
+			}));
+		}
+		for (Future<?> future : futures) {
+			future.get(5, TimeUnit.MINUTES);
+		}
+		double seconds = (System.nanoTime() - startNanos) / (double) TimeUnit.SECONDS.toNanos(1);
+		executor.shutdown();
+
+		if (repository instanceof AccountsRepositoryJdbc) {
+			((AccountsRepositoryJdbc) repository).flush();
+		}
+		BigDecimal total = repository.getAccounts().stream().map(Account::getBalance).reduce(BigDecimal.ZERO,
+				BigDecimal::add);
+		assertThat(total).isEqualByComparingTo(new BigDecimal(THREADS * UPDATES_PER_THREAD));
+		repository.clearAccounts();
+		return THREADS * UPDATES_PER_THREAD / seconds;
+	}
+}
@@ -0,0 +1,89 @@
+package com.dws.challenge.loadtest;
+
+import java.time.Duration;
+
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * Definition of one load scenario: the arrival rate, the request mix, how
+ * the accounts are picked and the latency SLO the run must meet.
+ */
+@Value
+@Builder(toBuilder = true)
+public class Scenario {
+
+	private final String name;
+
+	@Builder.Default
+	private final int ratePerSecond = 100;
+
+	@Builder.Default
+	private final Duration warmup = Duration.ofSeconds(5);
+
+	@Builder.Default
+	private final Duration duration = Duration.ofSeconds(20);
+
+	@Builder.Default
+	private final int accounts = 1000;
+
+	/**
+	 * Share of balance reads, the rest are transfers.
+	 */
+	private final double readShare;
+
+	private final int hotAccounts;
+
+	/**
+	 * Share of account picks that go to the hot accounts.
+	 */
+	private final double hotShare;
+
+	/**
+	 * Number of account pairs transferring to each other in both directions,
+	 * 0 to pick both accounts independently.
+	 */
+	private final int crossPairs;
+
+	/**
+	 * Requests in flight at most; a request due while the limit is reached is
+	 * counted as an error rather than delayed, and its latency runs until the
+	 * end of the run.
+	 */
+	@Builder.Default
+	private final int maxOutstanding = 1000;
+
+	@Builder.Default
+	private final double p50Millis = 10;
+
+	@Builder.Default
+	private final double p99Millis = 50;
+
+	@Builder.Default
+	private final double p999Millis = 200;
+
+	/**
+	 * Share of requests that may fail with a server error, a transport error
+	 * or the outstanding limit. Busy and insufficient balance rejections are
+	 * regular outcomes and reported separately.
+	 */
+	@Builder.Default
+	private final double maxErrorRate = 0.001;
+
+	/**
+	 * Share of requests that may be rejected as busy or for an insufficient
+	 * balance. Rejections answer fast and would otherwise pass the latency
+	 * SLO for a run that transferred little.
+	 */
+	@Builder.Default
+	private final double maxRejectionRate = 0.05;
+
+	/**
+	 * Used to run the scenario at a different rate or for a different time,
+	 * e.g. from the command line.
+	 */
+	public Scenario scaled(double rateScale, Duration newDuration) {
+		return toBuilder().ratePerSecond(Math.max(1, (int) Math.round(ratePerSecond * rateScale)))
+				.duration(newDuration != null ? newDuration : duration).build();
+	}
+}
@@ -0,0 +1,44 @@
+package com.dws.challenge.audit;
+
+import java.math.BigDecimal;
+
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * Result of one money conservation verification.
+ */
+@Value
+@Builder(toBuilder = true)
+public class AuditReport {
+
+	/**
+	 * Total of all balances according to the committed creations and
+	 * adjustments.
+	 */
+	private final BigDecimal expectedTotal;
+
+	/**
+	 * Total of all balances in the repository, corrected to one point in time.
+	 */
+	private final BigDecimal observedTotal;
+
+	/**
+	 * Observed minus expected total, money created if positive.
+	 */
+	private final BigDecimal drift;
+
+	private final long accounts;
+
+	private final int consecutiveDriftRuns;
+
+	private final boolean alert;
+
+	private final long verifications;
+
+	private final long committedTransfers;
+
+	private final long checkedAtMillis;
+
+	private final long scanMillis;
+}
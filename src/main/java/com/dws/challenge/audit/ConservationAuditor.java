@@ -0,0 +1,307 @@
+package com.dws.challenge.audit;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.dws.challenge.config.AuditProperties;
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.AccountTransfer;
+import com.dws.challenge.repository.AccountsRepository;
+import com.dws.challenge.service.AccountChangeListener;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Continuously checks that transfers neither create nor destroy money.
+ *
+ * The expected total of all balances only changes when an account is created
+ * or a single balance is adjusted; it is kept in striped cells so committing
+ * threads do not contend on one counter. Transfers must leave it unchanged.
+ *
+ * A verification sums the balances of the repository while transfers go on.
+ * Each account is read under a commit stripe lock, which commits of that
+ * account hold around their change (see
+ * {@link AccountChangeListener#beforeCommit(String...)}), so a commit is either
+ * fully before or fully after the read. Commits during the scan that touch a
+ * scanned and an unscanned account record a correction, which brings the sum
+ * back to a single point in time. A drift found by
+ * {@code audit.confirmations} consecutive verifications raises the alert.
+ */
+@Slf4j
+@Component
+public class ConservationAuditor implements AccountChangeListener {
+
+	private static final int COMMIT_STRIPES = 1024;
+
+	/**
+	 * Cells are this many slots apart, so that two cells do not share a cache
+	 * line.
+	 */
+	private static final int CELL_PADDING = 16;
+
+	private final AccountsRepository accountsRepository;
+
+	private final AuditProperties properties;
+
+	private final ReentrantLock[] commitStripes = new ReentrantLock[COMMIT_STRIPES];
+
+	private final int cellMask;
+
+	private final AtomicReferenceArray<BigDecimal> expectedCells;
+
+	private final LongAdder committedTransfers = new LongAdder();
+
+	private final AtomicLong verifications = new AtomicLong();
+
+	private volatile Scan scan;
+
+	private volatile AuditReport lastReport;
+
+	private int consecutiveDriftRuns;
+
+	private ScheduledExecutorService scheduler;
+
+	/**
+	 * Accounts read by the running verification and the correction of commits
+	 * that happened between the reads.
+	 */
+	private static final class Scan {
+
+		private final Set<String> scanned = ConcurrentHashMap.newKeySet();
+
+		private BigDecimal correction = BigDecimal.ZERO;
+
+		private synchronized void correct(BigDecimal amount) {
+			correction = correction.add(amount);
+		}
+
+		private synchronized BigDecimal getCorrection() {
+			return correction;
+		}
+	}
+
+	@Autowired
+	public ConservationAuditor(AccountsRepository accountsRepository, AuditProperties properties) {
+		this.accountsRepository = accountsRepository;
+		this.properties = properties;
+		for (int i = 0; i < COMMIT_STRIPES; i++) {
+			commitStripes[i] = new ReentrantLock();
+		}
+		int cells = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() * 2 - 1)) << 1;
+		this.cellMask = cells - 1;
+		this.expectedCells = new AtomicReferenceArray<>(cells * CELL_PADDING);
+		for (int i = 0; i < cells; i++) {
+			expectedCells.set(i * CELL_PADDING, BigDecimal.ZERO);
+		}
+	}
+
+	@PostConstruct
+	public void start() {
+		if (!properties.isEnabled()) {
+			return;
+		}
+		rebase();
+		scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "conservation-auditor");
+			thread.setDaemon(true);
+			return thread;
+		});
+		scheduler.scheduleWithFixedDelay(this::verifyQuietly, properties.getIntervalMillis(),
+				properties.getIntervalMillis(), TimeUnit.MILLISECONDS);
+	}
+
+	@PreDestroy
+	public void stop() {
+		if (scheduler != null) {
+			scheduler.shutdownNow();
+		}
+	}
+
+	@Override
+	public void beforeCommit(String... accountIds) {
+		if (!properties.isEnabled()) {
+			return;
+		}
+		int[] stripes = stripes(accountIds);
+		for (int i = 0; i < stripes.length; i++) {
+			if (i == 0 || stripes[i] != stripes[i - 1]) {
+				commitStripes[stripes[i]].lock();
+			}
+		}
+	}
+
+	@Override
+	public void afterCommit(String... accountIds) {
+		if (!properties.isEnabled()) {
+			return;
+		}
+		int[] stripes = stripes(accountIds);
+		for (int i = stripes.length - 1; i >= 0; i--) {
+			if (i == 0 || stripes[i] != stripes[i - 1]) {
+				commitStripes[stripes[i]].unlock();
+			}
+		}
+	}
+
+	@Override
+	public void onAccountCreated(Account account) {
+		addExpected(account.getBalance());
+		Scan current = scan;
+		if (current != null && current.scanned.add(account.getAccountId())) {
+			// counted as read at creation, the scan may or may not meet it
+			current.correct(account.getBalance());
+		}
+	}
+
+	@Override
+	public void onTransferCommitted(AccountTransfer accountTransfer, Account fromAccount, Account toAccount) {
+		committedTransfers.increment();
+		Scan current = scan;
+		if (current == null) {
+			return;
+		}
+		boolean fromScanned = current.scanned.contains(fromAccount.getAccountId());
+		boolean toScanned = current.scanned.contains(toAccount.getAccountId());
+		if (fromScanned && !toScanned) {
+			// the scan holds the from balance before and will read the to balance after the transfer
+			current.correct(accountTransfer.getBalance().negate());
+		} else if (!fromScanned && toScanned) {
+			current.correct(accountTransfer.getBalance());
+		}
+	}
+
+	@Override
+	public void onBalanceAdjusted(Account account, BigDecimal delta) {
+		addExpected(delta);
+		Scan current = scan;
+		if (current != null && current.scanned.contains(account.getAccountId())) {
+			current.correct(delta);
+		}
+	}
+
+	/**
+	 * Used to verify the conservation of money once, without blocking
+	 * transfers for longer than the read of a single balance.
+	 */
+	public synchronized AuditReport verify() {
+		long started = System.currentTimeMillis();
+		Scan current = new Scan();
+		scan = current;
+		BigDecimal observed = BigDecimal.ZERO;
+		long accounts = 0;
+		BigDecimal expected;
+		try {
+			for (Account listed : accountsRepository.getAccounts()) {
+				String accountId = listed.getAccountId();
+				ReentrantLock stripe = commitStripes[stripe(accountId)];
+				stripe.lock();
+				try {
+					Account account = accountsRepository.getAccount(accountId);
+					if (account != null && current.scanned.add(accountId)) {
+						observed = observed.add(account.getBalance());
+						accounts++;
+					}
+				} finally {
+					stripe.unlock();
+				}
+			}
+			observed = observed.add(current.getCorrection());
+			expected = expectedTotal();
+		} finally {
+			scan = null;
+		}
+
+		BigDecimal drift = observed.subtract(expected);
+		consecutiveDriftRuns = drift.signum() == 0 ? 0 : consecutiveDriftRuns + 1;
+		boolean alert = consecutiveDriftRuns >= properties.getConfirmations();
+		if (alert && consecutiveDriftRuns == properties.getConfirmations()) {
+			log.error("Money conservation violated: observed total {} expected {}, drift {}", observed, expected, drift);
+		}
+		AuditReport report = AuditReport.builder().expectedTotal(expected).observedTotal(observed).drift(drift)
+				.accounts(accounts).consecutiveDriftRuns(consecutiveDriftRuns).alert(alert)
+				.verifications(verifications.incrementAndGet()).committedTransfers(committedTransfers.sum())
+				.checkedAtMillis(started).scanMillis(System.currentTimeMillis() - started).build();
+		lastReport = report;
+		return report;
+	}
+
+	/**
+	 * Used to accept the current balances as the expected total, e.g. after
+	 * accounts were removed or a drift was investigated.
+	 */
+	public synchronized AuditReport rebase() {
+		AuditReport report = verify();
+		addExpected(report.getDrift());
+		consecutiveDriftRuns = 0;
+		log.info("Money conservation auditor rebased to a total of {} over {} accounts", report.getObservedTotal(),
+				report.getAccounts());
+		AuditReport rebased = report.toBuilder().expectedTotal(report.getObservedTotal()).drift(BigDecimal.ZERO)
+				.consecutiveDriftRuns(0).alert(false).build();
+		lastReport = rebased;
+		return rebased;
+	}
+
+	/**
+	 * @return the latest verification, null before the first one
+	 */
+	public AuditReport getLastReport() {
+		return lastReport;
+	}
+
+	private void verifyQuietly() {
+		try {
+			verify();
+		} catch (RuntimeException e) {
+			log.error("Money conservation verification failed", e);
+		}
+	}
+
+	private void addExpected(BigDecimal amount) {
+		int index = ((int) Thread.currentThread().getId() & cellMask) * CELL_PADDING;
+		BigDecimal current;
+		do {
+			current = expectedCells.get(index);
+		} while (!expectedCells.compareAndSet(index, current, current.add(amount)));
+	}
+
+	private BigDecimal expectedTotal() {
+		BigDecimal total = BigDecimal.ZERO;
+		for (int i = 0; i <= cellMask; i++) {
+			total = total.add(expectedCells.get(i * CELL_PADDING));
+		}
+		return total;
+	}
+
+	private static int stripe(String accountId) {
+		int hash = accountId.hashCode();
+		return (hash ^ (hash >>> 16)) & (COMMIT_STRIPES - 1);
+	}
+
+	/**
+	 * @return the stripes of the accounts in ascending order, the order in
+	 *         which they are locked
+	 */
+	private static int[] stripes(String... accountIds) {
+		int[] stripes = new int[accountIds.length];
+		for (int i = 0; i < accountIds.length; i++) {
+			stripes[i] = stripe(accountIds[i]);
+		}
+		Arrays.sort(stripes);
+		return stripes;
+	}
+}
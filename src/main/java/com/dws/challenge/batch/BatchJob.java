@@ -0,0 +1,144 @@
+package com.dws.challenge.batch;
+
+import java.math.BigDecimal;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.UnaryOperator;
+
+import lombok.Getter;
+
+/**
+ * State of one batch job run over a fixed list of account ids.
+ *
+ * The processed accounts, one bit each, are the checkpoint: an account is
+ * marked right after its update is committed, so a cancelled or failed job
+ * resumes with the remaining accounts and never applies its function twice to
+ * the same account, even if it stopped in the middle of a chunk. Completed
+ * chunks are skipped as a whole, accounts left for a retry are kept by index.
+ */
+final class BatchJob {
+
+	@Getter
+	private final String jobId;
+
+	@Getter
+	private final String name;
+
+	@Getter
+	private final UnaryOperator<BigDecimal> function;
+
+	private final String[] accountIds;
+
+	@Getter
+	private final int chunkSize;
+
+	private final AtomicIntegerArray completedChunks;
+
+	private final AtomicLongArray processedAccounts;
+
+	@Getter
+	private final Queue<Integer> pendingAccounts = new ConcurrentLinkedQueue<>();
+
+	private final LongAdder updated = new LongAdder();
+
+	private final LongAdder unchanged = new LongAdder();
+
+	private volatile BatchJobStatus.State state;
+
+	private volatile boolean cancelRequested;
+
+	private volatile long startedNanos;
+
+	private volatile long elapsedNanos;
+
+	private volatile String failure;
+
+	BatchJob(String jobId, String name, UnaryOperator<BigDecimal> function, String[] accountIds, int chunkSize) {
+		this.jobId = jobId;
+		this.name = name;
+		this.function = function;
+		this.accountIds = accountIds;
+		this.chunkSize = chunkSize;
+		this.completedChunks = new AtomicIntegerArray((accountIds.length + chunkSize - 1) / chunkSize);
+		this.processedAccounts = new AtomicLongArray((accountIds.length + 63) / 64);
+	}
+
+	int chunkCount() {
+		return completedChunks.length();
+	}
+
+	String accountId(int index) {
+		return accountIds[index];
+	}
+
+	int accountCount() {
+		return accountIds.length;
+	}
+
+	boolean isChunkCompleted(int chunk) {
+		return completedChunks.get(chunk) == 1;
+	}
+
+	void completeChunk(int chunk) {
+		completedChunks.set(chunk, 1);
+	}
+
+	boolean isProcessed(int index) {
+		return (processedAccounts.get(index >>> 6) & (1L << index)) != 0;
+	}
+
+	void markProcessed(int index) {
+		long bit = 1L << index;
+		processedAccounts.getAndUpdate(index >>> 6, word -> word | bit);
+	}
+
+	void recordUpdated() {
+		updated.increment();
+	}
+
+	void recordUnchanged() {
+		unchanged.increment();
+	}
+
+	boolean isRunning() {
+		return state == BatchJobStatus.State.RUNNING;
+	}
+
+	boolean isCancelRequested() {
+		return cancelRequested;
+	}
+
+	void cancel() {
+		cancelRequested = true;
+	}
+
+	synchronized void start() {
+		cancelRequested = false;
+		failure = null;
+		state = BatchJobStatus.State.RUNNING;
+		startedNanos = System.nanoTime();
+	}
+
+	synchronized void finish(BatchJobStatus.State finalState, String failure) {
+		this.elapsedNanos += System.nanoTime() - startedNanos;
+		this.failure = failure;
+		this.state = finalState;
+	}
+
+	synchronized BatchJobStatus status() {
+		int completed = 0;
+		for (int i = 0; i < completedChunks.length(); i++) {
+			completed += completedChunks.get(i);
+		}
+		long elapsed = elapsedNanos + (isRunning() ? System.nanoTime() - startedNanos : 0);
+		long processed = updated.sum() + unchanged.sum();
+		return BatchJobStatus.builder().jobId(jobId).name(name).state(state).totalAccounts(accountIds.length)
+				.totalChunks(completedChunks.length()).completedChunks(completed).updatedAccounts(updated.sum())
+				.unchangedAccounts(unchanged.sum()).pendingAccounts(pendingAccounts.size())
+				.elapsedMillis(elapsed / 1_000_000)
+				.accountsPerSecond(elapsed > 0 ? processed * 1_000_000_000d / elapsed : 0).failure(failure).build();
+	}
+}
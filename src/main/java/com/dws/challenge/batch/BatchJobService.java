@@ -0,0 +1,224 @@
+package com.dws.challenge.batch;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.UnaryOperator;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import com.dws.challenge.config.BatchJobProperties;
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.exception.AccountBusyException;
+import com.dws.challenge.exception.AccountNotFoundException;
+import com.dws.challenge.service.AccountsService;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Runs a balance function over every account, e.g. interest accrual or fees.
+ *
+ * The account ids are captured when the job starts and split into chunks that
+ * are processed on a dedicated {@link ForkJoinPool}. Each account is locked
+ * once, for the duration of its own update only, so online transfers are
+ * delayed by at most one account update. Accounts held by a transfer for longer
+ * than the lock timeout are retried after all chunks are done; a job that still
+ * has such accounts ends as INCOMPLETE and retries them when resumed.
+ */
+@Slf4j
+@Service
+public class BatchJobService {
+
+	private final AccountsService accountsService;
+
+	private final BatchJobProperties properties;
+
+	private final ForkJoinPool pool;
+
+	private final Map<String, BatchJob> jobs = new ConcurrentHashMap<>();
+
+	@Autowired
+	public BatchJobService(AccountsService accountsService, BatchJobProperties properties) {
+		this.accountsService = accountsService;
+		this.properties = properties;
+		this.pool = new ForkJoinPool(properties.getParallelism());
+	}
+
+	@PreDestroy
+	public void stop() {
+		pool.shutdownNow();
+	}
+
+	/**
+	 * Used to accrue interest on every account.
+	 * @param rate interest rate, e.g. 0.01 for one percent
+	 */
+	public BatchJobStatus accrueInterest(BigDecimal rate) {
+		return submit("interest " + rate, balance -> balance.add(balance.multiply(rate))
+				.setScale(Math.max(2, balance.scale()), RoundingMode.HALF_EVEN));
+	}
+
+	/**
+	 * Used to charge a fee on every account that can cover it.
+	 * @param fee amount to subtract
+	 */
+	public BatchJobStatus chargeFee(BigDecimal fee) {
+		return submit("fee " + fee, balance -> balance.compareTo(fee) >= 0 ? balance.subtract(fee) : null);
+	}
+
+	/**
+	 * Used to start a job applying the function to every account.
+	 * @param name     job name shown in the status
+	 * @param function maps a balance to the new one, null leaves it unchanged
+	 * @return status of the started job
+	 */
+	public BatchJobStatus submit(String name, UnaryOperator<BigDecimal> function) {
+		String[] accountIds = accountsService.getAccountsRepository().getAccounts().stream()
+				.map(Account::getAccountId).toArray(String[]::new);
+		BatchJob job = new BatchJob(UUID.randomUUID().toString(), name, function, accountIds, properties.getChunkSize());
+		jobs.put(job.getJobId(), job);
+		run(job);
+		return job.status();
+	}
+
+	/**
+	 * Used to continue a cancelled, failed or incomplete job from its checkpoint.
+	 * @return status of the job, null if unknown
+	 */
+	public BatchJobStatus resume(String jobId) {
+		BatchJob job = jobs.get(jobId);
+		if (job == null) {
+			return null;
+		}
+		synchronized (job) {
+			if (!job.isRunning()) {
+				run(job);
+			}
+		}
+		return job.status();
+	}
+
+	/**
+	 * Used to stop a job after the chunks in progress.
+	 * @return status of the job, null if unknown
+	 */
+	public BatchJobStatus cancel(String jobId) {
+		BatchJob job = jobs.get(jobId);
+		if (job == null) {
+			return null;
+		}
+		job.cancel();
+		return job.status();
+	}
+
+	public BatchJobStatus getStatus(String jobId) {
+		BatchJob job = jobs.get(jobId);
+		return job != null ? job.status() : null;
+	}
+
+	private void run(BatchJob job) {
+		job.start();
+		pool.execute(() -> {
+			try {
+				new ChunkTask(job, 0, job.chunkCount()).invoke();
+				retryPending(job);
+				BatchJobStatus.State state;
+				if (job.isCancelRequested()) {
+					state = BatchJobStatus.State.CANCELLED;
+				} else if (!job.getPendingAccounts().isEmpty()) {
+					state = BatchJobStatus.State.INCOMPLETE;
+				} else {
+					state = BatchJobStatus.State.COMPLETED;
+				}
+				job.finish(state, null);
+				log.info("Batch job {} finished: {}", job.getName(), job.status());
+			} catch (RuntimeException e) {
+				log.error("Batch job {} failed", job.getName(), e);
+				job.finish(BatchJobStatus.State.FAILED, e.getMessage());
+			}
+		});
+	}
+
+	private void retryPending(BatchJob job) {
+		List<Integer> retry = new ArrayList<>();
+		Integer index;
+		while ((index = job.getPendingAccounts().poll()) != null) {
+			retry.add(index);
+		}
+		for (int i = 0; i < retry.size(); i++) {
+			if (job.isCancelRequested()) {
+				job.getPendingAccounts().addAll(retry.subList(i, retry.size()));
+				return;
+			}
+			process(job, retry.get(i));
+		}
+	}
+
+	/**
+	 * Applies the job function to one account unless the checkpoint already has
+	 * it. Any other failure propagates and fails the job with the account
+	 * unmarked, its update was not committed.
+	 */
+	private void process(BatchJob job, int index) {
+		if (job.isProcessed(index)) {
+			return;
+		}
+		try {
+			if (accountsService.applyToAccount(job.accountId(index), job.getFunction(), properties.getLockTimeoutMillis())) {
+				job.recordUpdated();
+			} else {
+				job.recordUnchanged();
+			}
+			job.markProcessed(index);
+		} catch (AccountBusyException abe) {
+			job.getPendingAccounts().add(index);
+		} catch (AccountNotFoundException anfe) {
+			job.recordUnchanged();
+			job.markProcessed(index);
+		}
+	}
+
+	/**
+	 * Splits a range of chunks in halves down to single chunks.
+	 */
+	private final class ChunkTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final transient BatchJob job;
+		private final int fromChunk;
+		private final int toChunk;
+
+		private ChunkTask(BatchJob job, int fromChunk, int toChunk) {
+			this.job = job;
+			this.fromChunk = fromChunk;
+			this.toChunk = toChunk;
+		}
+
+		@Override
+		protected void compute() {
+			if (toChunk - fromChunk > 1) {
+				int middle = (fromChunk + toChunk) >>> 1;
+				invokeAll(new ChunkTask(job, fromChunk, middle), new ChunkTask(job, middle, toChunk));
+			} else if (fromChunk < toChunk && !job.isChunkCompleted(fromChunk) && !job.isCancelRequested()) {
+				int end = Math.min(job.accountCount(), (fromChunk + 1) * job.getChunkSize());
+				for (int i = fromChunk * job.getChunkSize(); i < end; i++) {
+					if (job.isCancelRequested()) {
+						return;
+					}
+					process(job, i);
+				}
+				job.completeChunk(fromChunk);
+			}
+		}
+	}
+}
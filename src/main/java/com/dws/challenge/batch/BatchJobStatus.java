@@ -0,0 +1,47 @@
+package com.dws.challenge.batch;
+
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * Progress and throughput of a batch job, returned by the batch job endpoints.
+ */
+@Value
+@Builder
+public class BatchJobStatus {
+
+	/**
+	 * INCOMPLETE: every chunk is done but some accounts were still locked by
+	 * transfers on the last retry, resuming the job retries them.
+	 */
+	public enum State {
+		RUNNING, COMPLETED, INCOMPLETE, CANCELLED, FAILED
+	}
+
+	private final String jobId;
+
+	private final String name;
+
+	private final State state;
+
+	private final int totalAccounts;
+
+	private final int totalChunks;
+
+	private final int completedChunks;
+
+	private final long updatedAccounts;
+
+	private final long unchangedAccounts;
+
+	/**
+	 * Accounts left for a retry, e.g. because a transfer held their lock.
+	 */
+	private final int pendingAccounts;
+
+	private final long elapsedMillis;
+
+	private final double accountsPerSecond;
+
+	private final String failure;
+}
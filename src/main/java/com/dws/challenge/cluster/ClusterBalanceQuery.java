@@ -0,0 +1,100 @@
+package com.dws.challenge.cluster;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.exception.NodeUnavailableException;
+import com.dws.challenge.index.BalanceIndex;
+import com.dws.challenge.index.BalancePage;
+
+/**
+ * Answers the balance queries for the accounts of all nodes.
+ *
+ * Every node pages through its own balance index from the same cursor, the
+ * pages are merged in index order and cut to the page size. The order by
+ * balance and account id is the same on every node, so the cursor of the merged
+ * page is valid for all of them: a node whose whole page was taken has nothing
+ * before the cursor left, and the rest of any other page comes after it. The
+ * nodes are asked one after the other.
+ */
+@Component
+public class ClusterBalanceQuery {
+
+	private static final String BALANCE_BELOW_PATH = "/v1/accounts/query/balance-below";
+
+	private static final String TOP_BALANCES_PATH = "/v1/accounts/query/top-balances";
+
+	private static final Comparator<Account> BY_BALANCE = Comparator.comparing(Account::getBalance)
+			.thenComparing(Account::getAccountId);
+
+	private final ClusterRouter clusterRouter;
+
+	private final BalanceIndex balanceIndex;
+
+	@Autowired
+	public ClusterBalanceQuery(ClusterRouter clusterRouter, BalanceIndex balanceIndex) {
+		this.clusterRouter = clusterRouter;
+		this.balanceIndex = balanceIndex;
+	}
+
+	/**
+	 * Cluster wide {@link BalanceIndex#balanceBelow(BigDecimal, int, BigDecimal, String)}.
+	 * @throws NodeUnavailableException if a node can not answer its part
+	 */
+	public BalancePage balanceBelow(BigDecimal threshold, int limit, BigDecimal afterBalance, String afterAccountId) {
+		UriComponentsBuilder path = UriComponentsBuilder.fromPath(BALANCE_BELOW_PATH)
+				.queryParam("threshold", threshold);
+		return gather(balanceIndex.balanceBelow(threshold, limit, afterBalance, afterAccountId),
+				withCursor(path, limit, afterBalance, afterAccountId), limit, BY_BALANCE);
+	}
+
+	/**
+	 * Cluster wide {@link BalanceIndex#topBalances(int, BigDecimal, String)}.
+	 * @throws NodeUnavailableException if a node can not answer its part
+	 */
+	public BalancePage topBalances(int limit, BigDecimal afterBalance, String afterAccountId) {
+		UriComponentsBuilder path = UriComponentsBuilder.fromPath(TOP_BALANCES_PATH);
+		return gather(balanceIndex.topBalances(limit, afterBalance, afterAccountId),
+				withCursor(path, limit, afterBalance, afterAccountId), limit, BY_BALANCE.reversed());
+	}
+
+	private static String withCursor(UriComponentsBuilder path, int limit, BigDecimal afterBalance,
+			String afterAccountId) {
+		path.queryParam("limit", limit);
+		if (afterBalance != null && afterAccountId != null) {
+			path.queryParam("afterBalance", afterBalance).queryParam("afterAccountId", afterAccountId);
+		}
+		return path.toUriString();
+	}
+
+	private BalancePage gather(BalancePage localPage, String path, int limit, Comparator<Account> order) {
+		List<Account> accounts = new ArrayList<>(localPage.getAccounts());
+		boolean more = localPage.getNextAfterAccountId() != null;
+		for (String nodeId : clusterRouter.getProperties().getNodes().keySet()) {
+			if (nodeId.equals(clusterRouter.getProperties().getNodeId())) {
+				continue;
+			}
+			BalancePage page = clusterRouter.query(nodeId, path, BalancePage.class);
+			accounts.addAll(page.getAccounts());
+			more |= page.getNextAfterAccountId() != null;
+		}
+		accounts.sort(order);
+		int size = BalanceIndex.pageSize(limit);
+		if (accounts.size() > size) {
+			accounts = new ArrayList<>(accounts.subList(0, size));
+			more = true;
+		}
+		if (!more || accounts.isEmpty()) {
+			return new BalancePage(accounts, null, null);
+		}
+		Account last = accounts.get(accounts.size() - 1);
+		return new BalancePage(accounts, last.getBalance(), last.getAccountId());
+	}
+}
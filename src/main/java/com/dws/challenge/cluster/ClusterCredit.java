@@ -0,0 +1,42 @@
+package com.dws.challenge.cluster;
+
+import java.math.BigDecimal;
+
+import javax.validation.constraints.DecimalMin;
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Pattern;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import lombok.Data;
+
+/**
+ * Credit side of a cross node transfer, sent by the owner of the from-account
+ * to the owner of the to-account.
+ */
+@Data
+public class ClusterCredit {
+
+	@NotNull
+	@NotEmpty
+	@Pattern(regexp = "\\S+", message = "Reservation id must not contain whitespace.")
+	private final String reservationId;
+
+	@NotNull
+	@NotEmpty
+	private final String accountId;
+
+	@NotNull
+	@DecimalMin(value = "0", inclusive = false, message = "Credit amount must be positive.")
+	private final BigDecimal amount;
+
+	@JsonCreator
+	public ClusterCredit(@JsonProperty("reservationId") String reservationId,
+			@JsonProperty("accountId") String accountId, @JsonProperty("amount") BigDecimal amount) {
+		this.reservationId = reservationId;
+		this.accountId = accountId;
+		this.amount = amount;
+	}
+}
@@ -0,0 +1,217 @@
+package com.dws.challenge.cluster;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.ResponseErrorHandler;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+
+import com.dws.challenge.config.ClusterProperties;
+import com.dws.challenge.exception.NodeUnavailableException;
+import com.dws.challenge.scheduling.TransferScheduler;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Decides which node owns an account and forwards requests to that node.
+ *
+ * Forwarded requests carry {@link #FORWARDED_HEADER} and are always served
+ * locally by the receiver, so nodes with a different view of the ring can never
+ * bounce a request back and forth. They also carry the shared
+ * {@code cluster.secret} in {@link #SECRET_HEADER}, which the node to node
+ * endpoints require.
+ */
+@Slf4j
+@Component
+public class ClusterRouter {
+
+	public static final String FORWARDED_HEADER = "X-Cluster-Forwarded-By";
+
+	public static final String SECRET_HEADER = "X-Cluster-Secret";
+
+	/**
+	 * Client headers the owner node needs to serve a forwarded request like the
+	 * original one.
+	 */
+	private static final List<String> PASSED_HEADERS = List.of(TransferScheduler.LANE_HEADER,
+			TransferScheduler.API_KEY_HEADER);
+
+	@Getter
+	private final ClusterProperties properties;
+
+	private final ConsistentHashRing ring;
+
+	@Getter
+	private final RestTemplate restTemplate;
+
+	@Autowired
+	public ClusterRouter(ClusterProperties properties, RestTemplateBuilder restTemplateBuilder) {
+		this.properties = properties;
+		if (properties.isEnabled() && !properties.getNodes().containsKey(properties.getNodeId())) {
+			throw new IllegalStateException("Node " + properties.getNodeId() + " is not part of cluster.nodes");
+		}
+		if (properties.isEnabled() && (properties.getSecret() == null || properties.getSecret().isBlank())) {
+			throw new IllegalStateException("cluster.secret must be set when clustering is enabled");
+		}
+		this.ring = properties.isEnabled()
+				? new ConsistentHashRing(properties.getNodes().keySet(), properties.getVirtualNodes())
+				: null;
+		this.restTemplate = restTemplateBuilder
+				.setConnectTimeout(Duration.ofMillis(properties.getConnectTimeoutMillis()))
+				.setReadTimeout(Duration.ofMillis(properties.getReadTimeoutMillis()))
+				.errorHandler(new RelayErrorHandler())
+				.build();
+	}
+
+	public boolean isEnabled() {
+		return ring != null;
+	}
+
+	/**
+	 * @param accountId account id
+	 * @return owning node id, this node when clustering is disabled
+	 */
+	public String ownerOf(String accountId) {
+		return ring != null ? ring.ownerOf(accountId) : properties.getNodeId();
+	}
+
+	/**
+	 * @param secret value of {@link #SECRET_HEADER}, may be null
+	 * @return true if the request comes from a node of this cluster
+	 */
+	public boolean isClusterSecret(String secret) {
+		return ring != null && secret != null && MessageDigest.isEqual(
+				properties.getSecret().getBytes(StandardCharsets.UTF_8), secret.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * @param accountId account id
+	 * @param forwardedBy value of {@link #FORWARDED_HEADER}, null for client requests
+	 * @return true if the request for the account has to be served by this node
+	 */
+	public boolean isLocal(String accountId, String forwardedBy) {
+		return ring == null || forwardedBy != null || properties.getNodeId().equals(ring.ownerOf(accountId));
+	}
+
+	/**
+	 * Used to send a node to node request as JSON, see
+	 * {@link #forward(String, HttpMethod, String, Object, HttpHeaders)}.
+	 */
+	public ResponseEntity<Object> forward(String nodeId, HttpMethod method, String path, Object body) {
+		return forward(nodeId, method, path, body, null);
+	}
+
+	/**
+	 * Used to forward a request to the given node and relay its response as is.
+	 * The body is sent in the Content-Type of the client request and the Accept
+	 * header is passed on, so that the owner answers in the format the client
+	 * asked for. The priority lane headers are passed on, so that the owner
+	 * schedules the request in the client's lane. The response body is relayed
+	 * as raw bytes.
+	 * @param nodeId target node
+	 * @param method http method
+	 * @param path path below the node base url
+	 * @param body request body or null
+	 * @param requestHeaders headers of the client request, null to send JSON
+	 * @return response of the target node, 503 if it can not be reached
+	 */
+	public ResponseEntity<Object> forward(String nodeId, HttpMethod method, String path, Object body,
+			HttpHeaders requestHeaders) {
+		HttpHeaders headers = new HttpHeaders();
+		if (body != null) {
+			headers.setContentType(requestHeaders != null && requestHeaders.getContentType() != null
+					? requestHeaders.getContentType()
+					: MediaType.APPLICATION_JSON);
+		}
+		if (requestHeaders != null) {
+			if (!requestHeaders.getAccept().isEmpty()) {
+				headers.setAccept(requestHeaders.getAccept());
+			}
+			for (String name : PASSED_HEADERS) {
+				List<String> values = requestHeaders.get(name);
+				if (values != null) {
+					headers.put(name, values);
+				}
+			}
+		}
+		headers.set(FORWARDED_HEADER, properties.getNodeId());
+		if (properties.getSecret() != null) {
+			headers.set(SECRET_HEADER, properties.getSecret());
+		}
+		try {
+			ResponseEntity<byte[]> response = restTemplate.exchange(urlOf(nodeId, path), method,
+					new HttpEntity<>(body, headers), byte[].class);
+			HttpHeaders responseHeaders = new HttpHeaders();
+			if (response.getHeaders().getContentType() != null) {
+				responseHeaders.setContentType(response.getHeaders().getContentType());
+			}
+			return new ResponseEntity<>(response.getBody(), responseHeaders, response.getStatusCode());
+		} catch (ResourceAccessException rae) {
+			log.warn("Node {} unreachable: {}", nodeId, rae.getMessage());
+			return new ResponseEntity<>("Owner node " + nodeId + " is not reachable. Please try after sometime.",
+					HttpStatus.SERVICE_UNAVAILABLE);
+		}
+	}
+
+	/**
+	 * Used to read the local view of another node as JSON, e.g. its part of a
+	 * cluster wide query. The request is marked as forwarded, so the node
+	 * answers from its own data only.
+	 * @param nodeId target node
+	 * @param path path below the node base url, with the query string
+	 * @param type response type
+	 * @return response body of the node
+	 * @throws NodeUnavailableException if the node can not be reached or fails
+	 */
+	public <T> T query(String nodeId, String path, Class<T> type) {
+		HttpHeaders headers = new HttpHeaders();
+		headers.setAccept(List.of(MediaType.APPLICATION_JSON));
+		headers.set(FORWARDED_HEADER, properties.getNodeId());
+		headers.set(SECRET_HEADER, properties.getSecret());
+		try {
+			ResponseEntity<T> response = restTemplate.exchange(urlOf(nodeId, path), HttpMethod.GET,
+					new HttpEntity<>(headers), type);
+			if (response.getStatusCode().is2xxSuccessful() && response.getBody() != null) {
+				return response.getBody();
+			}
+			log.warn("Node {} answered {} to {}", nodeId, response.getStatusCode(), path);
+		} catch (RestClientException rce) {
+			log.warn("Node {} failed to answer {}: {}", nodeId, path, rce.getMessage());
+		}
+		throw new NodeUnavailableException("Node " + nodeId + " is not reachable. Please try after sometime.");
+	}
+
+	public String urlOf(String nodeId, String path) {
+		return properties.getNodes().get(nodeId) + path;
+	}
+
+	/**
+	 * Keeps 4xx/5xx responses of other nodes as responses instead of exceptions.
+	 */
+	private static class RelayErrorHandler implements ResponseErrorHandler {
+
+		@Override
+		public boolean hasError(ClientHttpResponse response) {
+			return false;
+		}
+
+		@Override
+		public void handleError(ClientHttpResponse response) {
+		}
+	}
+}
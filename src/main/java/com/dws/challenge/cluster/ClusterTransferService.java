@@ -0,0 +1,356 @@
+package com.dws.challenge.cluster;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.AccountTransfer;
+import com.dws.challenge.exception.AccountBusyException;
+import com.dws.challenge.exception.AccountNotFoundException;
+import com.dws.challenge.exception.DuplicateReservationException;
+import com.dws.challenge.exception.TransferFailureException;
+import com.dws.challenge.exception.UnknownReservationException;
+import com.dws.challenge.service.AccountsService;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Two phase reserve/commit protocol for transfers whose accounts are owned by
+ * different nodes.
+ *
+ * The owner of the from-account coordinates: it reserves the amount by debiting
+ * the from-account, asks the owner of the to-account to prepare the credit and
+ * then commits it. A failed prepare rolls the reservation back. A commit that
+ * can not be confirmed is kept as in doubt instead of being rolled back, since
+ * the credit may already be applied; a background resolver retries it until
+ * the participant either confirms it or answers that it does not know the
+ * reservation, which rolls it back.
+ *
+ * Participants keep the ids of committed reservations for
+ * {@code cluster.committed-retention-millis}, so a repeated commit is
+ * confirmed without crediting twice, and an abort of a committed reservation
+ * is refused. They are recorded in {@code cluster.committed-journal} and
+ * survive a restart of the participant. A prepared credit that is neither
+ * committed nor aborted within {@code cluster.prepared-timeout-millis} is
+ * aborted.
+ */
+@Slf4j
+@Service
+public class ClusterTransferService {
+
+	static final String PREPARE_PATH = "/internal/cluster/prepare";
+	static final String COMMIT_PATH = "/internal/cluster/commit/";
+	static final String ABORT_PATH = "/internal/cluster/abort/";
+
+	private static final int LOCAL_ATTEMPTS = 50;
+	private static final long LOCAL_BACKOFF_MILLIS = 10;
+
+	private final AccountsService accountsService;
+
+	private final ClusterRouter clusterRouter;
+
+	/**
+	 * Prepared credits of this node as participant, by reservation id.
+	 */
+	private final Map<String, PreparedCredit> preparedCredits = new ConcurrentHashMap<>();
+
+	/**
+	 * Commit time of the reservations committed by this node as participant.
+	 */
+	private final Map<String, Long> committedReservations = new ConcurrentHashMap<>();
+
+	/**
+	 * Transfers of this node as coordinator whose commit could not be confirmed.
+	 */
+	private final Map<String, InDoubtTransfer> inDoubtTransfers = new ConcurrentHashMap<>();
+
+	private ScheduledExecutorService resolver;
+
+	private CommittedReservationJournal journal;
+
+	/**
+	 * Also the monitor of the commit or abort of its reservation.
+	 */
+	private static final class PreparedCredit {
+
+		private final ClusterCredit credit;
+
+		private final long preparedAtMillis;
+
+		private PreparedCredit(ClusterCredit credit, long preparedAtMillis) {
+			this.credit = credit;
+			this.preparedAtMillis = preparedAtMillis;
+		}
+	}
+
+	private static final class InDoubtTransfer {
+
+		private final ClusterCredit credit;
+
+		private final String fromAccountId;
+
+		private final String toNode;
+
+		private final long debitedAtMillis;
+
+		private InDoubtTransfer(ClusterCredit credit, String fromAccountId, String toNode, long debitedAtMillis) {
+			this.credit = credit;
+			this.fromAccountId = fromAccountId;
+			this.toNode = toNode;
+			this.debitedAtMillis = debitedAtMillis;
+		}
+	}
+
+	@Autowired
+	public ClusterTransferService(AccountsService accountsService, ClusterRouter clusterRouter) {
+		this.accountsService = accountsService;
+		this.clusterRouter = clusterRouter;
+	}
+
+	@PostConstruct
+	public void start() throws IOException {
+		if (!clusterRouter.isEnabled()) {
+			return;
+		}
+		String journalFile = clusterRouter.getProperties().getCommittedJournal();
+		if (journalFile != null && !journalFile.isBlank()) {
+			journal = new CommittedReservationJournal(Paths.get(journalFile));
+			committedReservations.putAll(journal.open(
+					System.currentTimeMillis() - clusterRouter.getProperties().getCommittedRetentionMillis()));
+			log.info("Loaded {} committed reservations from {}", committedReservations.size(), journalFile);
+		}
+		resolver = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "cluster-in-doubt-resolver");
+			thread.setDaemon(true);
+			return thread;
+		});
+		long interval = clusterRouter.getProperties().getResolveIntervalMillis();
+		resolver.scheduleWithFixedDelay(this::resolveInDoubt, interval, interval, TimeUnit.MILLISECONDS);
+	}
+
+	@PreDestroy
+	public void stop() throws IOException {
+		if (resolver != null) {
+			resolver.shutdownNow();
+		}
+		if (journal != null) {
+			journal.close();
+		}
+	}
+
+	/**
+	 * Used to transfer from a local from-account to a to-account owned by another node.
+	 *
+	 * @param accountTransfer transfer request
+	 * @return true if transfer successful
+	 * @throws AccountNotFoundException if either account does not exist
+	 * @throws TransferFailureException if the remote node failed or the outcome is in doubt
+	 */
+	public boolean transferAmount(AccountTransfer accountTransfer) {
+		String toNode = clusterRouter.ownerOf(accountTransfer.getToAccountId());
+		ClusterCredit credit = new ClusterCredit(clusterRouter.getProperties().getNodeId() + "-" + UUID.randomUUID(),
+				accountTransfer.getToAccountId(), accountTransfer.getBalance());
+
+		long debitedAtMillis = System.currentTimeMillis();
+		accountsService.debit(accountTransfer.getFromAccountId(), accountTransfer.getBalance());
+
+		ResponseEntity<Object> prepared = clusterRouter.forward(toNode, HttpMethod.POST, PREPARE_PATH, credit);
+		if (!prepared.getStatusCode().is2xxSuccessful()) {
+			clusterRouter.forward(toNode, HttpMethod.POST, ABORT_PATH + credit.getReservationId(), null);
+			withRetry(() -> accountsService.refundDebit(accountTransfer.getFromAccountId(), accountTransfer.getBalance(),
+					debitedAtMillis));
+			if (prepared.getStatusCode() == HttpStatus.NOT_FOUND) {
+				throw new AccountNotFoundException("Account not found !!!");
+			}
+			throw new TransferFailureException("Failed to transfer balance from account id - "
+					+ accountTransfer.getFromAccountId() + " to account id - " + accountTransfer.getToAccountId() + "!!!");
+		}
+
+		InDoubtTransfer transfer = new InDoubtTransfer(credit, accountTransfer.getFromAccountId(), toNode,
+				debitedAtMillis);
+		for (int attempt = 0; attempt < clusterRouter.getProperties().getCommitAttempts(); attempt++) {
+			HttpStatus status = tryCommit(transfer);
+			if (status.is2xxSuccessful()) {
+				return true;
+			}
+			if (status == HttpStatus.GONE) {
+				throw new TransferFailureException("Failed to transfer balance from account id - "
+						+ accountTransfer.getFromAccountId() + " to account id - " + accountTransfer.getToAccountId()
+						+ "!!!");
+			}
+		}
+		inDoubtTransfers.put(credit.getReservationId(), transfer);
+		log.error("Commit of reservation {} on node {} is in doubt", credit.getReservationId(), toNode);
+		throw new TransferFailureException("Transfer from account id - " + accountTransfer.getFromAccountId()
+				+ " to account id - " + accountTransfer.getToAccountId() + " is pending confirmation!!!");
+	}
+
+	/**
+	 * Sends the commit once; a reservation unknown to the participant was
+	 * never credited, so the debit is rolled back.
+	 *
+	 * @return status of the participant
+	 */
+	private HttpStatus tryCommit(InDoubtTransfer transfer) {
+		String reservationId = transfer.credit.getReservationId();
+		HttpStatus status = clusterRouter.forward(transfer.toNode, HttpMethod.POST, COMMIT_PATH + reservationId, null)
+				.getStatusCode();
+		if (status == HttpStatus.GONE) {
+			log.warn("Node {} does not know reservation {}, crediting {} back to account {}", transfer.toNode,
+					reservationId, transfer.credit.getAmount(), transfer.fromAccountId);
+			withRetry(() -> accountsService.refundDebit(transfer.fromAccountId, transfer.credit.getAmount(),
+					transfer.debitedAtMillis));
+		}
+		return status;
+	}
+
+	/**
+	 * Retries the commits in doubt, aborts the expired prepared credits, and
+	 * forgets the committed reservations after the retention.
+	 */
+	public void resolveInDoubt() {
+		for (InDoubtTransfer transfer : inDoubtTransfers.values()) {
+			String reservationId = transfer.credit.getReservationId();
+			try {
+				HttpStatus status = tryCommit(transfer);
+				if (status.is2xxSuccessful() || status == HttpStatus.GONE) {
+					inDoubtTransfers.remove(reservationId);
+					log.info("Resolved reservation {} in doubt as {}", reservationId,
+							status == HttpStatus.GONE ? "rolled back" : "committed");
+				}
+			} catch (RuntimeException e) {
+				log.error("Failed to resolve reservation {} in doubt", reservationId, e);
+			}
+		}
+		long nowMillis = System.currentTimeMillis();
+		long preparedExpired = nowMillis - clusterRouter.getProperties().getPreparedTimeoutMillis();
+		preparedCredits.forEach((reservationId, prepared) -> {
+			if (prepared.preparedAtMillis < preparedExpired && abort(reservationId)) {
+				log.warn("Aborted reservation {} prepared at {} and never committed", reservationId,
+						prepared.preparedAtMillis);
+			}
+		});
+		long expired = nowMillis - clusterRouter.getProperties().getCommittedRetentionMillis();
+		committedReservations.values().removeIf(committedAt -> committedAt < expired);
+	}
+
+	/**
+	 * Participant side of the prepare phase.
+	 * @return false if the account is not owned by this node
+	 * @throws IllegalArgumentException if the amount is not positive
+	 * @throws DuplicateReservationException if the reservation id was prepared
+	 *                                       or committed before
+	 */
+	public boolean prepare(ClusterCredit credit) {
+		if (credit.getAmount() == null || credit.getAmount().compareTo(BigDecimal.ZERO) <= 0) {
+			throw new IllegalArgumentException("Credit amount must be positive.");
+		}
+		if (accountsService.getAccount(credit.getAccountId()) == null) {
+			return false;
+		}
+		String reservationId = credit.getReservationId();
+		if (committedReservations.containsKey(reservationId) || preparedCredits.putIfAbsent(reservationId,
+				new PreparedCredit(credit, System.currentTimeMillis())) != null) {
+			throw new DuplicateReservationException("Reservation " + reservationId + " already exists!!!");
+		}
+		return true;
+	}
+
+	/**
+	 * Participant side of the commit phase, idempotent per reservation.
+	 * @return the committed credit, null if the reservation was committed before
+	 * @throws UnknownReservationException if the reservation was neither
+	 *                                     prepared nor committed, or aborted
+	 */
+	public ClusterCredit commit(String reservationId) {
+		if (committedReservations.containsKey(reservationId)) {
+			return null;
+		}
+		PreparedCredit prepared = preparedCredits.get(reservationId);
+		if (prepared == null) {
+			throw new UnknownReservationException("Reservation " + reservationId + " is unknown!!!");
+		}
+		ClusterCredit credit = prepared.credit;
+		// one commit or abort per reservation at a time, retries of the coordinator may overlap
+		synchronized (prepared) {
+			if (committedReservations.containsKey(reservationId)) {
+				return null;
+			}
+			if (!preparedCredits.containsKey(reservationId)) {
+				throw new UnknownReservationException("Reservation " + reservationId + " is unknown!!!");
+			}
+			withRetry(() -> accountsService.credit(credit.getAccountId(), credit.getAmount()));
+			long committedAtMillis = System.currentTimeMillis();
+			committedReservations.put(reservationId, committedAtMillis);
+			preparedCredits.remove(reservationId);
+			if (journal != null) {
+				// a failed record answers 500, the coordinator's retry finds the commit in memory
+				journal.append(reservationId, committedAtMillis);
+			}
+			return credit;
+		}
+	}
+
+	/**
+	 * Participant side of a rolled back transfer.
+	 * @return false if the reservation is already committed
+	 */
+	public boolean abort(String reservationId) {
+		PreparedCredit prepared = preparedCredits.get(reservationId);
+		if (prepared == null) {
+			return !committedReservations.containsKey(reservationId);
+		}
+		synchronized (prepared) {
+			if (committedReservations.containsKey(reservationId)) {
+				return false;
+			}
+			preparedCredits.remove(reservationId);
+			return true;
+		}
+	}
+
+	public Map<String, ClusterCredit> getInDoubtCredits() {
+		return inDoubtTransfers.entrySet().stream()
+				.collect(Collectors.toMap(Map.Entry::getKey, entry -> entry.getValue().credit));
+	}
+
+	/**
+	 * Single account updates of the protocol must not be lost to a concurrent
+	 * transfer holding the lock, so they are retried for a short while.
+	 */
+	private static Account withRetry(Supplier<Account> update) {
+		for (int attempt = 1;; attempt++) {
+			try {
+				return update.get();
+			} catch (AccountBusyException abe) {
+				if (attempt == LOCAL_ATTEMPTS) {
+					throw abe;
+				}
+				try {
+					Thread.sleep(LOCAL_BACKOFF_MILLIS);
+				} catch (InterruptedException ie) {
+					Thread.currentThread().interrupt();
+					throw abe;
+				}
+			}
+		}
+	}
+}
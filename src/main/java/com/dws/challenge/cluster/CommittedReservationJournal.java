@@ -0,0 +1,92 @@
+package com.dws.challenge.cluster;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Append-only file of the reservations a participant committed, one
+ * {@code <reservation id> <commit time>} line each. A restarted participant
+ * loads it and still confirms these commits; otherwise it would answer that
+ * it does not know them, and the coordinator would refund a credit that was
+ * applied. Lines older than the retention are dropped when the file is
+ * opened.
+ */
+class CommittedReservationJournal implements AutoCloseable {
+
+	private final Path file;
+
+	private FileChannel channel;
+
+	CommittedReservationJournal(Path file) {
+		this.file = file;
+	}
+
+	/**
+	 * @param notBeforeMillis commits before this time are dropped
+	 * @return commit time of the recorded reservations, by reservation id
+	 */
+	synchronized Map<String, Long> open(long notBeforeMillis) throws IOException {
+		Map<String, Long> committed = new HashMap<>();
+		if (Files.exists(file)) {
+			List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+			for (String line : lines) {
+				int separator = line.lastIndexOf(' ');
+				if (separator <= 0) {
+					// torn last line of a crash, its commit was never confirmed
+					continue;
+				}
+				try {
+					long committedAt = Long.parseLong(line.substring(separator + 1));
+					if (committedAt >= notBeforeMillis) {
+						committed.put(line.substring(0, separator), committedAt);
+					}
+				} catch (NumberFormatException e) {
+					continue;
+				}
+			}
+		} else if (file.getParent() != null) {
+			Files.createDirectories(file.getParent());
+		}
+		Path compacted = file.resolveSibling(file.getFileName() + ".tmp");
+		StringBuilder content = new StringBuilder();
+		committed.forEach((reservationId, committedAt) -> content.append(reservationId).append(' ')
+				.append(committedAt).append('\n'));
+		Files.write(compacted, content.toString().getBytes(StandardCharsets.UTF_8));
+		Files.move(compacted, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+		return committed;
+	}
+
+	/**
+	 * Records a commit and forces it to disk before returning.
+	 */
+	synchronized void append(String reservationId, long committedAtMillis) {
+		ByteBuffer line = ByteBuffer
+				.wrap((reservationId + ' ' + committedAtMillis + '\n').getBytes(StandardCharsets.UTF_8));
+		try {
+			while (line.hasRemaining()) {
+				channel.write(line);
+			}
+			channel.force(false);
+		} catch (IOException e) {
+			throw new UncheckedIOException("Failed to record committed reservation " + reservationId, e);
+		}
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		if (channel != null) {
+			channel.close();
+		}
+	}
+}
@@ -0,0 +1,56 @@
+package com.dws.challenge.cluster;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Immutable consistent hash ring assigning account ids to cluster nodes.
+ *
+ * Every node is placed on the ring at {@code virtualNodes} points so that load
+ * is spread evenly and adding or removing a node only moves the keys of that
+ * node.
+ */
+public final class ConsistentHashRing {
+
+	private final NavigableMap<Long, String> ring = new TreeMap<>();
+
+	public ConsistentHashRing(Collection<String> nodeIds, int virtualNodes) {
+		if (nodeIds.isEmpty()) {
+			throw new IllegalArgumentException("Cluster needs at least one node");
+		}
+		for (String nodeId : nodeIds) {
+			for (int i = 0; i < virtualNodes; i++) {
+				ring.put(hash(nodeId + "#" + i), nodeId);
+			}
+		}
+	}
+
+	/**
+	 * @param key account id
+	 * @return id of the node owning the key
+	 */
+	public String ownerOf(String key) {
+		Map.Entry<Long, String> entry = ring.ceilingEntry(hash(key));
+		return entry != null ? entry.getValue() : ring.firstEntry().getValue();
+	}
+
+	/**
+	 * 64 bit FNV-1a followed by the murmur3 finalizer to spread short, similar ids.
+	 */
+	static long hash(String key) {
+		long h = 0xcbf29ce484222325L;
+		for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+			h ^= b;
+			h *= 0x100000001b3L;
+		}
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h;
+	}
+}
@@ -0,0 +1,26 @@
+package com.dws.challenge.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import lombok.Data;
+
+/**
+ * Money conservation auditor settings, bound from the {@code audit.*}
+ * properties.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "audit")
+public class AuditProperties {
+
+	private boolean enabled = true;
+
+	private long intervalMillis = 10000;
+
+	/**
+	 * Consecutive verifications that must find a drift before it is alerted,
+	 * which filters out changes racing with the end of a verification.
+	 */
+	private int confirmations = 2;
+}
@@ -0,0 +1,32 @@
+package com.dws.challenge.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import lombok.Data;
+
+/**
+ * Whole book batch job settings, bound from the {@code batch.*} properties.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "batch")
+public class BatchJobProperties {
+
+	/**
+	 * Worker threads of the batch pool, kept low so that online transfers keep
+	 * most of the cpu.
+	 */
+	private int parallelism = 2;
+
+	/**
+	 * Accounts per work chunk, progress is checkpointed per chunk.
+	 */
+	private int chunkSize = 1000;
+
+	/**
+	 * Maximum time a job waits for an account held by a transfer before leaving
+	 * it for the retry pass.
+	 */
+	private long lockTimeoutMillis = 20;
+}
@@ -0,0 +1,74 @@
+package com.dws.challenge.config;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import lombok.Data;
+
+/**
+ * Partitioned cluster settings, bound from the {@code cluster.*} properties.
+ *
+ * Every node is started with the same {@link #nodes} map and its own
+ * {@link #nodeId}.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "cluster")
+public class ClusterProperties {
+
+	private boolean enabled = false;
+
+	/**
+	 * Id of this node, must be a key of {@link #nodes}.
+	 */
+	private String nodeId = "node-1";
+
+	/**
+	 * Node id to base url, e.g. {@code node-1=http://localhost:18080}.
+	 */
+	private Map<String, String> nodes = new LinkedHashMap<>();
+
+	private int virtualNodes = 128;
+
+	private long connectTimeoutMillis = 1000;
+
+	private long readTimeoutMillis = 5000;
+
+	/**
+	 * Number of attempts for the commit phase of a cross node transfer.
+	 */
+	private int commitAttempts = 3;
+
+	/**
+	 * Interval of the retries of commits in doubt.
+	 */
+	private long resolveIntervalMillis = 5000;
+
+	/**
+	 * How long a participant remembers committed reservations, must exceed the
+	 * time a commit can stay in doubt.
+	 */
+	private long committedRetentionMillis = 86400000;
+
+	/**
+	 * Shared by all nodes and sent with every node to node request; the
+	 * internal endpoints refuse requests without it. Required when clustering
+	 * is enabled.
+	 */
+	private String secret;
+
+	/**
+	 * How long a participant keeps a prepared credit that is neither committed
+	 * nor aborted; an expired credit is aborted.
+	 */
+	private long preparedTimeoutMillis = 600000;
+
+	/**
+	 * File the participant records committed reservations in, so that it still
+	 * confirms them after a restart; empty to keep them in memory only.
+	 */
+	private String committedJournal;
+}
@@ -0,0 +1,26 @@
+package com.dws.challenge.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import lombok.Data;
+
+/**
+ * Snapshot export settings, bound from the {@code export.*} properties.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "export")
+public class ExportProperties {
+
+	/**
+	 * Directory of the segment files, emptied at startup.
+	 */
+	private String directory = System.getProperty("java.io.tmpdir") + "/accounts-export";
+
+	/**
+	 * Accounts per segment file; a columnar segment is buffered in memory
+	 * before it is written.
+	 */
+	private int segmentRows = 100000;
+}
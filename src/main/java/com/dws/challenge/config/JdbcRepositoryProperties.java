@@ -0,0 +1,49 @@
+package com.dws.challenge.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import lombok.Data;
+
+/**
+ * Settings of the JDBC backed accounts repository, bound from the
+ * {@code accounts.jdbc.*} properties. The repository is used when
+ * {@code accounts.repository=jdbc}.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "accounts.jdbc")
+public class JdbcRepositoryProperties {
+
+	public enum WriteMode {
+		/**
+		 * Every update is written before it returns, the naive baseline.
+		 */
+		WRITE_THROUGH,
+		/**
+		 * Updates are coalesced and written in the background; the latest
+		 * changes are lost if the process dies before the next flush.
+		 */
+		WRITE_BEHIND,
+		/**
+		 * Updates are coalesced like write behind, but an update only returns
+		 * once the batch holding it has been written.
+		 */
+		GROUP_COMMIT
+	}
+
+	private WriteMode writeMode = WriteMode.WRITE_BEHIND;
+
+	/**
+	 * Maximum number of cached accounts, accounts with pending writes are never
+	 * evicted.
+	 */
+	private int cacheSize = 100000;
+
+	/**
+	 * Pending updates that trigger a flush, also the JDBC batch size.
+	 */
+	private int batchSize = 500;
+
+	private long flushIntervalMillis = 50;
+}
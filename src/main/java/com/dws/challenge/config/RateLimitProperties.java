@@ -0,0 +1,57 @@
+package com.dws.challenge.config;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import lombok.Data;
+
+/**
+ * Admission control settings for the transfer endpoint, bound from the
+ * {@code transfer.rate-limit.*} properties.
+ *
+ * Account classes are matched on the account id prefix, the first matching
+ * class wins and {@link #defaultClass} applies to every other account.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "transfer.rate-limit")
+public class RateLimitProperties {
+
+	private boolean enabled = true;
+
+	/**
+	 * Maximum number of transfers executing at the same time across all accounts.
+	 */
+	private int maxConcurrentTransfers = 256;
+
+	/**
+	 * How often idle (fully refilled) buckets are dropped from memory.
+	 */
+	private long evictionIntervalMillis = 30000;
+
+	private AccountClass defaultClass = new AccountClass();
+
+	private Map<String, AccountClass> classes = new LinkedHashMap<>();
+
+	@Data
+	public static class AccountClass {
+
+		/**
+		 * Account id prefix selecting this class, unused for the default class.
+		 */
+		private String accountPrefix = "";
+
+		/**
+		 * Burst size, i.e. the number of transfers allowed back to back.
+		 */
+		private int capacity = 50;
+
+		/**
+		 * Sustained number of transfers per second.
+		 */
+		private double refillPerSecond = 20;
+	}
+}
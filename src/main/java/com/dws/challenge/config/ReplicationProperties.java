@@ -0,0 +1,60 @@
+package com.dws.challenge.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import lombok.Data;
+
+/**
+ * Primary/standby replication settings, bound from the {@code replication.*}
+ * properties.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "replication")
+public class ReplicationProperties {
+
+	public enum Role {
+		STANDALONE, PRIMARY, FOLLOWER
+	}
+
+	private Role role = Role.STANDALONE;
+
+	/**
+	 * Port the primary listens on for followers.
+	 */
+	private int port = 18090;
+
+	/**
+	 * Primary address, used by followers.
+	 */
+	private String primaryHost = "localhost";
+
+	private int primaryPort = 18090;
+
+	/**
+	 * If true a commit waits until every connected follower acknowledged it, up
+	 * to {@link #ackTimeoutMillis}.
+	 */
+	private boolean syncCommit = false;
+
+	private long ackTimeoutMillis = 1000;
+
+	/**
+	 * Maximum number of records sent in one frame.
+	 */
+	private int batchSize = 256;
+
+	/**
+	 * How long the sender waits for more records before sending a partial batch.
+	 */
+	private long flushIntervalMillis = 2;
+
+	/**
+	 * Records buffered per follower, a follower falling further behind is
+	 * disconnected and resynchronised on reconnect.
+	 */
+	private int followerQueueCapacity = 100000;
+
+	private long reconnectDelayMillis = 1000;
+}
@@ -0,0 +1,90 @@
+package com.dws.challenge.config;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import com.dws.challenge.scheduling.Lane;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Priority lane settings of transfer execution, bound from the
+ * {@code transfer.scheduler.*} properties.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "transfer.scheduler")
+public class SchedulerProperties {
+
+	private boolean enabled = true;
+
+	/**
+	 * Maximum number of transfers executing at the same time over all lanes.
+	 */
+	private int maxConcurrent = 32;
+
+	/**
+	 * Request threads of the servlet container. Admitted and queued transfers
+	 * occupy request threads, so {@link #maxConcurrent} plus the queue
+	 * capacities of all lanes must stay below it; otherwise a burst in one
+	 * lane could park every request thread and starve the others.
+	 */
+	private int requestThreads = 200;
+
+	/**
+	 * Lane of requests that neither name a lane nor carry a mapped API key.
+	 */
+	private Lane defaultLane = Lane.STANDARD;
+
+	/**
+	 * Lane per API key, takes precedence over the lane header.
+	 */
+	private Map<String, Lane> apiKeyLanes = new LinkedHashMap<>();
+
+	private Map<Lane, LaneSettings> lanes = defaultLanes();
+
+	private static Map<Lane, LaneSettings> defaultLanes() {
+		Map<Lane, LaneSettings> lanes = new EnumMap<>(Lane.class);
+		lanes.put(Lane.INTERACTIVE, new LaneSettings(8, 32, 64, 1000));
+		lanes.put(Lane.STANDARD, new LaneSettings(4, 24, 48, 5000));
+		lanes.put(Lane.BULK, new LaneSettings(1, 4, 16, 10000));
+		return lanes;
+	}
+
+	@Data
+	@NoArgsConstructor
+	public static class LaneSettings {
+
+		/**
+		 * Share of the execution slots while all lanes are waiting.
+		 */
+		private int weight = 1;
+
+		/**
+		 * Maximum number of transfers of this lane executing at the same time.
+		 */
+		private int maxConcurrent = 8;
+
+		/**
+		 * Transfers waiting for a slot at most, each on its request thread.
+		 */
+		private int queueCapacity = 16;
+
+		/**
+		 * Maximum time a transfer waits for a slot before it is rejected.
+		 */
+		private long queueTimeoutMillis = 5000;
+
+		public LaneSettings(int weight, int maxConcurrent, int queueCapacity, long queueTimeoutMillis) {
+			this.weight = weight;
+			this.maxConcurrent = maxConcurrent;
+			this.queueCapacity = queueCapacity;
+			this.queueTimeoutMillis = queueTimeoutMillis;
+		}
+	}
+}
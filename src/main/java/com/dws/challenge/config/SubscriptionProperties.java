@@ -0,0 +1,32 @@
+package com.dws.challenge.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import lombok.Data;
+
+/**
+ * Balance subscription settings, bound from the {@code subscription.*}
+ * properties.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "subscription")
+public class SubscriptionProperties {
+
+	private int maxSubscribers = 10000;
+
+	private int maxAccountsPerSubscriber = 1000;
+
+	/**
+	 * Threads writing updates to subscribers.
+	 */
+	private int dispatcherThreads = 4;
+
+	/**
+	 * A subscriber whose write has been blocked for longer than this is dropped.
+	 */
+	private long maxStallMillis = 5000;
+
+	private long emitterTimeoutMillis = 1800000;
+}
@@ -0,0 +1,70 @@
+package com.dws.challenge.config;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import lombok.Data;
+
+/**
+ * Per account velocity limits of outgoing transfers, bound from the
+ * {@code transfer.velocity.*} properties.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "transfer.velocity")
+public class VelocityProperties {
+
+	private boolean enabled = true;
+
+	private List<Rule> rules = new ArrayList<>();
+
+	/**
+	 * Decimal places of amounts, amounts are counted in these minor units.
+	 */
+	private int amountScale = 2;
+
+	/**
+	 * Maximum number of accounts with counters; when reached, transfers of
+	 * further accounts are rejected until idle accounts are evicted.
+	 */
+	private int maxTrackedAccounts = 500000;
+
+	/**
+	 * How often accounts without transfers in any window are dropped.
+	 */
+	private long evictionIntervalMillis = 60000;
+
+	/**
+	 * Minimum time between two eviction scans triggered by transfers of new
+	 * accounts once {@code maxTrackedAccounts} is reached.
+	 */
+	private long onDemandEvictionIntervalMillis = 1000;
+
+	@Data
+	public static class Rule {
+
+		private String name;
+
+		private Duration window = Duration.ofHours(1);
+
+		/**
+		 * Ring buckets per window, the window slides by window / buckets.
+		 */
+		private int buckets = 12;
+
+		/**
+		 * Maximum number of transfers in the window, 0 for no limit.
+		 */
+		private int maxCount;
+
+		/**
+		 * Maximum transferred amount in the window, null for no limit.
+		 */
+		private BigDecimal maxAmount;
+	}
+}
@@ -0,0 +1,38 @@
+package com.dws.challenge.config;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+
+/**
+ * Binary wire format for service to service callers.
+ *
+ * Requests sent with {@code Content-Type: application/cbor} and responses
+ * requested with {@code Accept: application/cbor} are encoded as CBOR by a
+ * single converter built once at startup. It is appended after the JSON
+ * converter so that JSON stays the default for every other request.
+ */
+@Configuration
+public class WireFormatConfig implements WebMvcConfigurer {
+
+	private final MappingJackson2CborHttpMessageConverter cborConverter;
+
+	@Autowired
+	public WireFormatConfig(Jackson2ObjectMapperBuilder builder) {
+		this.cborConverter = new MappingJackson2CborHttpMessageConverter(
+				builder.createXmlMapper(false).factory(new CBORFactory()).build());
+	}
+
+	@Override
+	public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+		converters.removeIf(converter -> converter instanceof MappingJackson2CborHttpMessageConverter);
+		converters.add(cborConverter);
+	}
+}
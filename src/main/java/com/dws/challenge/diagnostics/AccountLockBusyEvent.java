@@ -0,0 +1,35 @@
+package com.dws.challenge.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight recorder event of an account lock that could not be taken without
+ * waiting, i.e. a transfer rejected as busy.
+ */
+@Name("com.dws.challenge.AccountLockBusy")
+@Label("Account Lock Busy")
+@Category({ "Accounts", "Locks" })
+@Description("Account lock held by another thread on a try without waiting")
+@StackTrace(false)
+public class AccountLockBusyEvent extends Event {
+
+	@Label("Account")
+	private String accountId;
+
+	@Label("Holder")
+	private String holder;
+
+	public static void record(String accountId, Thread holder) {
+		AccountLockBusyEvent event = new AccountLockBusyEvent();
+		if (event.shouldCommit()) {
+			event.accountId = accountId;
+			event.holder = LockDiagnostics.threadName(holder);
+			event.commit();
+		}
+	}
+}
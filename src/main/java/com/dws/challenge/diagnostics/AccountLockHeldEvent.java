@@ -0,0 +1,49 @@
+package com.dws.challenge.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Flight recorder event of an account lock from its acquisition to its
+ * release, committed by the releasing thread.
+ */
+@Name("com.dws.challenge.AccountLockHeld")
+@Label("Account Lock Held")
+@Category({ "Accounts", "Locks" })
+@Description("Account lock from acquisition to release")
+@StackTrace(false)
+@Threshold("1 ms")
+public class AccountLockHeldEvent extends Event {
+
+	private static final EventType TYPE = EventType.getEventType(AccountLockHeldEvent.class);
+
+	@Label("Account")
+	private String accountId;
+
+	/**
+	 * @return the started event, or null while no recording enables it, so
+	 *         that locking allocates nothing outside of recordings
+	 */
+	public static AccountLockHeldEvent start() {
+		if (!TYPE.isEnabled()) {
+			return null;
+		}
+		AccountLockHeldEvent event = new AccountLockHeldEvent();
+		event.begin();
+		return event;
+	}
+
+	public void finish(String accountId) {
+		end();
+		if (shouldCommit()) {
+			this.accountId = accountId;
+			commit();
+		}
+	}
+}
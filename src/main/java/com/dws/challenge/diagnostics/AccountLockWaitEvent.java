@@ -0,0 +1,46 @@
+package com.dws.challenge.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Flight recorder event of a thread waiting for an account lock.
+ */
+@Name("com.dws.challenge.AccountLockWait")
+@Label("Account Lock Wait")
+@Category({ "Accounts", "Locks" })
+@Description("Wait for an account lock, with its holder when the wait started")
+@StackTrace(false)
+@Threshold("1 ms")
+public class AccountLockWaitEvent extends Event {
+
+	@Label("Account")
+	private String accountId;
+
+	@Label("Holder")
+	private String holder;
+
+	@Label("Acquired")
+	private boolean acquired;
+
+	public static AccountLockWaitEvent start() {
+		AccountLockWaitEvent event = new AccountLockWaitEvent();
+		event.begin();
+		return event;
+	}
+
+	public void finish(String accountId, Thread holder, boolean acquired) {
+		end();
+		if (shouldCommit()) {
+			this.accountId = accountId;
+			this.holder = LockDiagnostics.threadName(holder);
+			this.acquired = acquired;
+			commit();
+		}
+	}
+}
@@ -0,0 +1,22 @@
+package com.dws.challenge.diagnostics;
+
+import java.util.List;
+
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * An account lock held at the time of a dump, with the threads queued for it.
+ */
+@Value
+@Builder
+public class HeldLock {
+
+	private final String accountId;
+
+	private final String owner;
+
+	private final long heldMillis;
+
+	private final List<String> waiters;
+}
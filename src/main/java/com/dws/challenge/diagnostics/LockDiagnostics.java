@@ -0,0 +1,78 @@
+package com.dws.challenge.diagnostics;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.dws.challenge.util.LockUtilByAccountNo;
+
+/**
+ * Builds the holder/waiter graph of the account locks for live diagnosis of
+ * stalled transfers; the history of waits and holds is recorded by the flight
+ * recorder events of this package.
+ */
+@Component
+public class LockDiagnostics {
+
+	private final LockUtilByAccountNo lockUtilByAccountNo;
+
+	@Autowired
+	public LockDiagnostics(LockUtilByAccountNo lockUtilByAccountNo) {
+		this.lockUtilByAccountNo = lockUtilByAccountNo;
+	}
+
+	/**
+	 * @param top number of longest held locks to list
+	 */
+	public LockGraph dump(int top) {
+		List<HeldLock> heldLocks = lockUtilByAccountNo.getHeldLocks();
+		Map<String, List<String>> waitsFor = new LinkedHashMap<>();
+		for (HeldLock heldLock : heldLocks) {
+			for (String waiter : heldLock.getWaiters()) {
+				waitsFor.computeIfAbsent(waiter, w -> new ArrayList<>()).add(heldLock.getOwner());
+			}
+		}
+		return LockGraph.builder().takenAt(Instant.now()).heldLocks(heldLocks.size()).waitingThreads(waitsFor.size())
+				.contended(heldLocks.stream().filter(heldLock -> !heldLock.getWaiters().isEmpty())
+						.collect(Collectors.toList()))
+				.longestHeld(heldLocks.stream().sorted(Comparator.comparingLong(HeldLock::getHeldMillis).reversed())
+						.limit(top).collect(Collectors.toList()))
+				.waitsFor(waitsFor).deadlocks(findCycles(waitsFor)).build();
+	}
+
+	public static String threadName(Thread thread) {
+		return thread != null ? thread.getName() + "#" + thread.getId() : null;
+	}
+
+	/**
+	 * A thread waits for one lock at a time, so every cycle is found by
+	 * following the first holder from each thread.
+	 */
+	public static List<List<String>> findCycles(Map<String, List<String>> waitsFor) {
+		List<List<String>> cycles = new ArrayList<>();
+		Set<String> done = new HashSet<>();
+		for (String start : waitsFor.keySet()) {
+			List<String> path = new ArrayList<>();
+			String thread = start;
+			while (thread != null && !done.contains(thread) && !path.contains(thread)) {
+				path.add(thread);
+				List<String> holders = waitsFor.get(thread);
+				thread = holders != null ? holders.get(0) : null;
+			}
+			if (thread != null && path.contains(thread)) {
+				cycles.add(new ArrayList<>(path.subList(path.indexOf(thread), path.size())));
+			}
+			done.addAll(path);
+		}
+		return cycles;
+	}
+}
@@ -0,0 +1,39 @@
+package com.dws.challenge.diagnostics;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * Holder/waiter graph of the account locks at one point in time.
+ */
+@Value
+@Builder
+public class LockGraph {
+
+	private final Instant takenAt;
+
+	private final int heldLocks;
+
+	private final int waitingThreads;
+
+	/**
+	 * Held locks with at least one waiter.
+	 */
+	private final List<HeldLock> contended;
+
+	private final List<HeldLock> longestHeld;
+
+	/**
+	 * Waiting thread to the threads holding the locks it waits for.
+	 */
+	private final Map<String, List<String>> waitsFor;
+
+	/**
+	 * Cycles in {@link #waitsFor}, each listing the threads of one deadlock.
+	 */
+	private final List<List<String>> deadlocks;
+}
@@ -0,0 +1,47 @@
+package com.dws.challenge.diagnostics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Flight recorder event of an account update in the repository, e.g. a
+ * write-through statement or a wait for a group commit.
+ */
+@Name("com.dws.challenge.RepositoryUpdate")
+@Label("Repository Update")
+@Category({ "Accounts", "Repository" })
+@Description("Account update in the accounts repository")
+@StackTrace(false)
+@Threshold("1 ms")
+public class RepositoryUpdateEvent extends Event {
+
+	@Label("Account")
+	private String accountId;
+
+	@Label("Repository")
+	private String repository;
+
+	@Label("Write Mode")
+	private String writeMode;
+
+	public static RepositoryUpdateEvent start() {
+		RepositoryUpdateEvent event = new RepositoryUpdateEvent();
+		event.begin();
+		return event;
+	}
+
+	public void finish(String accountId, String repository, String writeMode) {
+		end();
+		if (shouldCommit()) {
+			this.accountId = accountId;
+			this.repository = repository;
+			this.writeMode = writeMode;
+			commit();
+		}
+	}
+}
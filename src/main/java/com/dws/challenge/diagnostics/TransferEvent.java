@@ -0,0 +1,75 @@
+package com.dws.challenge.diagnostics;
+
+import com.dws.challenge.domain.AccountTransfer;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Flight recorder event of a transfer from its start to the commit or the
+ * rejection, recorded for every transfer.
+ */
+@Name("com.dws.challenge.Transfer")
+@Label("Transfer")
+@Category({ "Accounts", "Transfers" })
+@Description("Transfer from start to commit or rejection")
+@StackTrace(false)
+@Threshold("0 ms")
+public class TransferEvent extends Event {
+
+	public static final String COMMITTED = "COMMITTED";
+
+	public static final String REJECTED = "REJECTED";
+
+	@Label("From Account")
+	private String fromAccountId;
+
+	@Label("To Account")
+	private String toAccountId;
+
+	@Label("Amount")
+	@Description("Amount of the transfer or of its first leg")
+	private String amount;
+
+	@Label("Legs")
+	private int legs;
+
+	@Label("Outcome")
+	private String outcome;
+
+	@Label("Reason")
+	@Description("Exception of a rejected transfer")
+	private String reason;
+
+	public static TransferEvent start() {
+		TransferEvent event = new TransferEvent();
+		event.begin();
+		return event;
+	}
+
+	/**
+	 * Used to record the outcome, the fields are only set for a recorded event.
+	 *
+	 * @param transfer the transfer, or the first leg of a multi-leg transfer
+	 * @param failure  null for a committed transfer
+	 */
+	public void finish(AccountTransfer transfer, int legs, Throwable failure) {
+		end();
+		if (shouldCommit()) {
+			if (transfer != null) {
+				this.fromAccountId = transfer.getFromAccountId();
+				this.toAccountId = transfer.getToAccountId();
+				this.amount = transfer.getBalance() != null ? transfer.getBalance().toPlainString() : null;
+			}
+			this.legs = legs;
+			this.outcome = failure == null ? COMMITTED : REJECTED;
+			this.reason = failure != null ? failure.getClass().getSimpleName() : null;
+			commit();
+		}
+	}
+}
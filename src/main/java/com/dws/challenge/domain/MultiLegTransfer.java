@@ -0,0 +1,40 @@
+package com.dws.challenge.domain;
+
+import java.io.Serializable;
+import java.util.List;
+
+import javax.validation.Valid;
+import javax.validation.constraints.NotEmpty;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import lombok.Data;
+
+/**
+ * Used as Request Body for transfers that are committed together, e.g. one
+ * debit paying a merchant, a platform fee and tax.
+ */
+@Data
+public class MultiLegTransfer implements Serializable {
+
+	private static final long serialVersionUID = -2279354203761046310L;
+
+	public static final int MAX_LEGS = 100;
+
+	/**
+	 * Legs of the transfer, each validated like a single transfer
+	 */
+	@NotNull
+	@NotEmpty
+	@Size(max = MAX_LEGS, message = "A multi-leg transfer has at most " + MAX_LEGS + " legs.")
+	@Valid
+	private final List<AccountTransfer> legs;
+
+	@JsonCreator
+	public MultiLegTransfer(@JsonProperty("legs") List<AccountTransfer> legs) {
+		this.legs = legs;
+	}
+}
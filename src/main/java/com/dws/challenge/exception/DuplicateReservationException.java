@@ -0,0 +1,12 @@
+package com.dws.challenge.exception;
+
+/**
+ * Runtime Exception Used to throw for a cross node reservation id the
+ * participant has already prepared or committed
+ */
+public class DuplicateReservationException extends RuntimeException {
+
+  public DuplicateReservationException(String message) {
+    super(message);
+  }
+}
@@ -0,0 +1,12 @@
+package com.dws.challenge.exception;
+
+/**
+ * Runtime Exception Used to throw when a priority lane is full or a transfer
+ * waited longer than the lane allows for an execution slot
+ */
+public class LaneSaturatedException extends RuntimeException {
+
+  public LaneSaturatedException(String message) {
+    super(message);
+  }
+}
@@ -0,0 +1,13 @@
+package com.dws.challenge.exception;
+
+
+/**
+ * Runtime Exception Used to throw when a cluster wide request can not reach
+ * one of the nodes
+ */
+public class NodeUnavailableException extends RuntimeException {
+
+  public NodeUnavailableException(String message) {
+    super(message);
+  }
+}
@@ -0,0 +1,18 @@
+package com.dws.challenge.exception;
+
+import lombok.Getter;
+
+/**
+ * Runtime Exception Used to throw when an account exceeds its transfer rate or
+ * the global transfer concurrency limit is reached
+ */
+public class RateLimitExceededException extends RuntimeException {
+
+  @Getter
+  private final long retryAfterSeconds;
+
+  public RateLimitExceededException(String message, long retryAfterSeconds) {
+    super(message);
+    this.retryAfterSeconds = retryAfterSeconds;
+  }
+}
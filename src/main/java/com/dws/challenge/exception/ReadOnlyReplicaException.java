@@ -0,0 +1,12 @@
+package com.dws.challenge.exception;
+
+
+/**
+ * Runtime Exception Used to throw for changes sent to a read-only follower
+ */
+public class ReadOnlyReplicaException extends RuntimeException {
+
+  public ReadOnlyReplicaException(String message) {
+    super(message);
+  }
+}
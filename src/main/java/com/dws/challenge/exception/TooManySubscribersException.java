@@ -0,0 +1,12 @@
+package com.dws.challenge.exception;
+
+
+/**
+ * Runtime Exception Used to throw when no more balance subscriptions are accepted
+ */
+public class TooManySubscribersException extends RuntimeException {
+
+  public TooManySubscribersException(String message) {
+    super(message);
+  }
+}
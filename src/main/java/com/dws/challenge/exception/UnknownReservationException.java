@@ -0,0 +1,12 @@
+package com.dws.challenge.exception;
+
+/**
+ * Runtime Exception Used to throw for a cross node reservation the participant
+ * has neither prepared nor committed, e.g. after a restart
+ */
+public class UnknownReservationException extends RuntimeException {
+
+  public UnknownReservationException(String message) {
+    super(message);
+  }
+}
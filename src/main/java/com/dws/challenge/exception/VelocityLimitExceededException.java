@@ -0,0 +1,18 @@
+package com.dws.challenge.exception;
+
+import lombok.Getter;
+
+/**
+ * Runtime Exception Used to throw when a transfer would exceed a velocity
+ * limit of the from account, e.g. the number of transfers per hour
+ */
+public class VelocityLimitExceededException extends RuntimeException {
+
+  @Getter
+  private final String rule;
+
+  public VelocityLimitExceededException(String message, String rule) {
+    super(message);
+    this.rule = rule;
+  }
+}
@@ -0,0 +1,61 @@
+package com.dws.challenge.export;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Encoded segment files of one point-in-time snapshot, deleted on close.
+ */
+@Slf4j
+@Getter
+public class AccountSnapshot implements Closeable {
+
+	private final ExportFormat format;
+
+	private final Instant takenAt;
+
+	private final long accounts;
+
+	private final Path directory;
+
+	private final List<Path> segments;
+
+	AccountSnapshot(ExportFormat format, Instant takenAt, long accounts, Path directory, List<Path> segments) {
+		this.format = format;
+		this.takenAt = takenAt;
+		this.accounts = accounts;
+		this.directory = directory;
+		this.segments = List.copyOf(segments);
+	}
+
+	public long getSize() throws IOException {
+		long size = 0;
+		for (Path segment : segments) {
+			size += Files.size(segment);
+		}
+		return size;
+	}
+
+	@Override
+	public void close() {
+		for (Path segment : segments) {
+			delete(segment);
+		}
+		delete(directory);
+	}
+
+	private static void delete(Path path) {
+		try {
+			Files.deleteIfExists(path);
+		} catch (IOException e) {
+			log.warn("Failed to delete snapshot file {}", path, e);
+		}
+	}
+}
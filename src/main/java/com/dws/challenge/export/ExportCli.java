@@ -0,0 +1,75 @@
+package com.dws.challenge.export;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.Locale;
+
+/**
+ * Command line client of the export endpoint, streaming the snapshot straight
+ * into a file:
+ *
+ * <pre>
+ * java -cp app.jar com.dws.challenge.export.ExportCli \
+ *     [--url http://localhost:18080] [--format ndjson|columnar] [--out accounts.ndjson.gz]
+ * </pre>
+ */
+public final class ExportCli {
+
+	private ExportCli() {
+	}
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		String url = "http://localhost:18080";
+		String formatName = "ndjson";
+		String out = null;
+		for (int i = 0; i < args.length; i++) {
+			String value = i + 1 < args.length ? args[i + 1] : null;
+			switch (args[i]) {
+			case "--url":
+				url = value;
+				i++;
+				break;
+			case "--format":
+				formatName = value;
+				i++;
+				break;
+			case "--out":
+				out = value;
+				i++;
+				break;
+			default:
+				System.err.println("Unknown option " + args[i]
+						+ ". Usage: ExportCli [--url base-url] [--format ndjson|columnar] [--out file]");
+				System.exit(2);
+			}
+		}
+		ExportFormat format = ExportFormat.of(formatName);
+		Path target = Paths.get(out != null ? out : "accounts." + format.getFileExtension());
+		Path partial = target.resolveSibling(target.getFileName() + ".part");
+
+		HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(10)).build();
+		HttpRequest request = HttpRequest
+				.newBuilder(URI.create(url + "/v1/export/accounts?format=" + format.name().toLowerCase(Locale.ROOT))).GET().build();
+		long startNanos = System.nanoTime();
+		HttpResponse<Path> response = client.send(request, HttpResponse.BodyHandlers.ofFile(partial));
+		if (response.statusCode() != 200) {
+			System.err.println("Export failed with status " + response.statusCode() + ": "
+					+ Files.readString(partial).trim());
+			Files.deleteIfExists(partial);
+			System.exit(1);
+		}
+		Files.move(partial, target, StandardCopyOption.REPLACE_EXISTING);
+		System.out.println("Exported " + response.headers().firstValue("X-Snapshot-Accounts").orElse("?")
+				+ " accounts as of " + response.headers().firstValue("X-Snapshot-Taken-At").orElse("?") + " to "
+				+ target + " (" + Files.size(target) + " bytes in "
+				+ (System.nanoTime() - startNanos) / 1_000_000 + " ms)");
+	}
+}
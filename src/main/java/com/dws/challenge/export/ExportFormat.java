@@ -0,0 +1,46 @@
+package com.dws.challenge.export;
+
+import java.util.Locale;
+
+/**
+ * Encodings of an account snapshot. Each segment file is one gzip member, so
+ * the concatenated segments form a single valid gzip stream.
+ */
+public enum ExportFormat {
+
+	/**
+	 * One JSON object per line: {@code {"accountId":"Id-1","balance":100.50}}.
+	 */
+	NDJSON("ndjson.gz"),
+
+	/**
+	 * Per segment: int magic {@link #COLUMNAR_MAGIC}, int row count, the
+	 * account ids as modified UTF-8 ({@code DataOutput.writeUTF}), then the
+	 * balances as int scale, int length and the unscaled two's complement
+	 * bytes. All numbers big endian.
+	 */
+	COLUMNAR("cols.gz");
+
+	public static final int COLUMNAR_MAGIC = 0x41434f4c;
+
+	private final String fileExtension;
+
+	ExportFormat(String fileExtension) {
+		this.fileExtension = fileExtension;
+	}
+
+	public String getFileExtension() {
+		return fileExtension;
+	}
+
+	/**
+	 * @throws IllegalArgumentException if the name is no format
+	 */
+	public static ExportFormat of(String name) {
+		try {
+			return valueOf(name.trim().toUpperCase(Locale.ROOT));
+		} catch (IllegalArgumentException e) {
+			throw new IllegalArgumentException("Unknown export format " + name + ".");
+		}
+	}
+}
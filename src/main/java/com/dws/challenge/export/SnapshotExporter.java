@@ -0,0 +1,359 @@
+package com.dws.challenge.export;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BiConsumer;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.dws.challenge.config.ExportProperties;
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.repository.AccountsRepository;
+import com.dws.challenge.service.AccountChangeListener;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Writes point-in-time snapshots of all balances into encoded segment files,
+ * which are then streamed to clients without encoding or buffering.
+ *
+ * Transfers go on while a snapshot is written. Commits that start after the
+ * snapshot point save the balances they are about to change (see
+ * {@link AccountChangeListener#beforeCommit(String...)}), and the snapshot
+ * prefers a saved balance over the one it read. The balance is read before
+ * the saved one is looked up, so a change seen in the read always finds its
+ * saved balance. Commits started before the snapshot point are waited for:
+ * every commit registers in the counter of the current epoch, and starting a
+ * snapshot moves to the next epoch and waits until the previous one drained.
+ *
+ * Memory grows with the accounts changed while writing and with one columnar
+ * segment, not with the number of accounts: the balances are streamed from
+ * the repository (see {@link AccountsRepository#forEachBalance}), and the
+ * window ends when the segments are on local disk, however slowly clients
+ * read them.
+ */
+@Slf4j
+@Component
+public class SnapshotExporter implements AccountChangeListener {
+
+	private static final int EPOCH_DRAIN_PARK_NANOS = 10_000;
+
+	private final AccountsRepository accountsRepository;
+
+	private final ExportProperties properties;
+
+	private final AtomicLong[] activeCommits = { new AtomicLong(), new AtomicLong() };
+
+	private final ThreadLocal<int[]> commitEpoch = ThreadLocal.withInitial(() -> new int[1]);
+
+	private volatile int epoch;
+
+	/**
+	 * Balances before the first change since the snapshot point, empty for
+	 * accounts created since; null while no snapshot is written.
+	 */
+	private volatile Map<String, Optional<BigDecimal>> savedBalances;
+
+	@Autowired
+	public SnapshotExporter(AccountsRepository accountsRepository, ExportProperties properties) {
+		this.accountsRepository = accountsRepository;
+		this.properties = properties;
+	}
+
+	/**
+	 * Removes segments left over by a stopped instance.
+	 */
+	@PostConstruct
+	public void cleanUp() throws IOException {
+		Path root = Paths.get(properties.getDirectory());
+		if (!Files.isDirectory(root)) {
+			return;
+		}
+		try (DirectoryStream<Path> snapshots = Files.newDirectoryStream(root, "snapshot-*")) {
+			for (Path snapshot : snapshots) {
+				try (Stream<Path> files = Files.walk(snapshot)) {
+					files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+				}
+			}
+		}
+	}
+
+	@Override
+	public void beforeCommit(String... accountIds) {
+		int current;
+		while (true) {
+			current = epoch;
+			activeCommits[current & 1].incrementAndGet();
+			if (epoch == current) {
+				break;
+			}
+			activeCommits[current & 1].decrementAndGet();
+		}
+		commitEpoch.get()[0] = current;
+		Map<String, Optional<BigDecimal>> saved = savedBalances;
+		if (saved != null) {
+			for (String accountId : accountIds) {
+				saved.computeIfAbsent(accountId,
+						id -> Optional.ofNullable(accountsRepository.getAccount(id)).map(Account::getBalance));
+			}
+		}
+	}
+
+	@Override
+	public void afterCommit(String... accountIds) {
+		activeCommits[commitEpoch.get()[0] & 1].decrementAndGet();
+	}
+
+	/**
+	 * Used to write a snapshot of all balances. Snapshots are written one at a
+	 * time; the caller must close the returned snapshot.
+	 *
+	 * @param format encoding of the segments
+	 * @return snapshot as of the start of this call
+	 * @throws UncheckedIOException if the segments can not be written
+	 */
+	public synchronized AccountSnapshot snapshot(ExportFormat format) {
+		long startNanos = System.nanoTime();
+		Map<String, Optional<BigDecimal>> saved = new ConcurrentHashMap<>();
+		savedBalances = saved;
+		int previous = epoch;
+		epoch = previous + 1;
+		while (activeCommits[previous & 1].get() != 0) {
+			LockSupport.parkNanos(EPOCH_DRAIN_PARK_NANOS);
+		}
+		Instant takenAt = Instant.now();
+
+		Path directory = null;
+		List<Path> segments = new ArrayList<>();
+		SnapshotWriter writer = null;
+		try {
+			Path root = Files.createDirectories(Paths.get(properties.getDirectory()));
+			directory = Files.createTempDirectory(root, "snapshot-");
+			writer = new SnapshotWriter(format, directory, segments, saved);
+			try {
+				accountsRepository.forEachBalance(writer);
+			} catch (UncheckedIOException e) {
+				throw e.getCause();
+			}
+			writer.finish();
+		} catch (IOException e) {
+			discard(writer, new AccountSnapshot(format, takenAt, 0, directory, segments));
+			throw new UncheckedIOException("Failed to write the account snapshot", e);
+		} catch (RuntimeException e) {
+			discard(writer, new AccountSnapshot(format, takenAt, 0, directory, segments));
+			throw e;
+		} finally {
+			savedBalances = null;
+		}
+		long accounts = writer.accounts;
+		log.info("Wrote {} snapshot of {} accounts in {} segments within {} ms", format, accounts, segments.size(),
+				(System.nanoTime() - startNanos) / 1_000_000);
+		return new AccountSnapshot(format, takenAt, accounts, directory, segments);
+	}
+
+	/**
+	 * Closes the open segment of a failed snapshot and deletes its files.
+	 */
+	private static void discard(SnapshotWriter writer, AccountSnapshot snapshot) {
+		if (writer != null) {
+			writer.abort();
+		}
+		snapshot.close();
+	}
+
+	/**
+	 * Receives the balances streamed by the repository and cuts them into
+	 * segments.
+	 */
+	private final class SnapshotWriter implements BiConsumer<String, BigDecimal> {
+
+		private final ExportFormat format;
+
+		private final Path directory;
+
+		private final List<Path> segments;
+
+		private final Map<String, Optional<BigDecimal>> saved;
+
+		private SegmentWriter segment;
+
+		private long accounts;
+
+		private SnapshotWriter(ExportFormat format, Path directory, List<Path> segments,
+				Map<String, Optional<BigDecimal>> saved) {
+			this.format = format;
+			this.directory = directory;
+			this.segments = segments;
+			this.saved = saved;
+		}
+
+		@Override
+		public void accept(String accountId, BigDecimal balance) {
+			// the balance was read first, a change after that read has saved the earlier balance
+			Optional<BigDecimal> savedBalance = saved.get(accountId);
+			if (savedBalance != null) {
+				if (savedBalance.isEmpty()) {
+					return;
+				}
+				balance = savedBalance.get();
+			}
+			try {
+				if (segment == null) {
+					segment = newSegment(format, directory, segments);
+				}
+				segment.add(accountId, balance);
+				accounts++;
+				if (segment.rows == properties.getSegmentRows()) {
+					segment.close();
+					segment = null;
+				}
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		private void abort() {
+			if (segment == null) {
+				return;
+			}
+			try {
+				segment.close();
+			} catch (IOException | RuntimeException e) {
+				log.warn("Failed to close a segment of a failed snapshot", e);
+			}
+			segment = null;
+		}
+
+		private void finish() throws IOException {
+			if (segment != null) {
+				segment.close();
+			} else if (segments.isEmpty()) {
+				newSegment(format, directory, segments).close();
+			}
+		}
+	}
+
+	private SegmentWriter newSegment(ExportFormat format, Path directory, List<Path> segments) throws IOException {
+		Path segment = directory.resolve(String.format("segment-%05d.%s", segments.size(), format.getFileExtension()));
+		segments.add(segment);
+		OutputStream out = new GZIPOutputStream(Files.newOutputStream(segment), 64 * 1024);
+		return format == ExportFormat.NDJSON ? new NdjsonSegmentWriter(out)
+				: new ColumnarSegmentWriter(out, properties.getSegmentRows());
+	}
+
+	private abstract static class SegmentWriter {
+
+		private int rows;
+
+		void add(String accountId, BigDecimal balance) throws IOException {
+			write(accountId, balance);
+			rows++;
+		}
+
+		abstract void write(String accountId, BigDecimal balance) throws IOException;
+
+		abstract void close() throws IOException;
+	}
+
+	private static final class NdjsonSegmentWriter extends SegmentWriter {
+
+		private final Writer writer;
+
+		private NdjsonSegmentWriter(OutputStream out) {
+			this.writer = new OutputStreamWriter(new BufferedOutputStream(out, 64 * 1024), StandardCharsets.UTF_8);
+		}
+
+		@Override
+		void write(String accountId, BigDecimal balance) throws IOException {
+			writer.write("{\"accountId\":\"");
+			writeEscaped(accountId);
+			writer.write("\",\"balance\":");
+			writer.write(balance.toPlainString());
+			writer.write("}\n");
+		}
+
+		private void writeEscaped(String value) throws IOException {
+			for (int i = 0; i < value.length(); i++) {
+				char c = value.charAt(i);
+				if (c == '"' || c == '\\') {
+					writer.write('\\');
+					writer.write(c);
+				} else if (c < 0x20) {
+					writer.write(String.format("\\u%04x", (int) c));
+				} else {
+					writer.write(c);
+				}
+			}
+		}
+
+		@Override
+		void close() throws IOException {
+			writer.close();
+		}
+	}
+
+	/**
+	 * Buffers one segment, as the columns are written one after the other.
+	 */
+	private static final class ColumnarSegmentWriter extends SegmentWriter {
+
+		private final DataOutputStream out;
+
+		private final List<String> accountIds;
+
+		private final List<BigDecimal> balances;
+
+		private ColumnarSegmentWriter(OutputStream out, int segmentRows) {
+			this.out = new DataOutputStream(new BufferedOutputStream(out, 64 * 1024));
+			this.accountIds = new ArrayList<>(Math.min(segmentRows, 1 << 16));
+			this.balances = new ArrayList<>(Math.min(segmentRows, 1 << 16));
+		}
+
+		@Override
+		void write(String accountId, BigDecimal balance) {
+			accountIds.add(accountId);
+			balances.add(balance);
+		}
+
+		@Override
+		void close() throws IOException {
+			out.writeInt(ExportFormat.COLUMNAR_MAGIC);
+			out.writeInt(accountIds.size());
+			for (String accountId : accountIds) {
+				out.writeUTF(accountId);
+			}
+			for (BigDecimal balance : balances) {
+				byte[] unscaled = balance.unscaledValue().toByteArray();
+				out.writeInt(balance.scale());
+				out.writeInt(unscaled.length);
+				out.write(unscaled);
+			}
+			out.close();
+		}
+	}
+}
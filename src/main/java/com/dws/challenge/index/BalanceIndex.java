@@ -0,0 +1,177 @@
+package com.dws.challenge.index;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.AccountTransfer;
+import com.dws.challenge.repository.AccountsRepository;
+import com.dws.challenge.service.AccountChangeListener;
+
+/**
+ * Secondary index of all accounts ordered by balance, for range and top-N
+ * queries that would otherwise scan the whole repository.
+ *
+ * Maintained at commit time: a change of an account adds its new entry to a
+ * concurrent skip list and removes the previous one, so queries never block
+ * transfers. Every entry remembers the
+ * {@link AccountsRepository#getClearCount() clear count} it was indexed at, so
+ * the entries of accounts removed by {@link AccountsRepository#clearAccounts()}
+ * are dropped when a query meets them, without reading the repository.
+ */
+@Component
+public class BalanceIndex implements AccountChangeListener {
+
+	public static final int MAX_PAGE_SIZE = 1000;
+
+	private final AccountsRepository accountsRepository;
+
+	private final NavigableSet<Entry> entries = new ConcurrentSkipListSet<>();
+
+	private final Map<String, Entry> entryByAccount = new ConcurrentHashMap<>();
+
+	private static final class Entry implements Comparable<Entry> {
+
+		private final BigDecimal balance;
+		private final String accountId;
+		private final long clearCount;
+
+		private Entry(BigDecimal balance, String accountId) {
+			this(balance, accountId, 0);
+		}
+
+		private Entry(BigDecimal balance, String accountId, long clearCount) {
+			this.balance = balance;
+			this.accountId = accountId;
+			this.clearCount = clearCount;
+		}
+
+		@Override
+		public int compareTo(Entry other) {
+			int byBalance = balance.compareTo(other.balance);
+			return byBalance != 0 ? byBalance : accountId.compareTo(other.accountId);
+		}
+	}
+
+	@Autowired
+	public BalanceIndex(AccountsRepository accountsRepository) {
+		this.accountsRepository = accountsRepository;
+	}
+
+	@PostConstruct
+	public void rebuild() {
+		accountsRepository.forEachBalance(this::index);
+	}
+
+	@Override
+	public void onAccountCreated(Account account) {
+		index(account);
+	}
+
+	@Override
+	public void onTransferCommitted(AccountTransfer accountTransfer, Account fromAccount, Account toAccount) {
+		index(fromAccount);
+		index(toAccount);
+	}
+
+	@Override
+	public void onBalanceAdjusted(Account account, BigDecimal delta) {
+		index(account);
+	}
+
+	/**
+	 * Changes of one account are published under its lock, so updates of the
+	 * same account never interleave here.
+	 */
+	private void index(Account account) {
+		index(account.getAccountId(), account.getBalance());
+	}
+
+	private void index(String accountId, BigDecimal balance) {
+		Entry entry = new Entry(balance, accountId, accountsRepository.getClearCount());
+		Entry previous = entryByAccount.get(accountId);
+		if (previous != null && previous.compareTo(entry) == 0 && previous.clearCount == entry.clearCount) {
+			return;
+		}
+		entries.add(entry);
+		entryByAccount.put(accountId, entry);
+		if (previous != null) {
+			entries.remove(previous);
+		}
+	}
+
+	/**
+	 * Used to page through the accounts with a balance below the threshold,
+	 * lowest balance first.
+	 * @param threshold      exclusive upper bound
+	 * @param limit          page size, at most {@link #MAX_PAGE_SIZE}
+	 * @param afterBalance   cursor of the previous page or null
+	 * @param afterAccountId cursor of the previous page or null
+	 */
+	public BalancePage balanceBelow(BigDecimal threshold, int limit, BigDecimal afterBalance, String afterAccountId) {
+		NavigableSet<Entry> range = entries.headSet(new Entry(threshold, ""), false);
+		if (afterBalance != null && afterAccountId != null) {
+			range = range.tailSet(new Entry(afterBalance, afterAccountId), false);
+		}
+		return page(range, limit);
+	}
+
+	/**
+	 * Used to page through the accounts by descending balance.
+	 * @param limit          page size, at most {@link #MAX_PAGE_SIZE}
+	 * @param afterBalance   cursor of the previous page or null
+	 * @param afterAccountId cursor of the previous page or null
+	 */
+	public BalancePage topBalances(int limit, BigDecimal afterBalance, String afterAccountId) {
+		NavigableSet<Entry> range = entries.descendingSet();
+		if (afterBalance != null && afterAccountId != null) {
+			range = range.tailSet(new Entry(afterBalance, afterAccountId), false);
+		}
+		return page(range, limit);
+	}
+
+	/**
+	 * @param limit requested page size
+	 * @return page size actually served, between 1 and {@link #MAX_PAGE_SIZE}
+	 */
+	public static int pageSize(int limit) {
+		return Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+	}
+
+	private BalancePage page(NavigableSet<Entry> range, int limit) {
+		int size = pageSize(limit);
+		long clearCount = accountsRepository.getClearCount();
+		List<Account> accounts = new ArrayList<>(size);
+		Entry last = null;
+		Iterator<Entry> iterator = range.iterator();
+		while (iterator.hasNext() && accounts.size() < size) {
+			Entry entry = iterator.next();
+			if (entryByAccount.get(entry.accountId) != entry) {
+				// superseded by a newer entry added meanwhile
+				continue;
+			}
+			if (entry.clearCount != clearCount) {
+				entryByAccount.remove(entry.accountId, entry);
+				entries.remove(entry);
+				continue;
+			}
+			accounts.add(new Account(entry.accountId, entry.balance));
+			last = entry;
+		}
+		if (last == null || !iterator.hasNext()) {
+			return new BalancePage(accounts, null, null);
+		}
+		return new BalancePage(accounts, last.balance, last.accountId);
+	}
+}
@@ -0,0 +1,34 @@
+package com.dws.challenge.index;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import com.dws.challenge.domain.Account;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import lombok.Value;
+
+/**
+ * One page of a balance query. The cursor fields are null on the last page,
+ * otherwise they are passed back as {@code afterBalance}/{@code afterAccountId}
+ * to get the next page.
+ */
+@Value
+public class BalancePage {
+
+	List<Account> accounts;
+
+	BigDecimal nextAfterBalance;
+
+	String nextAfterAccountId;
+
+	@JsonCreator
+	public BalancePage(@JsonProperty("accounts") List<Account> accounts,
+			@JsonProperty("nextAfterBalance") BigDecimal nextAfterBalance,
+			@JsonProperty("nextAfterAccountId") String nextAfterAccountId) {
+		this.accounts = accounts;
+		this.nextAfterBalance = nextAfterBalance;
+		this.nextAfterAccountId = nextAfterAccountId;
+	}
+}
@@ -0,0 +1,77 @@
+package com.dws.challenge.replication;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.Data;
+
+/**
+ * Binary frames of the replication stream.
+ *
+ * Primary to follower: {@code int count} followed by {@code count} records of
+ * {@code byte type, long sequence, UTF accountId, int scale, short length,
+ * byte[length] unscaledValue}. Follower to primary: {@code long sequence} of the
+ * last applied record.
+ *
+ * Records carry the committed balance rather than the delta, so applying a
+ * record twice or applying a snapshot and the live stream out of step converges
+ * to the same state.
+ */
+final class ReplicationCodec {
+
+	static final byte UPSERT = 1;
+
+	private ReplicationCodec() {
+	}
+
+	@Data
+	static final class Record {
+		private final byte type;
+		private final long sequence;
+		private final String accountId;
+		private final BigDecimal balance;
+	}
+
+	static void writeBatch(DataOutputStream out, List<Record> records) throws IOException {
+		out.writeInt(records.size());
+		for (Record record : records) {
+			out.writeByte(record.getType());
+			out.writeLong(record.getSequence());
+			out.writeUTF(record.getAccountId());
+			out.writeInt(record.getBalance().scale());
+			byte[] unscaled = record.getBalance().unscaledValue().toByteArray();
+			out.writeShort(unscaled.length);
+			out.write(unscaled);
+		}
+		out.flush();
+	}
+
+	static List<Record> readBatch(DataInputStream in) throws IOException {
+		int count = in.readInt();
+		List<Record> records = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			byte type = in.readByte();
+			long sequence = in.readLong();
+			String accountId = in.readUTF();
+			int scale = in.readInt();
+			byte[] unscaled = new byte[in.readUnsignedShort()];
+			in.readFully(unscaled);
+			records.add(new Record(type, sequence, accountId, new BigDecimal(new BigInteger(unscaled), scale)));
+		}
+		return records;
+	}
+
+	static void writeAck(DataOutputStream out, long sequence) throws IOException {
+		out.writeLong(sequence);
+		out.flush();
+	}
+
+	static long readAck(DataInputStream in) throws IOException {
+		return in.readLong();
+	}
+}
@@ -0,0 +1,140 @@
+package com.dws.challenge.replication;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.List;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.dws.challenge.config.ReplicationProperties;
+import com.dws.challenge.replication.ReplicationCodec.Record;
+import com.dws.challenge.service.AccountsService;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Follower side of the replication stream.
+ *
+ * Puts {@link AccountsService} in read-only mode, applies every frame received
+ * from the primary and acknowledges the last applied sequence. Reconnects after
+ * a lost connection, the primary then resends a full snapshot.
+ *
+ * If the primary is lost for good a follower is turned into a writable node
+ * with {@link #promote()} (POST /v1/replication/promote). It then no longer
+ * applies the stream of the old primary, which must be fenced off before
+ * clients are pointed at the promoted node. The promoted node does not stream
+ * to other followers; restart it with replication.role=PRIMARY and the other
+ * followers with its address as replication.primary-host for that.
+ */
+@Slf4j
+@Component
+public class ReplicationFollower {
+
+	private final ReplicationProperties properties;
+
+	private final AccountsService accountsService;
+
+	@Getter
+	private volatile long appliedSequence;
+
+	private volatile boolean running;
+
+	private volatile Socket socket;
+
+	private Thread thread;
+
+	@Getter
+	private volatile boolean promoted;
+
+	@Autowired
+	public ReplicationFollower(ReplicationProperties properties, AccountsService accountsService) {
+		this.properties = properties;
+		this.accountsService = accountsService;
+	}
+
+	@PostConstruct
+	public void start() {
+		if (properties.getRole() != ReplicationProperties.Role.FOLLOWER) {
+			return;
+		}
+		accountsService.setReadOnly(true);
+		running = true;
+		thread = new Thread(this::follow, "replication-follower");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	@PreDestroy
+	public void stop() throws IOException {
+		running = false;
+		if (socket != null) {
+			socket.close();
+		}
+		if (thread != null) {
+			thread.interrupt();
+		}
+	}
+
+	/**
+	 * Stops following the primary and accepts changes from now on. Waits for the
+	 * batch being applied, so that no replicated balance overwrites a change
+	 * accepted after the promotion.
+	 * 
+	 * @return false if this node is not following a primary
+	 */
+	public synchronized boolean promote() throws IOException, InterruptedException {
+		if (!running) {
+			return false;
+		}
+		stop();
+		thread.join();
+		promoted = true;
+		accountsService.setReadOnly(false);
+		log.warn("Promoted to a writable node at sequence {}, no longer following {}:{}", appliedSequence,
+				properties.getPrimaryHost(), properties.getPrimaryPort());
+		return true;
+	}
+
+	private void follow() {
+		while (running) {
+			try (Socket connection = new Socket(properties.getPrimaryHost(), properties.getPrimaryPort())) {
+				socket = connection;
+				connection.setTcpNoDelay(true);
+				log.info("Following primary {}:{}", properties.getPrimaryHost(), properties.getPrimaryPort());
+				DataInputStream in = new DataInputStream(new BufferedInputStream(connection.getInputStream(), 1 << 16));
+				DataOutputStream out = new DataOutputStream(new BufferedOutputStream(connection.getOutputStream()));
+				while (running) {
+					List<Record> batch = ReplicationCodec.readBatch(in);
+					long last = 0;
+					for (Record record : batch) {
+						accountsService.applyReplicatedBalance(record.getAccountId(), record.getBalance());
+						last = Math.max(last, record.getSequence());
+					}
+					if (last > appliedSequence) {
+						appliedSequence = last;
+					}
+					ReplicationCodec.writeAck(out, last);
+				}
+			} catch (IOException e) {
+				if (running) {
+					log.warn("Replication stream from primary lost: {}", e.getMessage());
+					try {
+						Thread.sleep(properties.getReconnectDelayMillis());
+					} catch (InterruptedException ie) {
+						Thread.currentThread().interrupt();
+						return;
+					}
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,317 @@
+package com.dws.challenge.replication;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.dws.challenge.config.ReplicationProperties;
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.AccountTransfer;
+import com.dws.challenge.repository.AccountsRepository;
+import com.dws.challenge.replication.ReplicationCodec.Record;
+import com.dws.challenge.service.AccountChangeListener;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Primary side of the replication stream.
+ *
+ * Every committed account change is sequenced and queued for each connected
+ * follower. One sender thread per follower batches its queue into frames, a
+ * second thread reads the acknowledgements. A new follower first receives a
+ * snapshot of all accounts and then the live stream.
+ *
+ * In sync commit mode the committing thread waits until every in-sync follower
+ * acknowledged its records. The wait happens after the account locks are
+ * released, so a slow follower delays the caller but not other transfers of
+ * the same accounts. A follower that misses the ack timeout is no longer
+ * waited for until it has caught up with the stream again.
+ */
+@Slf4j
+@Component
+public class ReplicationPrimary implements AccountChangeListener {
+
+	private final ReplicationProperties properties;
+
+	private final AccountsRepository accountsRepository;
+
+	private final Set<FollowerSession> sessions = ConcurrentHashMap.newKeySet();
+
+	private final Object ackMonitor = new Object();
+
+	private final ThreadLocal<Long> pendingAcknowledgement = new ThreadLocal<>();
+
+	private volatile long sequence;
+
+	private volatile boolean running;
+
+	private ServerSocket serverSocket;
+
+	private ExecutorService executor;
+
+	@Autowired
+	public ReplicationPrimary(ReplicationProperties properties, AccountsRepository accountsRepository) {
+		this.properties = properties;
+		this.accountsRepository = accountsRepository;
+	}
+
+	@PostConstruct
+	public void start() throws IOException {
+		if (properties.getRole() != ReplicationProperties.Role.PRIMARY) {
+			return;
+		}
+		serverSocket = new ServerSocket(properties.getPort());
+		executor = Executors.newCachedThreadPool(r -> {
+			Thread thread = new Thread(r, "replication-primary");
+			thread.setDaemon(true);
+			return thread;
+		});
+		running = true;
+		executor.execute(this::acceptFollowers);
+		log.info("Replication primary listening on port {}", serverSocket.getLocalPort());
+	}
+
+	@PreDestroy
+	public void stop() throws IOException {
+		running = false;
+		if (serverSocket != null) {
+			serverSocket.close();
+		}
+		sessions.forEach(FollowerSession::close);
+		if (executor != null) {
+			executor.shutdownNow();
+		}
+	}
+
+	public int getFollowerCount() {
+		return sessions.size();
+	}
+
+	@Override
+	public void onAccountCreated(Account account) {
+		replicate(account);
+	}
+
+	@Override
+	public void onTransferCommitted(AccountTransfer accountTransfer, Account fromAccount, Account toAccount) {
+		replicate(fromAccount, toAccount);
+	}
+
+	@Override
+	public void onBalanceAdjusted(Account account, BigDecimal delta) {
+		replicate(account);
+	}
+
+	@Override
+	public void afterRelease(String... accountIds) {
+		Long target = pendingAcknowledgement.get();
+		if (target != null) {
+			pendingAcknowledgement.remove();
+			awaitAcknowledgements(target);
+		}
+	}
+
+	private void replicate(Account... accounts) {
+		if (!running) {
+			return;
+		}
+		long last;
+		// sequence numbers must reach every queue in order for acknowledgements to be cumulative
+		synchronized (this) {
+			if (sessions.isEmpty()) {
+				return;
+			}
+			last = sequence;
+			for (Account account : accounts) {
+				Record record = new Record(ReplicationCodec.UPSERT, ++last, account.getAccountId(), account.getBalance());
+				sessions.forEach(session -> session.offer(record));
+			}
+			sequence = last;
+		}
+		if (properties.isSyncCommit()) {
+			// waited for in afterRelease, once the account locks are released
+			pendingAcknowledgement.set(last);
+		}
+	}
+
+	private void awaitAcknowledgements(long target) {
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(properties.getAckTimeoutMillis());
+		synchronized (ackMonitor) {
+			while (!sessions.stream().allMatch(session -> !session.inSync || session.ackedSequence >= target)) {
+				long remaining = deadline - System.nanoTime();
+				if (remaining <= 0) {
+					sessions.stream().filter(session -> session.inSync && session.ackedSequence < target)
+							.forEach(session -> session.lagging(target));
+					return;
+				}
+				try {
+					TimeUnit.NANOSECONDS.timedWait(ackMonitor, remaining);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return;
+				}
+			}
+		}
+	}
+
+	private void acceptFollowers() {
+		while (running) {
+			try {
+				Socket socket = serverSocket.accept();
+				socket.setTcpNoDelay(true);
+				FollowerSession session = new FollowerSession(socket);
+				sessions.add(session);
+				executor.execute(session::send);
+				executor.execute(session::receiveAcknowledgements);
+				log.info("Follower {} connected", socket.getRemoteSocketAddress());
+			} catch (IOException e) {
+				if (running) {
+					log.warn("Accepting follower failed", e);
+				}
+			}
+		}
+	}
+
+	private final class FollowerSession {
+
+		private final Socket socket;
+
+		private final BlockingQueue<Record> queue = new ArrayBlockingQueue<>(properties.getFollowerQueueCapacity());
+
+		private volatile long ackedSequence;
+
+		private volatile boolean inSync = true;
+
+		private volatile boolean closed;
+
+		private FollowerSession(Socket socket) {
+			this.socket = socket;
+		}
+
+		private void offer(Record record) {
+			if (!queue.offer(record)) {
+				log.warn("Follower {} fell behind, disconnecting", socket.getRemoteSocketAddress());
+				close();
+			}
+		}
+
+		private void lagging(long target) {
+			inSync = false;
+			log.warn("Follower {} did not acknowledge sequence {} within {} ms, no longer waiting for it",
+					socket.getRemoteSocketAddress(), target, properties.getAckTimeoutMillis());
+		}
+
+		private void send() {
+			try {
+				DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 1 << 16));
+				sendSnapshot(out);
+				List<Record> batch = new ArrayList<>(properties.getBatchSize());
+				long linger = TimeUnit.MILLISECONDS.toNanos(properties.getFlushIntervalMillis());
+				while (!closed) {
+					Record first = queue.poll(100, TimeUnit.MILLISECONDS);
+					if (first == null) {
+						continue;
+					}
+					batch.add(first);
+					long deadline = System.nanoTime() + linger;
+					while (batch.size() < properties.getBatchSize()) {
+						queue.drainTo(batch, properties.getBatchSize() - batch.size());
+						long remaining = deadline - System.nanoTime();
+						if (batch.size() >= properties.getBatchSize() || remaining <= 0) {
+							break;
+						}
+						Record next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+						if (next == null) {
+							break;
+						}
+						batch.add(next);
+					}
+					ReplicationCodec.writeBatch(out, batch);
+					batch.clear();
+				}
+			} catch (IOException e) {
+				log.warn("Streaming to follower {} failed: {}", socket.getRemoteSocketAddress(), e.getMessage());
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} finally {
+				close();
+			}
+		}
+
+		/**
+		 * Snapshot records carry sequence 0, the live records queued meanwhile are
+		 * sent afterwards and overwrite them.
+		 */
+		private void sendSnapshot(DataOutputStream out) throws IOException {
+			List<Record> batch = new ArrayList<>(properties.getBatchSize());
+			for (Account account : accountsRepository.getAccounts()) {
+				batch.add(new Record(ReplicationCodec.UPSERT, 0, account.getAccountId(), account.getBalance()));
+				if (batch.size() == properties.getBatchSize()) {
+					ReplicationCodec.writeBatch(out, batch);
+					batch.clear();
+				}
+			}
+			if (!batch.isEmpty()) {
+				ReplicationCodec.writeBatch(out, batch);
+			}
+		}
+
+		private void receiveAcknowledgements() {
+			try {
+				DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+				while (!closed) {
+					long acked = ReplicationCodec.readAck(in);
+					if (acked > ackedSequence) {
+						ackedSequence = acked;
+					}
+					if (!inSync && acked >= sequence) {
+						inSync = true;
+						log.info("Follower {} caught up at sequence {}", socket.getRemoteSocketAddress(), acked);
+					}
+					synchronized (ackMonitor) {
+						ackMonitor.notifyAll();
+					}
+				}
+			} catch (IOException e) {
+				if (!closed) {
+					log.warn("Follower {} disconnected: {}", socket.getRemoteSocketAddress(), e.getMessage());
+				}
+			} finally {
+				close();
+			}
+		}
+
+		private void close() {
+			closed = true;
+			sessions.remove(this);
+			try {
+				socket.close();
+			} catch (IOException e) {
+				// already closed
+			}
+			synchronized (ackMonitor) {
+				ackMonitor.notifyAll();
+			}
+		}
+	}
+}
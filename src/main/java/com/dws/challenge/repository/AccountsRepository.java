@@ -1,5 +1,9 @@
 package com.dws.challenge.repository;
 
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.function.BiConsumer;
+
 import com.dws.challenge.domain.Account;
 import com.dws.challenge.exception.DuplicateAccountIdException;
 
@@ -10,7 +14,26 @@ public interface AccountsRepository {
   Account getAccount(String accountId);
 
   void clearAccounts();
+
+  /**
+   * @return number of {@link #clearAccounts()} calls so far, lets views derived
+   *         from the accounts notice a clear without reading every account
+   */
+  long getClearCount();
   
   Account updateAccount(Account account);
+
+  /**
+   * @return weakly consistent view of all accounts, used for snapshots and scans
+   */
+  Collection<Account> getAccounts();
+
+  /**
+   * Passes the id and latest balance of every account to the consumer, without
+   * keeping the accounts around; used by full scans such as exports.
+   */
+  default void forEachBalance(BiConsumer<String, BigDecimal> consumer) {
+    getAccounts().forEach(account -> consumer.accept(account.getAccountId(), account.getBalance()));
+  }
   
 }
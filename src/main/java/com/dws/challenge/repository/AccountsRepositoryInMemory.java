@@ -1,18 +1,26 @@
 package com.dws.challenge.repository;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Repository;
 
+import com.dws.challenge.diagnostics.RepositoryUpdateEvent;
 import com.dws.challenge.domain.Account;
 import com.dws.challenge.exception.DuplicateAccountIdException;
 
 @Repository
+@ConditionalOnProperty(name = "accounts.repository", havingValue = "in-memory", matchIfMissing = true)
 public class AccountsRepositoryInMemory implements AccountsRepository {
 
 	private final Map<String, Account> accounts = new ConcurrentHashMap<>();
 
+	private final AtomicLong clearCount = new AtomicLong();
+
 	@Override
 	public void createAccount(Account account) throws DuplicateAccountIdException {
 		Account previousAccount = accounts.putIfAbsent(account.getAccountId(), account);
@@ -29,6 +37,12 @@ public class AccountsRepositoryInMemory implements AccountsRepository {
 	@Override
 	public void clearAccounts() {
 		accounts.clear();
+		clearCount.incrementAndGet();
+	}
+
+	@Override
+	public long getClearCount() {
+		return clearCount.get();
 	}
 
 	/**
@@ -40,7 +54,15 @@ public class AccountsRepositoryInMemory implements AccountsRepository {
 	 */
 	@Override
 	public Account updateAccount(Account account) {
-		return accounts.replace(account.getAccountId(), account);
+		RepositoryUpdateEvent event = RepositoryUpdateEvent.start();
+		Account previousAccount = accounts.replace(account.getAccountId(), account);
+		event.finish(account.getAccountId(), "in-memory", null);
+		return previousAccount;
+	}
+
+	@Override
+	public Collection<Account> getAccounts() {
+		return Collections.unmodifiableCollection(accounts.values());
 	}
 
 }
@@ -0,0 +1,430 @@
+package com.dws.challenge.repository;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.dws.challenge.config.JdbcRepositoryProperties;
+import com.dws.challenge.config.JdbcRepositoryProperties.WriteMode;
+import com.dws.challenge.diagnostics.RepositoryUpdateEvent;
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.exception.DuplicateAccountIdException;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Accounts repository backed by a relational database, enabled with
+ * {@code accounts.repository=jdbc}.
+ *
+ * Reads are served from a bounded cache that loads missing accounts from the
+ * database. Account creation is written immediately, balance updates depend
+ * on the {@link WriteMode}: they are either written one by one, or coalesced
+ * per account and flushed by a background thread in batches ordered by account
+ * id, when {@code batchSize} updates are pending or every
+ * {@code flushIntervalMillis}. Accounts with pending updates are never evicted
+ * from the cache, so the cache always holds the latest balance.
+ *
+ * Like the in-memory repository the cache hands out shared account instances;
+ * callers change a balance under the account lock and pass the instance to
+ * {@link #updateAccount(Account)}. If the update can not be written, the
+ * account is dropped from the cache and its pending balance is undone, so the
+ * changed instance is not served again.
+ */
+@Slf4j
+@Repository
+@ConditionalOnProperty(name = "accounts.repository", havingValue = "jdbc")
+public class AccountsRepositoryJdbc implements AccountsRepository {
+
+	private static final String CREATE_TABLE = "CREATE TABLE IF NOT EXISTS accounts ("
+			+ "account_id VARCHAR(255) PRIMARY KEY, balance DECIMAL(38, 10) NOT NULL)";
+
+	private static final int SCAN_FETCH_SIZE = 1000;
+
+	private final JdbcTemplate jdbcTemplate;
+
+	/**
+	 * Fetches full scans in pages instead of reading the whole result set.
+	 */
+	private final JdbcTemplate scanTemplate;
+
+	private final TransactionTemplate transactionTemplate;
+
+	private final JdbcRepositoryProperties properties;
+
+	private final Map<String, Account> cache = new ConcurrentHashMap<>();
+
+	/**
+	 * Latest unwritten balance per account. An entry is only removed once its
+	 * balance is committed, a cache miss checks here before the database.
+	 */
+	private final Map<String, BigDecimal> pendingWrites = new ConcurrentHashMap<>();
+
+	/**
+	 * Completed by the next flush, awaited by group commit writers.
+	 */
+	private final AtomicReference<CompletableFuture<Void>> nextFlush = new AtomicReference<>(new CompletableFuture<>());
+
+	private final AtomicBoolean flushRequested = new AtomicBoolean();
+
+	private final AtomicBoolean evicting = new AtomicBoolean();
+
+	/**
+	 * Counts the removals from the cache, a load that overlapped one may be
+	 * stale and is repeated.
+	 */
+	private final AtomicLong cacheRemovals = new AtomicLong();
+
+	private final AtomicLong clearCount = new AtomicLong();
+
+	private final Object flushLock = new Object();
+
+	private ScheduledExecutorService flusher;
+
+	@Autowired
+	public AccountsRepositoryJdbc(DataSource dataSource, JdbcRepositoryProperties properties) {
+		this.jdbcTemplate = new JdbcTemplate(dataSource);
+		this.scanTemplate = new JdbcTemplate(dataSource);
+		this.scanTemplate.setFetchSize(SCAN_FETCH_SIZE);
+		this.transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+		this.properties = properties;
+	}
+
+	@PostConstruct
+	public void start() {
+		jdbcTemplate.execute(CREATE_TABLE);
+		flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "accounts-jdbc-flusher");
+			thread.setDaemon(true);
+			return thread;
+		});
+		if (properties.getWriteMode() != WriteMode.WRITE_THROUGH) {
+			flusher.scheduleWithFixedDelay(this::flushQuietly, properties.getFlushIntervalMillis(),
+					properties.getFlushIntervalMillis(), TimeUnit.MILLISECONDS);
+		}
+		log.info("JDBC accounts repository started, write mode {}, cache size {}", properties.getWriteMode(),
+				properties.getCacheSize());
+	}
+
+	@PreDestroy
+	public void stop() {
+		if (flusher != null) {
+			flusher.shutdown();
+		}
+		flush();
+	}
+
+	@Override
+	public void createAccount(Account account) throws DuplicateAccountIdException {
+		if (cache.containsKey(account.getAccountId())) {
+			throw new DuplicateAccountIdException("Account id " + account.getAccountId() + " already exists!");
+		}
+		try {
+			jdbcTemplate.update("INSERT INTO accounts (account_id, balance) VALUES (?, ?)", account.getAccountId(),
+					account.getBalance());
+		} catch (DuplicateKeyException e) {
+			throw new DuplicateAccountIdException("Account id " + account.getAccountId() + " already exists!");
+		}
+		cache.put(account.getAccountId(), account);
+		evictIfNeeded();
+	}
+
+	/**
+	 * Loads a missing account outside of the cache map, so that the database
+	 * round trip holds no lock of the map. A concurrent update wins over the
+	 * loaded balance; a load overlapping a removal from the cache may have read
+	 * a balance older than the removed one and is repeated.
+	 */
+	@Override
+	public Account getAccount(String accountId) {
+		Account account = cache.get(accountId);
+		while (account == null) {
+			long removals = cacheRemovals.get();
+			Account loaded = load(accountId);
+			if (loaded == null) {
+				return null;
+			}
+			Account cached = cache.putIfAbsent(accountId, loaded);
+			if (cached != null) {
+				account = cached;
+			} else if (cacheRemovals.get() == removals) {
+				account = loaded;
+			} else {
+				cache.remove(accountId, loaded);
+			}
+		}
+		evictIfNeeded();
+		return account;
+	}
+
+	private Account load(String accountId) {
+		BigDecimal pending = pendingWrites.get(accountId);
+		if (pending != null) {
+			return new Account(accountId, pending);
+		}
+		List<BigDecimal> balances = jdbcTemplate.queryForList("SELECT balance FROM accounts WHERE account_id = ?",
+				BigDecimal.class, accountId);
+		return balances.isEmpty() ? null : new Account(accountId, balances.get(0));
+	}
+
+	@Override
+	public void clearAccounts() {
+		synchronized (flushLock) {
+			pendingWrites.clear();
+			cacheRemovals.incrementAndGet();
+			cache.clear();
+			jdbcTemplate.update("DELETE FROM accounts");
+			clearCount.incrementAndGet();
+		}
+	}
+
+	@Override
+	public long getClearCount() {
+		return clearCount.get();
+	}
+
+	/**
+	 * Puts the account into the cache and writes or schedules its balance.
+	 *
+	 * @param account account with the new balance
+	 * @return the account, or null if it does not exist
+	 */
+	@Override
+	public Account updateAccount(Account account) {
+		RepositoryUpdateEvent event = RepositoryUpdateEvent.start();
+		try {
+			return update(account);
+		} finally {
+			event.finish(account.getAccountId(), "jdbc", properties.getWriteMode().name());
+		}
+	}
+
+	private Account update(Account account) {
+		String accountId = account.getAccountId();
+		if (getAccount(accountId) == null) {
+			return null;
+		}
+		switch (properties.getWriteMode()) {
+		case WRITE_THROUGH:
+			try {
+				jdbcTemplate.update("UPDATE accounts SET balance = ? WHERE account_id = ?", account.getBalance(),
+						accountId);
+			} catch (RuntimeException e) {
+				// the shared instance already holds the unwritten balance
+				drop(accountId);
+				throw e;
+			}
+			cache.put(accountId, account);
+			break;
+		case WRITE_BEHIND:
+			// pending first, so an eviction racing with this update never drops it
+			pendingWrites.put(accountId, account.getBalance());
+			cache.put(accountId, account);
+			if (pendingWrites.size() >= properties.getBatchSize()) {
+				requestFlush();
+			}
+			break;
+		case GROUP_COMMIT:
+			BigDecimal balance = account.getBalance();
+			BigDecimal previous = pendingWrites.put(accountId, balance);
+			cache.put(accountId, account);
+			// read after the put: the flush swaps the future before collecting
+			CompletableFuture<Void> flushed = nextFlush.get();
+			requestFlush();
+			try {
+				awaitFlush(flushed);
+			} catch (RuntimeException e) {
+				// the caller is told the update failed, a later flush must not write it
+				if (previous != null) {
+					pendingWrites.replace(accountId, balance, previous);
+				} else {
+					pendingWrites.remove(accountId, balance);
+				}
+				drop(accountId);
+				throw e;
+			}
+			break;
+		}
+		return account;
+	}
+
+	/**
+	 * Drops an account from the cache, it is loaded again from the pending
+	 * balances or the database.
+	 */
+	private void drop(String accountId) {
+		cacheRemovals.incrementAndGet();
+		cache.remove(accountId);
+	}
+
+	/**
+	 * Reads the ids from the database and the accounts through the cache, so
+	 * the result is a copy rather than a live view.
+	 */
+	@Override
+	public Collection<Account> getAccounts() {
+		List<String> accountIds = jdbcTemplate.queryForList("SELECT account_id FROM accounts", String.class);
+		List<Account> accounts = new ArrayList<>(accountIds.size());
+		for (String accountId : accountIds) {
+			Account account = getAccount(accountId);
+			if (account != null) {
+				accounts.add(account);
+			}
+		}
+		return Collections.unmodifiableList(accounts);
+	}
+
+	/**
+	 * Streams all rows with one query instead of loading every account through
+	 * the cache. A cached account has its latest balance in the cache; the
+	 * balance of any other account is pending or in the database. Pending
+	 * balances are copied before the query, as a flush during the scan may
+	 * remove one after the row was read with the earlier balance.
+	 */
+	@Override
+	public void forEachBalance(BiConsumer<String, BigDecimal> consumer) {
+		Map<String, BigDecimal> pending = new HashMap<>(pendingWrites);
+		scanTemplate.query("SELECT account_id, balance FROM accounts", (RowCallbackHandler) rs -> {
+			String accountId = rs.getString(1);
+			Account cached = cache.get(accountId);
+			BigDecimal balance = cached != null ? cached.getBalance() : pending.get(accountId);
+			consumer.accept(accountId, balance != null ? balance : rs.getBigDecimal(2));
+		});
+	}
+
+	/**
+	 * Writes all pending balances in one transaction, in batches of
+	 * {@code batchSize} ordered by account id so concurrent writers of the
+	 * database lock rows in the same order.
+	 */
+	public void flush() {
+		synchronized (flushLock) {
+			CompletableFuture<Void> flushed = nextFlush.getAndSet(new CompletableFuture<>());
+			Map<String, BigDecimal> batch = new TreeMap<>(pendingWrites);
+			try {
+				if (!batch.isEmpty()) {
+					transactionTemplate.executeWithoutResult(status -> writeBatch(batch));
+					// remove only the written balances, an update made during the write stays pending
+					batch.forEach((accountId, balance) -> pendingWrites.remove(accountId, balance));
+				}
+				flushed.complete(null);
+			} catch (RuntimeException e) {
+				flushed.completeExceptionally(e);
+				throw e;
+			}
+		}
+		evictIfNeeded();
+	}
+
+	private void writeBatch(Map<String, BigDecimal> batch) {
+		List<Map.Entry<String, BigDecimal>> entries = new ArrayList<>(batch.entrySet());
+		int batchSize = Math.max(1, properties.getBatchSize());
+		for (int from = 0; from < entries.size(); from += batchSize) {
+			List<Map.Entry<String, BigDecimal>> chunk = entries.subList(from, Math.min(from + batchSize, entries.size()));
+			jdbcTemplate.batchUpdate("UPDATE accounts SET balance = ? WHERE account_id = ?",
+					new BatchPreparedStatementSetter() {
+
+						@Override
+						public void setValues(PreparedStatement statement, int i) throws SQLException {
+							statement.setBigDecimal(1, chunk.get(i).getValue());
+							statement.setString(2, chunk.get(i).getKey());
+						}
+
+						@Override
+						public int getBatchSize() {
+							return chunk.size();
+						}
+					});
+		}
+	}
+
+	private void flushQuietly() {
+		try {
+			flush();
+		} catch (RuntimeException e) {
+			log.error("Failed to flush {} pending account updates, retrying with the next flush", pendingWrites.size(), e);
+		}
+	}
+
+	private void requestFlush() {
+		if (flushRequested.compareAndSet(false, true)) {
+			flusher.execute(() -> {
+				flushRequested.set(false);
+				flushQuietly();
+			});
+		}
+	}
+
+	private static void awaitFlush(CompletableFuture<Void> flushed) {
+		try {
+			flushed.join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * Drops accounts without pending writes until the cache is back to 7/8 of
+	 * its size, in the iteration order of the map. Only one thread evicts at a
+	 * time, the others carry on.
+	 */
+	private void evictIfNeeded() {
+		int cacheSize = properties.getCacheSize();
+		if (cache.size() <= cacheSize || !evicting.compareAndSet(false, true)) {
+			return;
+		}
+		try {
+			int target = cacheSize - cacheSize / 8;
+			Iterator<String> accountIds = cache.keySet().iterator();
+			while (cache.size() > target && accountIds.hasNext()) {
+				cacheRemovals.incrementAndGet();
+				cache.computeIfPresent(accountIds.next(),
+						(accountId, account) -> pendingWrites.containsKey(accountId) ? account : null);
+			}
+		} finally {
+			evicting.set(false);
+		}
+	}
+
+	public int getCachedAccountCount() {
+		return cache.size();
+	}
+
+	public int getPendingWriteCount() {
+		return pendingWrites.size();
+	}
+}
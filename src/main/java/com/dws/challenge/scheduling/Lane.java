@@ -0,0 +1,19 @@
+package com.dws.challenge.scheduling;
+
+/**
+ * Priority lanes of transfer execution, see {@link TransferScheduler}.
+ */
+public enum Lane {
+
+	/**
+	 * Customer facing transfers, waiting for the response.
+	 */
+	INTERACTIVE,
+
+	STANDARD,
+
+	/**
+	 * Back office runs submitting many transfers.
+	 */
+	BULK
+}
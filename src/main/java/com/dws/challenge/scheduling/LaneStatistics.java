@@ -0,0 +1,45 @@
+package com.dws.challenge.scheduling;
+
+import lombok.Builder;
+import lombok.Value;
+
+/**
+ * Load and latency of one lane since start or the last reset, latencies in
+ * microseconds.
+ */
+@Value
+@Builder
+public class LaneStatistics {
+
+	private final Lane lane;
+
+	private final int weight;
+
+	private final int maxConcurrent;
+
+	private final int running;
+
+	private final int queued;
+
+	private final long completed;
+
+	private final long rejected;
+
+	/**
+	 * Time from arrival to the start of execution.
+	 */
+	private final long queueWaitP50Micros;
+
+	private final long queueWaitP99Micros;
+
+	/**
+	 * Time from arrival to the end of execution.
+	 */
+	private final long latencyP50Micros;
+
+	private final long latencyP99Micros;
+
+	private final long latencyP999Micros;
+
+	private final long latencyMaxMicros;
+}
@@ -0,0 +1,286 @@
+package com.dws.challenge.scheduling;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.dws.challenge.config.SchedulerProperties;
+import com.dws.challenge.config.SchedulerProperties.LaneSettings;
+import com.dws.challenge.exception.LaneSaturatedException;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Admits transfers into {@code AccountsService} by priority lane, so that bulk
+ * runs can not crowd out customer transfers on the request threads and the
+ * account locks.
+ *
+ * At most {@code maxConcurrent} transfers execute at a time, and at most the
+ * lane limit per lane. When a slot frees up, the waiting lane with the lowest
+ * pass value gets it and its pass advances by the inverse of its weight
+ * (stride scheduling), so backlogged lanes share the slots by weight. A lane
+ * that was idle starts at the current virtual time, it can not bank credit.
+ *
+ * The transfer runs on the calling thread once admitted; waiting is bounded
+ * by the lane queue capacity and timeout. Since waiting transfers hold their
+ * request threads, the slots and queues together must leave request threads
+ * free, which is checked at startup: a saturated lane then rejects transfers
+ * with 503 instead of parking the threads other lanes need.
+ */
+@Slf4j
+@Component
+public class TransferScheduler {
+
+	public static final String LANE_HEADER = "X-Priority-Lane";
+
+	public static final String API_KEY_HEADER = "X-Api-Key";
+
+	private static final long STRIDE = 1L << 20;
+
+	private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.MINUTES.toMicros(10);
+
+	private final SchedulerProperties properties;
+
+	private final Map<Lane, LaneState> lanes = new EnumMap<>(Lane.class);
+
+	private final ReentrantLock lock = new ReentrantLock();
+
+	private int running;
+
+	private long virtualTime;
+
+	private static final class Ticket {
+
+		private final long arrivalNanos = System.nanoTime();
+
+		private final Condition admitted;
+
+		private boolean granted;
+
+		private Ticket(Condition admitted) {
+			this.admitted = admitted;
+		}
+	}
+
+	private static final class LaneState {
+
+		private final Lane lane;
+
+		private final LaneSettings settings;
+
+		private final long stride;
+
+		private final ArrayDeque<Ticket> queue = new ArrayDeque<>();
+
+		private int running;
+
+		private long pass;
+
+		private final LongAdder completed = new LongAdder();
+
+		private final LongAdder rejected = new LongAdder();
+
+		private final Histogram queueWait = new ConcurrentHistogram(HIGHEST_TRACKABLE_MICROS, 2);
+
+		private final Histogram latency = new ConcurrentHistogram(HIGHEST_TRACKABLE_MICROS, 2);
+
+		private LaneState(Lane lane, LaneSettings settings) {
+			this.lane = lane;
+			this.settings = settings;
+			this.stride = STRIDE / Math.max(1, settings.getWeight());
+		}
+
+		private boolean canStart() {
+			return !queue.isEmpty() && running < settings.getMaxConcurrent();
+		}
+	}
+
+	@Autowired
+	public TransferScheduler(SchedulerProperties properties) {
+		this.properties = properties;
+		int threads = properties.getMaxConcurrent();
+		for (Lane lane : Lane.values()) {
+			LaneSettings settings = properties.getLanes().getOrDefault(lane, new LaneSettings());
+			lanes.put(lane, new LaneState(lane, settings));
+			threads += settings.getQueueCapacity();
+		}
+		if (properties.isEnabled() && threads >= properties.getRequestThreads()) {
+			throw new IllegalStateException("Transfer scheduler slots and lane queues hold up to " + threads
+					+ " request threads, there are only " + properties.getRequestThreads());
+		}
+	}
+
+	/**
+	 * Used to pick the lane of a request. A mapped API key wins over the lane
+	 * header, requests without either use the default lane.
+	 *
+	 * @param laneHeader value of {@link #LANE_HEADER}, case insensitive
+	 * @param apiKey     value of {@link #API_KEY_HEADER}
+	 * @throws IllegalArgumentException if the header names no lane
+	 */
+	public Lane laneOf(String laneHeader, String apiKey) {
+		if (apiKey != null && properties.getApiKeyLanes().containsKey(apiKey)) {
+			return properties.getApiKeyLanes().get(apiKey);
+		}
+		if (laneHeader == null || laneHeader.isBlank()) {
+			return properties.getDefaultLane();
+		}
+		try {
+			return Lane.valueOf(laneHeader.trim().toUpperCase(Locale.ROOT));
+		} catch (IllegalArgumentException e) {
+			throw new IllegalArgumentException("Unknown priority lane " + laneHeader + ".");
+		}
+	}
+
+	/**
+	 * Used to execute a transfer in its lane, waiting for a slot if needed.
+	 *
+	 * @param lane     lane of the transfer
+	 * @param transfer executed on the calling thread once admitted
+	 * @return result of the transfer
+	 * @throws LaneSaturatedException if the lane queue is full or no slot was
+	 *                                free within the lane queue timeout
+	 */
+	public <T> T execute(Lane lane, Supplier<T> transfer) {
+		if (!properties.isEnabled()) {
+			return transfer.get();
+		}
+		LaneState state = lanes.get(lane);
+		Ticket ticket = admit(state);
+		long startNanos = System.nanoTime();
+		state.queueWait.recordValue(toMicros(startNanos - ticket.arrivalNanos));
+		try {
+			return transfer.get();
+		} finally {
+			state.latency.recordValue(toMicros(System.nanoTime() - ticket.arrivalNanos));
+			release(state);
+		}
+	}
+
+	private Ticket admit(LaneState state) {
+		lock.lock();
+		try {
+			if (state.queue.size() >= state.settings.getQueueCapacity()) {
+				state.rejected.increment();
+				throw new LaneSaturatedException("The " + state.lane.name().toLowerCase(Locale.ROOT)
+						+ " lane is full. Please try after sometime.");
+			}
+			if (state.queue.isEmpty() && state.running == 0) {
+				state.pass = Math.max(state.pass, virtualTime);
+			}
+			Ticket ticket = new Ticket(lock.newCondition());
+			state.queue.add(ticket);
+			dispatch();
+
+			long remainingNanos = TimeUnit.MILLISECONDS.toNanos(state.settings.getQueueTimeoutMillis());
+			try {
+				while (!ticket.granted && remainingNanos > 0) {
+					remainingNanos = ticket.admitted.awaitNanos(remainingNanos);
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			if (!ticket.granted) {
+				state.queue.remove(ticket);
+				state.rejected.increment();
+				throw new LaneSaturatedException("No execution slot in the " + state.lane.name().toLowerCase(Locale.ROOT)
+						+ " lane within " + state.settings.getQueueTimeoutMillis() + " ms. Please try after sometime.");
+			}
+			return ticket;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private void release(LaneState state) {
+		lock.lock();
+		try {
+			state.running--;
+			running--;
+			state.completed.increment();
+			dispatch();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Hands free slots to the waiting lanes with the lowest pass, must be called
+	 * with the lock held.
+	 */
+	private void dispatch() {
+		while (running < properties.getMaxConcurrent()) {
+			LaneState next = null;
+			for (LaneState state : lanes.values()) {
+				if (state.canStart() && (next == null || state.pass < next.pass)) {
+					next = state;
+				}
+			}
+			if (next == null) {
+				return;
+			}
+			Ticket ticket = next.queue.poll();
+			ticket.granted = true;
+			next.running++;
+			running++;
+			virtualTime = next.pass;
+			next.pass += next.stride;
+			ticket.admitted.signal();
+		}
+	}
+
+	public List<LaneStatistics> getStatistics() {
+		List<LaneStatistics> statistics = new ArrayList<>();
+		for (LaneState state : lanes.values()) {
+			int laneRunning;
+			int queued;
+			lock.lock();
+			try {
+				laneRunning = state.running;
+				queued = state.queue.size();
+			} finally {
+				lock.unlock();
+			}
+			statistics.add(LaneStatistics.builder().lane(state.lane).weight(state.settings.getWeight())
+					.maxConcurrent(state.settings.getMaxConcurrent()).running(laneRunning).queued(queued)
+					.completed(state.completed.sum()).rejected(state.rejected.sum())
+					.queueWaitP50Micros(state.queueWait.getValueAtPercentile(50))
+					.queueWaitP99Micros(state.queueWait.getValueAtPercentile(99))
+					.latencyP50Micros(state.latency.getValueAtPercentile(50))
+					.latencyP99Micros(state.latency.getValueAtPercentile(99))
+					.latencyP999Micros(state.latency.getValueAtPercentile(99.9))
+					.latencyMaxMicros(state.latency.getMaxValue()).build());
+		}
+		return statistics;
+	}
+
+	/**
+	 * Used to start a new measurement, e.g. before a bulk run.
+	 */
+	public void resetStatistics() {
+		for (LaneState state : lanes.values()) {
+			state.completed.reset();
+			state.rejected.reset();
+			state.queueWait.reset();
+			state.latency.reset();
+		}
+		log.info("Transfer scheduler lane statistics reset");
+	}
+
+	private static long toMicros(long nanos) {
+		return Math.min(TimeUnit.NANOSECONDS.toMicros(nanos), HIGHEST_TRACKABLE_MICROS);
+	}
+}
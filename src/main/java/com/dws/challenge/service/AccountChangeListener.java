@@ -0,0 +1,49 @@
+package com.dws.challenge.service;
+
+import java.math.BigDecimal;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.AccountTransfer;
+
+/**
+ * Callback for committed account changes, published by {@link AccountsService}.
+ *
+ * Changes are published while the locks of the changed accounts are still held,
+ * so a listener sees the changes of one account in commit order. Listeners run
+ * on the committing thread and must be cheap and must not call back into
+ * {@link AccountsService}.
+ */
+public interface AccountChangeListener {
+
+	/**
+	 * Called under the account locks right before the balances of the accounts
+	 * change. {@link #afterCommit(String...)} follows in any case, after the
+	 * change is published or has failed.
+	 */
+	default void beforeCommit(String... accountIds) {
+	}
+
+	default void afterCommit(String... accountIds) {
+	}
+
+	/**
+	 * Called on the committing thread once the locks of the accounts are
+	 * released again, e.g. to wait for a change to become durable without
+	 * blocking other transfers of the same accounts.
+	 */
+	default void afterRelease(String... accountIds) {
+	}
+
+	default void onAccountCreated(Account account) {
+	}
+
+	default void onTransferCommitted(AccountTransfer accountTransfer, Account fromAccount, Account toAccount) {
+	}
+
+	/**
+	 * Single account change outside a transfer, e.g. one side of a cross node
+	 * transfer or a replicated balance.
+	 */
+	default void onBalanceAdjusted(Account account, BigDecimal delta) {
+	}
+}
@@ -1,22 +1,39 @@
 package com.dws.challenge.service;
 
+import com.dws.challenge.diagnostics.TransferEvent;
 import com.dws.challenge.domain.Account;
 import com.dws.challenge.domain.AccountTransfer;
+import com.dws.challenge.domain.MultiLegTransfer;
 import com.dws.challenge.exception.AccountBusyException;
 import com.dws.challenge.exception.AccountNotFoundException;
 import com.dws.challenge.exception.InsufficientBalanceException;
+import com.dws.challenge.exception.ReadOnlyReplicaException;
 import com.dws.challenge.exception.TransferFailureException;
+import com.dws.challenge.exception.VelocityLimitExceededException;
 import com.dws.challenge.repository.AccountsRepository;
 import com.dws.challenge.util.LockUtilByAccountNo;
+import com.dws.challenge.velocity.VelocityLimiter;
 
 import lombok.Getter;
+import lombok.Setter;
 import lombok.Synchronized;
+import lombok.extern.slf4j.Slf4j;
 
 import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
 
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+@Slf4j
 @Service
 public class AccountsService {
 
@@ -26,14 +43,36 @@ public class AccountsService {
 	@Getter
 	private final LockUtilByAccountNo lockUtilByAccountNo;
 
+	private final VelocityLimiter velocityLimiter;
+
+	private final List<AccountChangeListener> accountChangeListeners;
+
+	/**
+	 * Set on followers, which only apply changes streamed by the primary.
+	 */
+	@Getter
+	@Setter
+	private volatile boolean readOnly;
+
 	@Autowired
-	public AccountsService(AccountsRepository accountsRepository, LockUtilByAccountNo lockUtilByAccountNo) {
+	public AccountsService(AccountsRepository accountsRepository, LockUtilByAccountNo lockUtilByAccountNo,
+			VelocityLimiter velocityLimiter, ObjectProvider<AccountChangeListener> accountChangeListeners) {
 		this.accountsRepository = accountsRepository;
 		this.lockUtilByAccountNo = lockUtilByAccountNo;
+		this.velocityLimiter = velocityLimiter;
+		this.accountChangeListeners = accountChangeListeners.orderedStream().collect(Collectors.toList());
 	}
 
 	public void createAccount(Account account) {
-		this.accountsRepository.createAccount(account);
+		checkWritable();
+		beforeCommit(account.getAccountId());
+		try {
+			this.accountsRepository.createAccount(account);
+			publish(listener -> listener.onAccountCreated(account));
+		} finally {
+			afterCommit(account.getAccountId());
+			afterRelease(account.getAccountId());
+		}
 	}
 
 	public Account getAccount(String accountId) {
@@ -47,6 +86,8 @@ public class AccountsService {
 	 * @param accountTransfer It accepts AccountTransfer object
 	 * @throws InsufficientBalanceException if the from account balance is negative
 	 *                                      after subtraction of transfer amount.
+	 * @throws VelocityLimitExceededException if the transfer exceeds a velocity
+	 *                                      limit of the from account
 	 * @throws TransferFailureException     if transfer computation fails
 	 * @return true if transfer successful else false.
 	 * @author Arijit De
@@ -54,7 +95,20 @@ public class AccountsService {
 	 */
 
 	public boolean transferAmount(AccountTransfer accountTransfer) {
+		TransferEvent event = TransferEvent.start();
+		try {
+			boolean isTransfered = executeTransfer(accountTransfer);
+			event.finish(accountTransfer, 1, null);
+			return isTransfered;
+		} catch (RuntimeException e) {
+			event.finish(accountTransfer, 1, e);
+			throw e;
+		}
+	}
+
+	private boolean executeTransfer(AccountTransfer accountTransfer) {
 
+		checkWritable();
 		boolean isTransfered = false;
 		Account toAccount = accountsRepository.getAccount(accountTransfer.getToAccountId());
 		Account frmAccount = accountsRepository.getAccount(accountTransfer.getFromAccountId());
@@ -63,67 +117,401 @@ public class AccountsService {
 			throw new AccountNotFoundException("Account not found !!!");
 		}
 
-		System.out.println("Before Lock From Acc - " + frmAccount.getAccountId() + " To Acc - "
-				+ toAccount.getAccountId() + " Thread Name - " + Thread.currentThread().getName());
-
-		if (!lockUtilByAccountNo.isLockAquired(frmAccount.getAccountId())
-				&& !lockUtilByAccountNo.isLockAquired(toAccount.getAccountId()) 
-				&& lockUtilByAccountNo.tryLock(frmAccount.getAccountId())
-				&& lockUtilByAccountNo.tryLock(toAccount.getAccountId()) 
-		) {
+		String fromAccountId = frmAccount.getAccountId();
+		String toAccountId = toAccount.getAccountId();
+		log.trace("Before lock from account {} to account {}", fromAccountId, toAccountId);
+		if (!lockUtilByAccountNo.tryLockAll(fromAccountId, toAccountId)) {
+			throw new AccountBusyException("Transaction is processing either on From Acc or To Acc. Please wait and try after sometime.");
+		}
 
-			synchronized (lockUtilByAccountNo.getLockedObject(frmAccount.getAccountId())) {
-				synchronized (lockUtilByAccountNo.getLockedObject(toAccount.getAccountId())) {
+		try {
+			synchronized (lockUtilByAccountNo.getLockedObject(fromAccountId)) {
+				synchronized (lockUtilByAccountNo.getLockedObject(toAccountId)) {
 
+					frmAccount = current(frmAccount);
+					toAccount = current(toAccount);
 					BigDecimal remAmnt = frmAccount.getBalance().subtract(accountTransfer.getBalance());
 					if (remAmnt.compareTo(BigDecimal.ZERO) == -1) {
 						throw new InsufficientBalanceException(
-								"Insufficient Balance Account id " + frmAccount.getAccountId() + "!!!");
-					} else {
+								"Insufficient Balance Account id " + fromAccountId + "!!!");
+					}
+					velocityLimiter.check(fromAccountId, accountTransfer.getBalance());
 
-						try {
- 
-							frmAccount.setBalance(remAmnt);
-							frmAccount = accountsRepository.updateAccount(frmAccount);
+					Map<String, Account> accounts = new HashMap<>();
+					accounts.put(fromAccountId, frmAccount);
+					accounts.put(toAccountId, toAccount);
+					Map<String, BigDecimal> previousBalances = new HashMap<>();
+					try {
 
-							toAccount.setBalance(toAccount.getBalance().add(accountTransfer.getBalance()));
-							toAccount = accountsRepository.updateAccount(toAccount);
-							System.err.println("Updated amount From Acc - " + frmAccount.getAccountId() + " is = "
-									+ frmAccount.getBalance().doubleValue() + " and To Acc - "
-									+ toAccount.getAccountId() + " is = " + toAccount.getBalance().doubleValue()
-									+ " Time - " + System.currentTimeMillis() + " Thread Name - "
-									+ Thread.currentThread().getName());
+						beforeCommit(fromAccountId, toAccountId);
+						previousBalances.put(fromAccountId, frmAccount.getBalance());
+						frmAccount.setBalance(remAmnt);
+						frmAccount = accountsRepository.updateAccount(frmAccount);
 
-							isTransfered = true;
+						previousBalances.put(toAccountId, toAccount.getBalance());
+						toAccount.setBalance(toAccount.getBalance().add(accountTransfer.getBalance()));
+						toAccount = accountsRepository.updateAccount(toAccount);
+						velocityLimiter.record(fromAccountId, accountTransfer.getBalance());
+						Account committedFrom = frmAccount;
+						Account committedTo = toAccount;
+						publish(listener -> listener.onTransferCommitted(accountTransfer, committedFrom, committedTo));
+						log.debug("Transferred {} from account {} (balance {}) to account {} (balance {})",
+								accountTransfer.getBalance(), fromAccountId, committedFrom.getBalance(), toAccountId,
+								committedTo.getBalance());
 
-						} catch (Exception e) {
+						isTransfered = true;
 
-							if (frmAccount != null && toAccount != null) {
-								throw new TransferFailureException(
-										"Failed to transfer balance from account id - " + frmAccount.getAccountId()
-												+ " to account id - " + toAccount.getAccountId() + "!!!");
-							}
+					} catch (Exception e) {
 
-						} finally {
+						log.error("Failed to commit transfer {}, restoring {} accounts", accountTransfer,
+								previousBalances.size(), e);
+						restore(previousBalances, accounts);
+						throw new TransferFailureException("Failed to transfer balance from account id - "
+								+ fromAccountId + " to account id - " + toAccountId + "!!!");
 
-							if (frmAccount != null && toAccount != null) {
-								lockUtilByAccountNo.unlock(frmAccount.getAccountId());
-								lockUtilByAccountNo.unlock(toAccount.getAccountId());
-								System.out.println("Lock Released From Acc - " + frmAccount.getAccountId()
-										+ " To Acc - " + toAccount.getAccountId() + " Thread Name - "
-										+ Thread.currentThread().getName());
-							}
+					} finally {
 
-						}
+						afterCommit(fromAccountId, toAccountId);
 
 					}
 				}
 			}
 
-		} else {
-			throw new AccountBusyException("Transaction is processing either on From Acc or To Acc. Please wait and try after sometime.");
+		} finally {
+
+			lockUtilByAccountNo.unlockAll(fromAccountId, toAccountId);
+			afterRelease(fromAccountId, toAccountId);
+			log.trace("Lock released from account {} to account {}", fromAccountId, toAccountId);
+
 		}
 
 		return isTransfered;
 	}
+
+	/**
+	 * Used to execute several transfers as one, e.g. a payment split into the
+	 * merchant amount, a platform fee and tax (one-to-many), or collections
+	 * into one account (many-to-one).
+	 * 
+	 * The net change of every involved account is validated against its
+	 * balance once, the locks of all accounts are taken in canonical order and
+	 * each account is updated once. Either all legs are committed or none.
+	 * 
+	 * @param multiLegTransfer legs to execute
+	 * @throws AccountNotFoundException     if one of the accounts does not exist
+	 * @throws AccountBusyException         if one of the accounts is locked
+	 * @throws InsufficientBalanceException if the net change of an account
+	 *                                      exceeds its balance
+	 * @throws VelocityLimitExceededException if the net debit of an account
+	 *                                      exceeds one of its velocity limits
+	 * @throws TransferFailureException     if the legs could not be committed,
+	 *                                      the balances are restored
+	 * @return true if all legs were committed
+	 */
+	public boolean transferMultiLeg(MultiLegTransfer multiLegTransfer) {
+		TransferEvent event = TransferEvent.start();
+		List<AccountTransfer> legs = multiLegTransfer.getLegs();
+		AccountTransfer firstLeg = legs.isEmpty() ? null : legs.get(0);
+		try {
+			boolean isTransfered = executeMultiLeg(multiLegTransfer);
+			event.finish(firstLeg, legs.size(), null);
+			return isTransfered;
+		} catch (RuntimeException e) {
+			event.finish(firstLeg, legs.size(), e);
+			throw e;
+		}
+	}
+
+	private boolean executeMultiLeg(MultiLegTransfer multiLegTransfer) {
+		checkWritable();
+		List<AccountTransfer> legs = multiLegTransfer.getLegs();
+		Map<String, BigDecimal> netChanges = new TreeMap<>();
+		for (AccountTransfer leg : legs) {
+			netChanges.merge(leg.getFromAccountId(), leg.getBalance().negate(), BigDecimal::add);
+			netChanges.merge(leg.getToAccountId(), leg.getBalance(), BigDecimal::add);
+		}
+		for (String accountId : netChanges.keySet()) {
+			if (accountsRepository.getAccount(accountId) == null) {
+				throw new AccountNotFoundException("Account not found !!!");
+			}
+		}
+
+		String[] accountIds = netChanges.keySet().toArray(new String[0]);
+		if (!lockUtilByAccountNo.tryLockAll(accountIds)) {
+			throw new AccountBusyException("Transaction is processing on one of the accounts. Please wait and try after sometime.");
+		}
+		try {
+			Map<String, Account> accounts = new HashMap<>();
+			for (Map.Entry<String, BigDecimal> netChange : netChanges.entrySet()) {
+				Account account = accountsRepository.getAccount(netChange.getKey());
+				if (account == null) {
+					throw new AccountNotFoundException("Account not found !!!");
+				}
+				if (account.getBalance().add(netChange.getValue()).compareTo(BigDecimal.ZERO) < 0) {
+					throw new InsufficientBalanceException("Insufficient Balance Account id " + account.getAccountId() + "!!!");
+				}
+				accounts.put(account.getAccountId(), account);
+			}
+			for (Map.Entry<String, BigDecimal> netChange : netChanges.entrySet()) {
+				if (netChange.getValue().signum() < 0) {
+					velocityLimiter.check(netChange.getKey(), netChange.getValue().negate());
+				}
+			}
+
+			Map<String, BigDecimal> previousBalances = new HashMap<>();
+			beforeCommit(accountIds);
+			try {
+				for (Map.Entry<String, BigDecimal> netChange : netChanges.entrySet()) {
+					Account account = accounts.get(netChange.getKey());
+					previousBalances.put(account.getAccountId(), account.getBalance());
+					account.setBalance(account.getBalance().add(netChange.getValue()));
+					accountsRepository.updateAccount(account);
+				}
+				for (Map.Entry<String, BigDecimal> netChange : netChanges.entrySet()) {
+					if (netChange.getValue().signum() < 0) {
+						velocityLimiter.record(netChange.getKey(), netChange.getValue().negate());
+					}
+				}
+				for (AccountTransfer leg : legs) {
+					publish(listener -> listener.onTransferCommitted(leg, accounts.get(leg.getFromAccountId()),
+							accounts.get(leg.getToAccountId())));
+				}
+			} catch (RuntimeException e) {
+				log.error("Failed to commit multi-leg transfer {}, restoring {} accounts", multiLegTransfer,
+						previousBalances.size(), e);
+				restore(previousBalances, accounts);
+				throw new TransferFailureException("Failed to transfer balance of " + legs.size() + " legs!!!");
+			} finally {
+				afterCommit(accountIds);
+			}
+		} finally {
+			lockUtilByAccountNo.unlockAll(accountIds);
+			afterRelease(accountIds);
+		}
+		return true;
+	}
+
+	/**
+	 * Used to debit a single account, e.g. to reserve the amount of a transfer
+	 * whose to-account lives on another cluster node. The debit is an outgoing
+	 * transfer of the account and counts against its velocity limits.
+	 * 
+	 * @param accountId account to debit
+	 * @param amount    amount to subtract
+	 * @throws AccountNotFoundException     if the account does not exist
+	 * @throws AccountBusyException         if the account is locked by another transfer
+	 * @throws InsufficientBalanceException if the balance would become negative
+	 * @throws VelocityLimitExceededException if the debit exceeds a velocity
+	 *                                      limit of the account
+	 */
+	public Account debit(String accountId, BigDecimal amount) {
+		return adjustBalance(accountId, amount.negate(), () -> velocityLimiter.check(accountId, amount),
+				() -> velocityLimiter.record(accountId, amount));
+	}
+
+	/**
+	 * Used to roll back a {@link #debit(String, BigDecimal)}, e.g. of a cross
+	 * node transfer whose credit failed. Credits the amount and takes the debit
+	 * back from the velocity windows of the account.
+	 * 
+	 * @param accountId       debited account
+	 * @param amount          debited amount
+	 * @param debitedAtMillis time taken right before the debit
+	 * @throws AccountNotFoundException if the account does not exist
+	 * @throws AccountBusyException     if the account is locked by another transfer
+	 */
+	public Account refundDebit(String accountId, BigDecimal amount, long debitedAtMillis) {
+		return adjustBalance(accountId, amount, null,
+				() -> velocityLimiter.release(accountId, amount, debitedAtMillis));
+	}
+
+	/**
+	 * Used to credit a single account, e.g. to apply or roll back one side of a
+	 * cross node transfer.
+	 * 
+	 * @param accountId account to credit
+	 * @param amount    amount to add
+	 * @throws AccountNotFoundException if the account does not exist
+	 * @throws AccountBusyException     if the account is locked by another transfer
+	 */
+	public Account credit(String accountId, BigDecimal amount) {
+		return adjustBalance(accountId, amount, null, null);
+	}
+
+	/**
+	 * Used by batch jobs to recompute the balance of one account under its lock.
+	 * 
+	 * @param accountId         account to update
+	 * @param function          maps the current balance to the new one, null
+	 *                          leaves the account unchanged
+	 * @param lockTimeoutMillis maximum time to wait for the account lock
+	 * @return true if the balance changed
+	 * @throws AccountNotFoundException if the account does not exist
+	 * @throws AccountBusyException     if the lock was not acquired in time
+	 */
+	public boolean applyToAccount(String accountId, UnaryOperator<BigDecimal> function, long lockTimeoutMillis) {
+		checkWritable();
+		Account account = accountsRepository.getAccount(accountId);
+		if (account == null) {
+			throw new AccountNotFoundException("Account not found !!!");
+		}
+		try {
+			if (!lockUtilByAccountNo.tryLock(accountId, lockTimeoutMillis, TimeUnit.MILLISECONDS)) {
+				throw new AccountBusyException("Transaction is processing on Acc " + accountId + ". Please wait and try after sometime.");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new AccountBusyException("Interrupted while waiting for Acc " + accountId + ".");
+		}
+		try {
+			beforeCommit(accountId);
+			account = current(account);
+			BigDecimal balance = account.getBalance();
+			BigDecimal newBalance = function.apply(balance);
+			if (newBalance == null || newBalance.compareTo(balance) == 0) {
+				return false;
+			}
+			BigDecimal delta = newBalance.subtract(balance);
+			account.setBalance(newBalance);
+			Account updated = accountsRepository.updateAccount(account);
+			publish(listener -> listener.onBalanceAdjusted(updated, delta));
+			return true;
+		} finally {
+			afterCommit(accountId);
+			lockUtilByAccountNo.unlock(accountId);
+			afterRelease(accountId);
+		}
+	}
+
+	/**
+	 * Used by followers to apply a balance streamed by the primary. Creates the
+	 * account if it is not known yet; not subject to the read-only check. The
+	 * replication stream is the only writer of a follower, so no lock is taken.
+	 * 
+	 * @param accountId account id
+	 * @param balance   committed balance on the primary
+	 */
+	public void applyReplicatedBalance(String accountId, BigDecimal balance) {
+		beforeCommit(accountId);
+		try {
+			Account account = accountsRepository.getAccount(accountId);
+			if (account == null) {
+				Account created = new Account(accountId, balance);
+				accountsRepository.createAccount(created);
+				publish(listener -> listener.onAccountCreated(created));
+				return;
+			}
+			BigDecimal delta = balance.subtract(account.getBalance());
+			account.setBalance(balance);
+			Account updated = accountsRepository.updateAccount(account);
+			publish(listener -> listener.onBalanceAdjusted(updated, delta));
+		} finally {
+			afterCommit(accountId);
+			afterRelease(accountId);
+		}
+	}
+
+	/**
+	 * @param check  called under the lock after the balance check, may reject
+	 *               the change, or null
+	 * @param commit called under the lock once the change is stored, or null
+	 */
+	private Account adjustBalance(String accountId, BigDecimal delta, Runnable check, Runnable commit) {
+		checkWritable();
+		Account account = accountsRepository.getAccount(accountId);
+		if (account == null) {
+			throw new AccountNotFoundException("Account not found !!!");
+		}
+		if (!lockUtilByAccountNo.tryLock(accountId)) {
+			throw new AccountBusyException("Transaction is processing on Acc " + accountId + ". Please wait and try after sometime.");
+		}
+		try {
+			beforeCommit(accountId);
+			account = current(account);
+			BigDecimal newBalance = account.getBalance().add(delta);
+			if (newBalance.compareTo(BigDecimal.ZERO) < 0) {
+				throw new InsufficientBalanceException("Insufficient Balance Account id " + accountId + "!!!");
+			}
+			if (check != null) {
+				check.run();
+			}
+			account.setBalance(newBalance);
+			Account updated = accountsRepository.updateAccount(account);
+			if (commit != null) {
+				commit.run();
+			}
+			publish(listener -> listener.onBalanceAdjusted(updated, delta));
+			return updated;
+		} finally {
+			afterCommit(accountId);
+			lockUtilByAccountNo.unlock(accountId);
+			afterRelease(accountId);
+		}
+	}
+
+	/**
+	 * Writes back the balances of a transfer that failed to commit, still under
+	 * its account locks. A repository that failed a write has dropped the
+	 * changed account already; a failed restore is logged, the caller reports
+	 * the original failure.
+	 */
+	private void restore(Map<String, BigDecimal> previousBalances, Map<String, Account> accounts) {
+		previousBalances.forEach((accountId, balance) -> {
+			Account account = accounts.get(accountId);
+			account.setBalance(balance);
+			try {
+				accountsRepository.updateAccount(account);
+			} catch (RuntimeException e) {
+				log.error("Failed to restore balance {} of account {}", balance, accountId, e);
+			}
+		});
+	}
+
+	/**
+	 * Re-reads an account once its lock is held. A caching repository may have
+	 * evicted and reloaded the instance read before locking.
+	 */
+	private Account current(Account account) {
+		Account current = accountsRepository.getAccount(account.getAccountId());
+		return current != null ? current : account;
+	}
+
+	private void checkWritable() {
+		if (readOnly) {
+			throw new ReadOnlyReplicaException("This node is a read-only replica, changes are accepted by the primary only.");
+		}
+	}
+
+	private void beforeCommit(String... accountIds) {
+		publish(listener -> listener.beforeCommit(accountIds));
+	}
+
+	/**
+	 * Calls the listeners in reverse order, so that they can nest around the
+	 * commit.
+	 */
+	private void afterCommit(String... accountIds) {
+		for (int i = accountChangeListeners.size() - 1; i >= 0; i--) {
+			AccountChangeListener listener = accountChangeListeners.get(i);
+			try {
+				listener.afterCommit(accountIds);
+			} catch (RuntimeException e) {
+				log.error("Account change listener {} failed", listener.getClass().getSimpleName(), e);
+			}
+		}
+	}
+
+	private void afterRelease(String... accountIds) {
+		publish(listener -> listener.afterRelease(accountIds));
+	}
+
+	private void publish(Consumer<AccountChangeListener> event) {
+		for (AccountChangeListener listener : accountChangeListeners) {
+			try {
+				event.accept(listener);
+			} catch (RuntimeException e) {
+				log.error("Account change listener {} failed", listener.getClass().getSimpleName(), e);
+			}
+		}
+	}
 }
@@ -0,0 +1,265 @@
+package com.dws.challenge.subscription;
+
+import java.math.BigDecimal;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.dws.challenge.config.SubscriptionProperties;
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.AccountTransfer;
+import com.dws.challenge.exception.TooManySubscribersException;
+import com.dws.challenge.repository.AccountsRepository;
+import com.dws.challenge.service.AccountChangeListener;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Pushes committed balances to subscribers over server sent events.
+ *
+ * Updates are conflated per subscriber and account: the committing thread only
+ * overwrites the pending balance of the account and schedules the subscriber,
+ * a dispatcher thread later sends whatever is pending. A slow subscriber
+ * therefore only ever gets the latest balance. The write itself runs on a writer
+ * thread which the dispatcher waits for at most {@code maxStallMillis}; a
+ * subscriber whose write takes longer is dropped, so a stalled client never
+ * holds a dispatcher thread for longer than that. The blocked writer thread
+ * completes the emitter of a dropped subscriber once the write returns, never
+ * the committing thread, which holds the account locks.
+ */
+@Slf4j
+@Service
+public class BalanceSubscriptionService implements AccountChangeListener {
+
+	private final SubscriptionProperties properties;
+
+	private final AccountsRepository accountsRepository;
+
+	private final Map<String, Set<Subscriber>> subscribersByAccount = new ConcurrentHashMap<>();
+
+	private final AtomicInteger subscriberCount = new AtomicInteger();
+
+	private final ExecutorService dispatcher;
+
+	/**
+	 * Threads writing to the emitters, a stalled write keeps its thread until
+	 * the container times it out.
+	 */
+	private final ExecutorService writer;
+
+	@Autowired
+	public BalanceSubscriptionService(SubscriptionProperties properties, AccountsRepository accountsRepository) {
+		this.properties = properties;
+		this.accountsRepository = accountsRepository;
+		this.dispatcher = Executors.newFixedThreadPool(properties.getDispatcherThreads(), r -> {
+			Thread thread = new Thread(r, "balance-dispatcher");
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.writer = Executors.newCachedThreadPool(r -> {
+			Thread thread = new Thread(r, "balance-writer");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	@PreDestroy
+	public void stop() {
+		dispatcher.shutdownNow();
+		writer.shutdownNow();
+	}
+
+	private final class Subscriber {
+
+		private final SseEmitter emitter;
+
+		private final Set<String> accountIds;
+
+		private final Map<String, BigDecimal> pending = new ConcurrentHashMap<>();
+
+		/**
+		 * Accounts with a balance queued, true once a committed change was queued.
+		 */
+		private final Map<String, Boolean> published = new ConcurrentHashMap<>();
+
+		private final AtomicBoolean scheduled = new AtomicBoolean();
+
+		private final AtomicBoolean closed = new AtomicBoolean();
+
+		private volatile boolean dropped;
+
+		private Subscriber(SseEmitter emitter, Set<String> accountIds) {
+			this.emitter = emitter;
+			this.accountIds = accountIds;
+		}
+
+		private void publish(String accountId, BigDecimal balance) {
+			if (closed.get()) {
+				return;
+			}
+			published.compute(accountId, (id, committed) -> {
+				pending.put(accountId, balance);
+				return Boolean.TRUE;
+			});
+			schedule();
+		}
+
+		/**
+		 * Queues the balance read on subscription, unless a committed change of
+		 * the account was queued first: that one is at least as recent.
+		 */
+		private void publishInitial(String accountId, BigDecimal balance) {
+			published.computeIfAbsent(accountId, id -> {
+				pending.put(accountId, balance);
+				return Boolean.FALSE;
+			});
+			schedule();
+		}
+
+		private void schedule() {
+			if (!closed.get() && scheduled.compareAndSet(false, true)) {
+				dispatcher.execute(this::drain);
+			}
+		}
+
+		private void drain() {
+			do {
+				try {
+					Iterator<Map.Entry<String, BigDecimal>> iterator = pending.entrySet().iterator();
+					while (iterator.hasNext() && !closed.get()) {
+						Map.Entry<String, BigDecimal> entry = iterator.next();
+						// remove only this value, a newer one published meanwhile stays pending
+						if (pending.remove(entry.getKey(), entry.getValue())) {
+							send(entry.getKey(), entry.getValue());
+						}
+					}
+				} finally {
+					scheduled.set(false);
+				}
+			} while (!closed.get() && !pending.isEmpty() && scheduled.compareAndSet(false, true));
+		}
+
+		private void send(String accountId, BigDecimal balance) {
+			Future<?> write = writer.submit(() -> {
+				emitter.send(SseEmitter.event().name("balance").id(accountId)
+						.data(new BalanceUpdate(accountId, balance), MediaType.APPLICATION_JSON));
+				return null;
+			});
+			try {
+				write.get(properties.getMaxStallMillis(), TimeUnit.MILLISECONDS);
+			} catch (TimeoutException e) {
+				log.warn("Dropping stalled balance subscriber of {}", accountIds);
+				dropped = true;
+				close();
+				// completing waits for the blocked write, queue it behind on a writer thread
+				writer.execute(() -> {
+					try {
+						write.get();
+					} catch (InterruptedException | ExecutionException | CancellationException ignored) {
+						// the write failed, the emitter is completed either way
+					}
+					emitter.complete();
+				});
+			} catch (ExecutionException e) {
+				close();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				close();
+			}
+		}
+
+		private void close() {
+			if (!closed.compareAndSet(false, true)) {
+				return;
+			}
+			for (String accountId : accountIds) {
+				subscribersByAccount.computeIfPresent(accountId, (id, subscribers) -> {
+					subscribers.remove(this);
+					return subscribers.isEmpty() ? null : subscribers;
+				});
+			}
+			subscriberCount.decrementAndGet();
+		}
+	}
+
+	/**
+	 * Used to register a subscriber for the given accounts. The current balances
+	 * are sent first, then every committed change.
+	 * @param accountIds accounts to follow
+	 * @param emitter    emitter of the subscriber's response
+	 * @throws TooManySubscribersException if the subscriber limits are reached
+	 */
+	public void subscribe(Set<String> accountIds, SseEmitter emitter) {
+		if (accountIds.size() > properties.getMaxAccountsPerSubscriber()) {
+			throw new TooManySubscribersException("At most " + properties.getMaxAccountsPerSubscriber()
+					+ " accounts can be followed by one subscription.");
+		}
+		if (subscriberCount.incrementAndGet() > properties.getMaxSubscribers()) {
+			subscriberCount.decrementAndGet();
+			throw new TooManySubscribersException("Too many balance subscriptions. Please try after sometime.");
+		}
+		Subscriber subscriber = new Subscriber(emitter, Set.copyOf(accountIds));
+		emitter.onCompletion(subscriber::close);
+		emitter.onTimeout(subscriber::close);
+		emitter.onError(e -> subscriber.close());
+		for (String accountId : subscriber.accountIds) {
+			subscribersByAccount.computeIfAbsent(accountId, id -> ConcurrentHashMap.newKeySet()).add(subscriber);
+			Account account = accountsRepository.getAccount(accountId);
+			if (account != null) {
+				subscriber.publishInitial(accountId, account.getBalance());
+			}
+		}
+	}
+
+	public long getEmitterTimeoutMillis() {
+		return properties.getEmitterTimeoutMillis();
+	}
+
+	public int getSubscriberCount() {
+		return subscriberCount.get();
+	}
+
+	@Override
+	public void onAccountCreated(Account account) {
+		publish(account);
+	}
+
+	@Override
+	public void onTransferCommitted(AccountTransfer accountTransfer, Account fromAccount, Account toAccount) {
+		publish(fromAccount);
+		publish(toAccount);
+	}
+
+	@Override
+	public void onBalanceAdjusted(Account account, BigDecimal delta) {
+		publish(account);
+	}
+
+	private void publish(Account account) {
+		Set<Subscriber> subscribers = subscribersByAccount.get(account.getAccountId());
+		if (subscribers == null) {
+			return;
+		}
+		BigDecimal balance = account.getBalance();
+		for (Subscriber subscriber : subscribers) {
+			subscriber.publish(account.getAccountId(), balance);
+		}
+	}
+}
@@ -0,0 +1,16 @@
+package com.dws.challenge.subscription;
+
+import java.math.BigDecimal;
+
+import lombok.Data;
+
+/**
+ * Event payload pushed to balance subscribers.
+ */
+@Data
+public class BalanceUpdate {
+
+	private final String accountId;
+
+	private final BigDecimal balance;
+}
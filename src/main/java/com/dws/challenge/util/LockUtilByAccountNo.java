@@ -1,14 +1,24 @@
 
 package com.dws.challenge.util;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
 
 import org.springframework.stereotype.Component;
 
+import com.dws.challenge.diagnostics.AccountLockBusyEvent;
+import com.dws.challenge.diagnostics.AccountLockHeldEvent;
+import com.dws.challenge.diagnostics.AccountLockWaitEvent;
+import com.dws.challenge.diagnostics.HeldLock;
+import com.dws.challenge.diagnostics.LockDiagnostics;
+
 import lombok.extern.apachecommons.CommonsLog;
 
 
@@ -18,23 +28,47 @@ import lombok.extern.apachecommons.CommonsLog;
  * @author Arijit De
  * */
 @Component
+@CommonsLog
 public class LockUtilByAccountNo {
 	
 	private static Map<String, LockWrapper> locks = new ConcurrentHashMap<String, LockWrapper>();
     
+    /**
+     * ReentrantLock exposing its owner and queued threads for diagnostics
+     * */
+    private static class DiagnosticLock extends ReentrantLock {
+        
+        private static final long serialVersionUID = 1L;
+        
+        private Thread owner() {
+            return getOwner();
+        }
+        
+        private List<Thread> queuedThreads() {
+            return new ArrayList<>(getQueuedThreads());
+        }
+    }
+    
     private static class LockWrapper {
-        private final Lock lock = new ReentrantLock();
+        private final DiagnosticLock lock = new DiagnosticLock();
         private final AtomicInteger numberOfThreadsInQueue = new AtomicInteger(1);
+        // written by the owner, read by lock dumps
+        private volatile long acquiredNanos;
+        private AccountLockHeldEvent heldEvent;
         
         private LockWrapper addThreadInQueue() {
-            int inc = numberOfThreadsInQueue.incrementAndGet(); 
-            System.err.println("Thread Count after add - " + inc);
+            int inc = numberOfThreadsInQueue.incrementAndGet();
+            if (log.isTraceEnabled()) {
+                log.trace("Thread Count after add - " + inc);
+            }
             return this;
         }
         
         private int removeThreadFromQueue() {
             int dec = numberOfThreadsInQueue.decrementAndGet();
-            System.err.println("Thread Count after remove - " + dec);
+            if (log.isTraceEnabled()) {
+                log.trace("Thread Count after remove - " + dec);
+            }
             return dec;
         }
         
@@ -68,7 +102,11 @@ public class LockUtilByAccountNo {
      * */
     public void lock(String accountNo) {
         LockWrapper lockWrapper = locks.compute(accountNo, (k, v) -> v == null ? new LockWrapper() : v.addThreadInQueue());
+        AccountLockWaitEvent waitEvent = AccountLockWaitEvent.start();
+        Thread holder = lockWrapper.lock.owner();
         lockWrapper.lock.lock();
+        waitEvent.finish(accountNo, holder, true);
+        acquired(lockWrapper);
     }
     
     /**
@@ -79,7 +117,77 @@ public class LockUtilByAccountNo {
      * */
     public boolean tryLock(String accountNo) {
         LockWrapper lockWrapper = locks.compute(accountNo, (k, v) -> v == null ? new LockWrapper() : v.addThreadInQueue());
-        return lockWrapper.lock.tryLock();
+        if (lockWrapper.lock.tryLock()) {
+            acquired(lockWrapper);
+            return true;
+        }
+        AccountLockBusyEvent.record(accountNo, lockWrapper.lock.owner());
+        // not acquired, leave the queue so that the wrapper can still be removed by the holder
+        leaveQueue(accountNo);
+        return false;
+    }
+    
+    /**
+     * Used to acquire lock on top of accountNo, waiting at most the given time
+     * @param accountNo Account No no top of which lock acquired
+     * @param timeout maximum time to wait for the lock
+     * @param unit time unit of the timeout
+     * @return true if lock aquired or else false 
+     * @throws InterruptedException if interrupted while waiting
+     * */
+    public boolean tryLock(String accountNo, long timeout, TimeUnit unit) throws InterruptedException {
+        LockWrapper lockWrapper = locks.compute(accountNo, (k, v) -> v == null ? new LockWrapper() : v.addThreadInQueue());
+        AccountLockWaitEvent waitEvent = AccountLockWaitEvent.start();
+        Thread holder = lockWrapper.lock.owner();
+        boolean acquired = false;
+        try {
+            acquired = lockWrapper.lock.tryLock(timeout, unit);
+        } finally {
+            waitEvent.finish(accountNo, holder, acquired);
+            if (acquired) {
+                acquired(lockWrapper);
+            } else {
+                leaveQueue(accountNo);
+            }
+        }
+        return acquired;
+    }
+    
+    /**
+     * Used to acquire the locks of several accounts without waiting. The locks
+     * are taken in ascending account no order, so callers sharing accounts
+     * always compete for the same lock first; if one lock is held by another
+     * thread, the locks taken so far are released again.
+     * @param accountNos Account Nos to lock, duplicates are locked once
+     * @return true if all locks aquired or else false
+     * */
+    public boolean tryLockAll(String... accountNos) {
+        String[] ordered = canonicalOrder(accountNos);
+        for (int i = 0; i < ordered.length; i++) {
+            if (!tryLock(ordered[i])) {
+                for (int j = i - 1; j >= 0; j--) {
+                    unlock(ordered[j]);
+                }
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Used to release the locks taken by {@link #tryLockAll(String...)}, in
+     * reverse lock order
+     * @param accountNos Account Nos passed to tryLockAll
+     * */
+    public void unlockAll(String... accountNos) {
+        String[] ordered = canonicalOrder(accountNos);
+        for (int i = ordered.length - 1; i >= 0; i--) {
+            unlock(ordered[i]);
+        }
+    }
+    
+    private static String[] canonicalOrder(String... accountNos) {
+        return Arrays.stream(accountNos).distinct().sorted().toArray(String[]::new);
     }
     
     /**
@@ -89,9 +197,58 @@ public class LockUtilByAccountNo {
      * */
     public void unlock(String accountNo) {
         LockWrapper lockWrapper = locks.get(accountNo);
+        AccountLockHeldEvent heldEvent = null;
+        if (lockWrapper.lock.getHoldCount() == 1) {
+            heldEvent = lockWrapper.heldEvent;
+            lockWrapper.heldEvent = null;
+            lockWrapper.acquiredNanos = 0;
+        }
         lockWrapper.lock.unlock();
-        if (lockWrapper.removeThreadFromQueue() == 0) { 
-            locks.remove(accountNo, lockWrapper);
+        if (heldEvent != null) {
+            heldEvent.finish(accountNo);
+        }
+        leaveQueue(accountNo);
+    }
+    
+    /**
+     * Used to leave the queue of accountNo, removing its wrapper once no thread
+     * is left. The count is decremented inside the map, so a thread joining in
+     * between can not get a wrapper that is removed right after
+     * @param accountNo Account No whose queue is left
+     * */
+    private static void leaveQueue(String accountNo) {
+        locks.computeIfPresent(accountNo, (k, v) -> v.removeThreadFromQueue() == 0 ? null : v);
+    }
+    
+    /**
+     * Used to list the locks held right now, for diagnostics. The locks are
+     * read one by one while threads go on locking, so the list is not a
+     * consistent snapshot
+     * @return held locks with their owners and queued threads
+     * */
+    public List<HeldLock> getHeldLocks() {
+        List<HeldLock> heldLocks = new ArrayList<>();
+        long nowNanos = System.nanoTime();
+        for (Map.Entry<String, LockWrapper> entry : locks.entrySet()) {
+            LockWrapper lockWrapper = entry.getValue();
+            Thread owner = lockWrapper.lock.owner();
+            long acquiredNanos = lockWrapper.acquiredNanos;
+            if (owner == null) {
+                continue;
+            }
+            heldLocks.add(HeldLock.builder().accountId(entry.getKey()).owner(LockDiagnostics.threadName(owner))
+                    .heldMillis(acquiredNanos != 0 ? TimeUnit.NANOSECONDS.toMillis(nowNanos - acquiredNanos) : 0)
+                    .waiters(lockWrapper.lock.queuedThreads().stream().map(LockDiagnostics::threadName)
+                            .collect(Collectors.toList()))
+                    .build());
+        }
+        return heldLocks;
+    }
+    
+    private static void acquired(LockWrapper lockWrapper) {
+        if (lockWrapper.lock.getHoldCount() == 1) {
+            lockWrapper.acquiredNanos = System.nanoTime();
+            lockWrapper.heldEvent = AccountLockHeldEvent.start();
         }
     }
     
@@ -0,0 +1,183 @@
+package com.dws.challenge.util;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.dws.challenge.config.RateLimitProperties;
+import com.dws.challenge.exception.RateLimitExceededException;
+
+/**
+ * Lock free admission control in front of {@link LockUtilByAccountNo}.
+ *
+ * Every account gets a token bucket, stored as a single theoretical arrival
+ * time (GCRA) so that acquiring a token is one CAS. A bucket whose arrival time
+ * is in the past is full and carries no information, so those buckets are
+ * dropped by a periodic sweep and the map only holds recently active accounts.
+ * A global counter bounds the number of transfers executing at once.
+ */
+@Component
+public class RateLimiterByAccountNo {
+
+	private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+	private final RateLimitProperties properties;
+
+	private final Map<String, Bucket> buckets = new ConcurrentHashMap<>();
+
+	private final AtomicInteger inFlight = new AtomicInteger();
+
+	private ScheduledExecutorService evictor;
+
+	/**
+	 * Token bucket of a single account. Extends AtomicLong to keep one object
+	 * per tracked account, the value is the theoretical arrival time in nanos.
+	 */
+	private static final class Bucket extends AtomicLong {
+
+		private static final long serialVersionUID = 1L;
+
+		private final long intervalNanos;
+		private final long burstNanos;
+
+		private Bucket(long intervalNanos, long burstNanos, long now) {
+			super(now);
+			this.intervalNanos = intervalNanos;
+			this.burstNanos = burstNanos;
+		}
+
+		/**
+		 * @return 0 if a token was taken, else the nanos until one is available.
+		 */
+		private long tryTake(long now) {
+			for (;;) {
+				long tat = get();
+				long newTat = Math.max(tat, now) + intervalNanos;
+				long wait = newTat - now - burstNanos;
+				if (wait > 0) {
+					return wait;
+				}
+				if (compareAndSet(tat, newTat)) {
+					return 0;
+				}
+			}
+		}
+
+		/**
+		 * Gives back a token taken by {@link #tryTake(long)}.
+		 */
+		private void refund() {
+			addAndGet(-intervalNanos);
+		}
+	}
+
+	@Autowired
+	public RateLimiterByAccountNo(RateLimitProperties properties) {
+		this.properties = properties;
+	}
+
+	@PostConstruct
+	public void startEviction() {
+		if (!properties.isEnabled()) {
+			return;
+		}
+		evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread thread = new Thread(r, "rate-limit-evictor");
+			thread.setDaemon(true);
+			return thread;
+		});
+		long interval = properties.getEvictionIntervalMillis();
+		evictor.scheduleWithFixedDelay(this::evictIdle, interval, interval, TimeUnit.MILLISECONDS);
+	}
+
+	@PreDestroy
+	public void stopEviction() {
+		if (evictor != null) {
+			evictor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Used to admit a transfer touching the given accounts. Takes a global
+	 * concurrency slot and one token per distinct account; if one account has
+	 * no token left, the tokens taken from the others are given back. On success the caller must
+	 * call {@link #release()} once the transfer is done.
+	 * @param accountIds accounts involved in the transfer
+	 * @throws RateLimitExceededException if a slot or a token is not available
+	 * */
+	public void acquire(String... accountIds) {
+		if (!properties.isEnabled()) {
+			return;
+		}
+		int current;
+		do {
+			current = inFlight.get();
+			if (current >= properties.getMaxConcurrentTransfers()) {
+				throw new RateLimitExceededException("Too many transfers in progress. Please try after sometime.", 1);
+			}
+		} while (!inFlight.compareAndSet(current, current + 1));
+
+		long now = System.nanoTime();
+		String[] distinctIds = Arrays.stream(accountIds).distinct().toArray(String[]::new);
+		Bucket[] taken = new Bucket[distinctIds.length];
+		for (int i = 0; i < distinctIds.length; i++) {
+			String accountId = distinctIds[i];
+			Bucket bucket = buckets.computeIfAbsent(accountId, id -> newBucket(id, now));
+			long wait = bucket.tryTake(now);
+			if (wait > 0) {
+				// a rejected transfer must not drain the budget of its other accounts
+				for (int j = 0; j < i; j++) {
+					taken[j].refund();
+				}
+				inFlight.decrementAndGet();
+				throw new RateLimitExceededException("Transfer rate exceeded for account id " + accountId
+						+ ". Please try after sometime.", Math.max(1, (wait + NANOS_PER_SECOND - 1) / NANOS_PER_SECOND));
+			}
+			taken[i] = bucket;
+		}
+	}
+
+	/**
+	 * Used to give back the concurrency slot taken by {@link #acquire(String...)}.
+	 * */
+	public void release() {
+		if (properties.isEnabled()) {
+			inFlight.decrementAndGet();
+		}
+	}
+
+	/**
+	 * Drops every bucket that has refilled completely.
+	 * */
+	public void evictIdle() {
+		long now = System.nanoTime();
+		buckets.entrySet().removeIf(entry -> entry.getValue().get() - now <= 0);
+	}
+
+	public int trackedAccounts() {
+		return buckets.size();
+	}
+
+	private Bucket newBucket(String accountId, long now) {
+		RateLimitProperties.AccountClass accountClass = properties.getDefaultClass();
+		for (RateLimitProperties.AccountClass candidate : properties.getClasses().values()) {
+			if (!candidate.getAccountPrefix().isEmpty() && accountId.startsWith(candidate.getAccountPrefix())) {
+				accountClass = candidate;
+				break;
+			}
+		}
+		long interval = Math.max(1, (long) (NANOS_PER_SECOND / accountClass.getRefillPerSecond()));
+		return new Bucket(interval, interval * accountClass.getCapacity(), now);
+	}
+}
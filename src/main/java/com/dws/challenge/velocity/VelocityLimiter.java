@@ -0,0 +1,347 @@
+package com.dws.challenge.velocity;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Clock;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.dws.challenge.config.VelocityProperties;
+import com.dws.challenge.exception.VelocityLimitExceededException;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Sliding window limits on the number and amount of outgoing transfers per
+ * account, e.g. at most 100 transfers or 10000 per hour.
+ *
+ * Every account has a ring of buckets per rule holding the transfer count and
+ * the amount in minor units; a window slides bucket by bucket. Checks and
+ * records of an account are made under its account lock, in the same critical
+ * section as the balance check, so a check and the following record can not
+ * interleave with another transfer of the account. Accounts without transfers
+ * in any window are evicted, and the number of tracked accounts is capped. Once
+ * the cap is reached, a transfer of a new account triggers an eviction scan at
+ * most every {@code onDemandEvictionIntervalMillis}, other transfers of new
+ * accounts are rejected without scanning.
+ */
+@Slf4j
+@Component
+public class VelocityLimiter {
+
+	private final VelocityProperties properties;
+
+	private final Clock clock;
+
+	private final Rule[] rules;
+
+	private final Map<String, AccountWindows> accounts = new ConcurrentHashMap<>();
+
+	private final AtomicBoolean evicting = new AtomicBoolean();
+
+	private volatile long lastEvictionMillis;
+
+	private ScheduledExecutorService evictor;
+
+	private static final class Rule {
+
+		private final String name;
+
+		private final long bucketMillis;
+
+		private final int buckets;
+
+		private final int maxCount;
+
+		/**
+		 * In minor units, {@link Long#MAX_VALUE} for no limit.
+		 */
+		private final long maxAmount;
+
+		private Rule(VelocityProperties.Rule rule, int amountScale) {
+			this.name = rule.getName();
+			this.buckets = Math.max(1, rule.getBuckets());
+			this.bucketMillis = Math.max(1, rule.getWindow().toMillis() / buckets);
+			this.maxCount = rule.getMaxCount() > 0 ? rule.getMaxCount() : Integer.MAX_VALUE;
+			this.maxAmount = rule.getMaxAmount() != null ? toMinorUnits(rule.getMaxAmount(), amountScale) : Long.MAX_VALUE;
+		}
+	}
+
+	/**
+	 * Buckets of one rule. Bucket n of the time line lives in slot n % length;
+	 * the slots of {@code newestBucket - length + 1} to {@code newestBucket}
+	 * form the window.
+	 */
+	private static final class Ring {
+
+		private final int[] counts;
+
+		private final long[] amounts;
+
+		private long newestBucket;
+
+		private int count;
+
+		private long amount;
+
+		private Ring(int buckets) {
+			this.counts = new int[buckets];
+			this.amounts = new long[buckets];
+		}
+
+		private void advance(long bucket) {
+			if (bucket <= newestBucket) {
+				return;
+			}
+			if (bucket - newestBucket >= counts.length) {
+				Arrays.fill(counts, 0);
+				Arrays.fill(amounts, 0);
+				count = 0;
+				amount = 0;
+			} else {
+				for (long expired = newestBucket + 1; expired <= bucket; expired++) {
+					int slot = (int) (expired % counts.length);
+					count -= counts[slot];
+					amount -= amounts[slot];
+					counts[slot] = 0;
+					amounts[slot] = 0;
+				}
+			}
+			newestBucket = bucket;
+		}
+
+		private void add(long minorUnits) {
+			int slot = (int) (newestBucket % counts.length);
+			counts[slot]++;
+			amounts[slot] += minorUnits;
+			count++;
+			amount += minorUnits;
+		}
+
+		/**
+		 * Takes one transfer from the first bucket at or after the given one that
+		 * still counts a transfer.
+		 */
+		private void remove(long fromBucket, long minorUnits) {
+			for (long bucket = Math.max(fromBucket, newestBucket - counts.length + 1); bucket <= newestBucket; bucket++) {
+				int slot = (int) (bucket % counts.length);
+				if (counts[slot] > 0) {
+					long taken = Math.min(amounts[slot], minorUnits);
+					counts[slot]--;
+					amounts[slot] -= taken;
+					count--;
+					amount -= taken;
+					return;
+				}
+			}
+		}
+	}
+
+	private static final class AccountWindows {
+
+		private final Ring[] rings;
+
+		private AccountWindows(Rule[] rules) {
+			this.rings = new Ring[rules.length];
+			for (int i = 0; i < rules.length; i++) {
+				rings[i] = new Ring(rules[i].buckets);
+			}
+		}
+
+		private boolean isIdle(Rule[] rules, long nowMillis) {
+			for (int i = 0; i < rules.length; i++) {
+				rings[i].advance(nowMillis / rules[i].bucketMillis);
+				if (rings[i].count > 0) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
+	@Autowired
+	public VelocityLimiter(VelocityProperties properties) {
+		this(properties, Clock.systemUTC());
+	}
+
+	public VelocityLimiter(VelocityProperties properties, Clock clock) {
+		this.properties = properties;
+		this.clock = clock;
+		this.rules = properties.getRules().stream().map(rule -> new Rule(rule, properties.getAmountScale()))
+				.toArray(Rule[]::new);
+	}
+
+	@PostConstruct
+	public void start() {
+		if (!isActive()) {
+			return;
+		}
+		evictor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "velocity-evictor");
+			thread.setDaemon(true);
+			return thread;
+		});
+		long interval = properties.getEvictionIntervalMillis();
+		evictor.scheduleWithFixedDelay(this::evictIdle, interval, interval, TimeUnit.MILLISECONDS);
+	}
+
+	@PreDestroy
+	public void stop() {
+		if (evictor != null) {
+			evictor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Used to check an outgoing transfer against all rules, must be called
+	 * under the lock of the account.
+	 *
+	 * @param accountId from account
+	 * @param amount    transfer amount
+	 * @throws VelocityLimitExceededException if a limit would be exceeded, or
+	 *                                        the account can not be tracked
+	 */
+	public void check(String accountId, BigDecimal amount) {
+		if (!isActive()) {
+			return;
+		}
+		long minorUnits = toMinorUnits(amount, properties.getAmountScale());
+		long nowMillis = clock.millis();
+		// under the map lock of the account, as the evictor advances the rings as well
+		AccountWindows windows = accounts.computeIfPresent(accountId, (id, current) -> {
+			for (int i = 0; i < rules.length; i++) {
+				Ring ring = current.rings[i];
+				ring.advance(nowMillis / rules[i].bucketMillis);
+				checkRule(rules[i], accountId, ring.count, ring.amount, minorUnits);
+			}
+			return current;
+		});
+		if (windows == null) {
+			checkCapacity(accountId);
+			for (Rule rule : rules) {
+				checkRule(rule, accountId, 0, 0, minorUnits);
+			}
+		}
+	}
+
+	private void checkRule(Rule rule, String accountId, int count, long amount, long minorUnits) {
+		if (count >= rule.maxCount) {
+			throw new VelocityLimitExceededException("Velocity limit " + rule.name + " of " + rule.maxCount
+					+ " transfers exceeded for Account id " + accountId + "!!!", rule.name);
+		}
+		if (amount > rule.maxAmount - minorUnits) {
+			throw new VelocityLimitExceededException("Velocity limit " + rule.name + " of amount "
+					+ BigDecimal.valueOf(rule.maxAmount, properties.getAmountScale()) + " exceeded for Account id "
+					+ accountId + "!!!", rule.name);
+		}
+	}
+
+	/**
+	 * Accounts are only stored once a transfer is recorded, so a new account
+	 * is checked against the cap here.
+	 */
+	private void checkCapacity(String accountId) {
+		if (accounts.size() < properties.getMaxTrackedAccounts()) {
+			return;
+		}
+		if (clock.millis() - lastEvictionMillis >= properties.getOnDemandEvictionIntervalMillis()) {
+			evictIdle();
+		}
+		if (accounts.size() >= properties.getMaxTrackedAccounts()) {
+			log.warn("Velocity limiter tracks {} accounts, rejecting transfers of new accounts", accounts.size());
+			throw new VelocityLimitExceededException(
+					"Velocity limits can not be tracked for Account id " + accountId + ". Please try after sometime.",
+					"capacity");
+		}
+	}
+
+	/**
+	 * Used to count a committed outgoing transfer, must be called under the
+	 * lock of the account.
+	 *
+	 * @param accountId from account
+	 * @param amount    transfer amount
+	 */
+	public void record(String accountId, BigDecimal amount) {
+		if (!isActive()) {
+			return;
+		}
+		long minorUnits = toMinorUnits(amount, properties.getAmountScale());
+		long nowMillis = clock.millis();
+		// compute, so that a concurrent eviction can not drop the record
+		accounts.compute(accountId, (id, windows) -> {
+			AccountWindows current = windows != null ? windows : new AccountWindows(rules);
+			for (int i = 0; i < rules.length; i++) {
+				current.rings[i].advance(nowMillis / rules[i].bucketMillis);
+				current.rings[i].add(minorUnits);
+			}
+			return current;
+		});
+	}
+
+	/**
+	 * Used to take back a transfer counted by {@link #record(String, BigDecimal)}
+	 * that was rolled back afterwards, must be called under the lock of the
+	 * account. The transfer is taken from the first bucket at or after the given
+	 * time that counts one, nothing is taken once it left the window.
+	 *
+	 * @param accountId       from account
+	 * @param amount          transfer amount
+	 * @param notBeforeMillis a time at or before the record
+	 */
+	public void release(String accountId, BigDecimal amount, long notBeforeMillis) {
+		if (!isActive()) {
+			return;
+		}
+		long minorUnits = toMinorUnits(amount, properties.getAmountScale());
+		long nowMillis = clock.millis();
+		accounts.computeIfPresent(accountId, (id, windows) -> {
+			for (int i = 0; i < rules.length; i++) {
+				windows.rings[i].advance(nowMillis / rules[i].bucketMillis);
+				windows.rings[i].remove(notBeforeMillis / rules[i].bucketMillis, minorUnits);
+			}
+			return windows;
+		});
+	}
+
+	/**
+	 * Drops every account without transfers in any window.
+	 */
+	public void evictIdle() {
+		if (!evicting.compareAndSet(false, true)) {
+			return;
+		}
+		try {
+			long nowMillis = clock.millis();
+			lastEvictionMillis = nowMillis;
+			for (String accountId : accounts.keySet()) {
+				accounts.computeIfPresent(accountId, (id, windows) -> windows.isIdle(rules, nowMillis) ? null : windows);
+			}
+		} finally {
+			evicting.set(false);
+		}
+	}
+
+	public int trackedAccounts() {
+		return accounts.size();
+	}
+
+	private boolean isActive() {
+		return properties.isEnabled() && rules.length > 0;
+	}
+
+	private static long toMinorUnits(BigDecimal amount, int scale) {
+		return amount.movePointRight(scale).setScale(0, RoundingMode.CEILING).longValueExact();
+	}
+}
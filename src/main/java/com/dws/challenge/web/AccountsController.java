@@ -1,17 +1,35 @@
 package com.dws.challenge.web;
 
+import com.dws.challenge.cluster.ClusterBalanceQuery;
+import com.dws.challenge.cluster.ClusterRouter;
+import com.dws.challenge.cluster.ClusterTransferService;
 import com.dws.challenge.domain.Account;
 import com.dws.challenge.domain.AccountTransfer;
+import com.dws.challenge.domain.MultiLegTransfer;
 import com.dws.challenge.exception.AccountBusyException;
 import com.dws.challenge.exception.AccountNotFoundException;
 import com.dws.challenge.exception.DuplicateAccountIdException;
 import com.dws.challenge.exception.InsufficientBalanceException;
+import com.dws.challenge.exception.LaneSaturatedException;
+import com.dws.challenge.exception.NodeUnavailableException;
+import com.dws.challenge.exception.RateLimitExceededException;
+import com.dws.challenge.exception.ReadOnlyReplicaException;
+import com.dws.challenge.exception.TooManySubscribersException;
+import com.dws.challenge.index.BalanceIndex;
+import com.dws.challenge.index.BalancePage;
 import com.dws.challenge.exception.TransferFailureException;
+import com.dws.challenge.exception.VelocityLimitExceededException;
 import com.dws.challenge.service.AccountsService;
+import com.dws.challenge.scheduling.Lane;
+import com.dws.challenge.scheduling.TransferScheduler;
 import com.dws.challenge.service.NotificationService;
+import com.dws.challenge.subscription.BalanceSubscriptionService;
+import com.dws.challenge.util.RateLimiterByAccountNo;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -19,9 +37,20 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import javax.validation.Valid;
 
@@ -34,42 +63,176 @@ public class AccountsController {
 
 	private final NotificationService notificationService;
 
+	private final RateLimiterByAccountNo rateLimiter;
+
+	private final ClusterRouter clusterRouter;
+
+	private final ClusterTransferService clusterTransferService;
+
+	private final BalanceSubscriptionService balanceSubscriptionService;
+
+	private final BalanceIndex balanceIndex;
+
+	private final ClusterBalanceQuery clusterBalanceQuery;
+
+	private final TransferScheduler transferScheduler;
+
 	@Autowired
-	public AccountsController(AccountsService accountsService, NotificationService notificationService) {
+	public AccountsController(AccountsService accountsService, NotificationService notificationService,
+			RateLimiterByAccountNo rateLimiter, ClusterRouter clusterRouter,
+			ClusterTransferService clusterTransferService, BalanceSubscriptionService balanceSubscriptionService,
+			BalanceIndex balanceIndex, ClusterBalanceQuery clusterBalanceQuery, TransferScheduler transferScheduler) {
 		this.accountsService = accountsService;
 		this.notificationService = notificationService;
+		this.rateLimiter = rateLimiter;
+		this.clusterRouter = clusterRouter;
+		this.clusterTransferService = clusterTransferService;
+		this.balanceSubscriptionService = balanceSubscriptionService;
+		this.balanceIndex = balanceIndex;
+		this.clusterBalanceQuery = clusterBalanceQuery;
+		this.transferScheduler = transferScheduler;
 	}
 
-	@PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
-	public ResponseEntity<Object> createAccount(@RequestBody @Valid Account account) {
+	@PostMapping(consumes = { MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE })
+	public ResponseEntity<Object> createAccount(@RequestBody @Valid Account account,
+			@RequestHeader(value = ClusterRouter.FORWARDED_HEADER, required = false) String forwardedBy,
+			@RequestHeader HttpHeaders requestHeaders) {
 		log.info("Creating account {}", account);
 
+		if (!this.clusterRouter.isLocal(account.getAccountId(), forwardedBy)) {
+			return this.clusterRouter.forward(this.clusterRouter.ownerOf(account.getAccountId()), HttpMethod.POST,
+					"/v1/accounts", account, requestHeaders);
+		}
+
 		try {
 			this.accountsService.createAccount(account);
 		} catch (DuplicateAccountIdException daie) {
 			return new ResponseEntity<>(daie.getMessage(), HttpStatus.BAD_REQUEST);
+		} catch (ReadOnlyReplicaException rore) {
+			return new ResponseEntity<>(rore.getMessage(), HttpStatus.SERVICE_UNAVAILABLE);
 		}
 
 		return new ResponseEntity<>(HttpStatus.CREATED);
 	}
 
 	@GetMapping(path = "/{accountId}")
-	public Account getAccount(@PathVariable String accountId) {
+	public ResponseEntity<Object> getAccount(@PathVariable String accountId,
+			@RequestHeader(value = ClusterRouter.FORWARDED_HEADER, required = false) String forwardedBy,
+			@RequestHeader HttpHeaders requestHeaders) {
 		log.info("Retrieving account for id {}", accountId);
-		return this.accountsService.getAccount(accountId);
+		if (!this.clusterRouter.isLocal(accountId, forwardedBy)) {
+			return this.clusterRouter.forward(this.clusterRouter.ownerOf(accountId), HttpMethod.GET,
+					"/v1/accounts/" + accountId, null, requestHeaders);
+		}
+		return new ResponseEntity<>(this.accountsService.getAccount(accountId), HttpStatus.OK);
+	}
+
+	/**
+	 * @GetMapping Used to page through the accounts with a balance below the
+	 * threshold, lowest first, served from the balance index. In cluster mode
+	 * a client request is answered for the accounts of all nodes, 503 if a node
+	 * can not be reached.
+	 * @RequestParam afterBalance and afterAccountId cursor returned by the previous page
+	 */
+	@GetMapping(path = "/query/balance-below")
+	public ResponseEntity<Object> balanceBelow(@RequestParam BigDecimal threshold,
+			@RequestParam(defaultValue = "100") int limit,
+			@RequestParam(required = false) BigDecimal afterBalance,
+			@RequestParam(required = false) String afterAccountId,
+			@RequestHeader(value = ClusterRouter.FORWARDED_HEADER, required = false) String forwardedBy) {
+		log.info("Querying accounts with balance below {}", threshold);
+		try {
+			BalancePage page = this.clusterRouter.isEnabled() && forwardedBy == null
+					? this.clusterBalanceQuery.balanceBelow(threshold, limit, afterBalance, afterAccountId)
+					: this.balanceIndex.balanceBelow(threshold, limit, afterBalance, afterAccountId);
+			return new ResponseEntity<>(page, HttpStatus.OK);
+		} catch (NodeUnavailableException nue) {
+			return new ResponseEntity<>(nue.getMessage(), HttpStatus.SERVICE_UNAVAILABLE);
+		}
+	}
+
+	/**
+	 * @GetMapping Used to page through the accounts by descending balance,
+	 * served from the balance index. In cluster mode a client request is
+	 * answered for the accounts of all nodes, 503 if a node can not be reached.
+	 * @RequestParam afterBalance and afterAccountId cursor returned by the previous page
+	 */
+	@GetMapping(path = "/query/top-balances")
+	public ResponseEntity<Object> topBalances(@RequestParam(defaultValue = "100") int limit,
+			@RequestParam(required = false) BigDecimal afterBalance,
+			@RequestParam(required = false) String afterAccountId,
+			@RequestHeader(value = ClusterRouter.FORWARDED_HEADER, required = false) String forwardedBy) {
+		log.info("Querying top {} balances", limit);
+		try {
+			BalancePage page = this.clusterRouter.isEnabled() && forwardedBy == null
+					? this.clusterBalanceQuery.topBalances(limit, afterBalance, afterAccountId)
+					: this.balanceIndex.topBalances(limit, afterBalance, afterAccountId);
+			return new ResponseEntity<>(page, HttpStatus.OK);
+		} catch (NodeUnavailableException nue) {
+			return new ResponseEntity<>(nue.getMessage(), HttpStatus.SERVICE_UNAVAILABLE);
+		}
+	}
+
+	/**
+	 * @GetMapping Used to follow balances instead of polling them. Sends a
+	 * "balance" event with the current balance of every account and then one
+	 * per committed change; a slow client only receives the latest balance.
+	 * Answers 503 if the subscriber limits are reached.
+	 * @RequestParam accountIds accounts to follow
+	 */
+	@GetMapping(path = "/subscribe", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+	public ResponseEntity<SseEmitter> subscribe(@RequestParam Set<String> accountIds) {
+		log.info("Subscribing to balances of {}", accountIds);
+		SseEmitter emitter = new SseEmitter(this.balanceSubscriptionService.getEmitterTimeoutMillis());
+		try {
+			this.balanceSubscriptionService.subscribe(accountIds, emitter);
+		} catch (TooManySubscribersException tmse) {
+			throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, tmse.getMessage(), tmse);
+		}
+		return new ResponseEntity<>(emitter, HttpStatus.OK);
 	}
 
 	
 	/**
 	 * @RequestMapping Used to amount transfer
 	 * @RequestBody accepts AccountTransfer object for transferring balance.
+	 * Transfers are executed in the priority lane named by the X-Priority-Lane
+	 * header or mapped to the X-Api-Key header. Once the lane admits them,
+	 * RateLimiterByAccountNo admits them before any repository or lock work,
+	 * rejected ones get 429 with a Retry-After header; transfers waiting in a
+	 * lane hold no rate limit slot.
+	 * In cluster mode the transfer is executed by the owner of the from-account.
 	 * @author Arijit De
 	 */ 
-	@RequestMapping(value = "/transferAmount", method = RequestMethod.POST, consumes = MediaType.APPLICATION_JSON_VALUE)
-	public ResponseEntity<Object> transferAmount(@RequestBody @Valid AccountTransfer accountTransfer) {
+	@RequestMapping(value = "/transferAmount", method = RequestMethod.POST, consumes = { MediaType.APPLICATION_JSON_VALUE,
+			MediaType.APPLICATION_CBOR_VALUE })
+	public ResponseEntity<Object> transferAmount(@RequestBody @Valid AccountTransfer accountTransfer,
+			@RequestHeader(value = ClusterRouter.FORWARDED_HEADER, required = false) String forwardedBy,
+			@RequestHeader(value = TransferScheduler.LANE_HEADER, required = false) String laneHeader,
+			@RequestHeader(value = TransferScheduler.API_KEY_HEADER, required = false) String apiKey,
+			@RequestHeader HttpHeaders requestHeaders) {
 		log.info("Initiating account transfer {}", accountTransfer);
+		if (!this.clusterRouter.isLocal(accountTransfer.getFromAccountId(), forwardedBy)) {
+			return this.clusterRouter.forward(this.clusterRouter.ownerOf(accountTransfer.getFromAccountId()),
+					HttpMethod.POST, "/v1/accounts/transferAmount", accountTransfer, requestHeaders);
+		}
+		Lane lane;
 		try {
-			if (this.accountsService.transferAmount(accountTransfer)) {
+			lane = this.transferScheduler.laneOf(laneHeader, apiKey);
+		} catch (IllegalArgumentException iae) {
+			return new ResponseEntity<>(iae.getMessage(), HttpStatus.BAD_REQUEST);
+		}
+		String[] accountIds = { accountTransfer.getFromAccountId(), accountTransfer.getToAccountId() };
+		try {
+			if (!this.clusterRouter.isLocal(accountTransfer.getToAccountId(), null)) {
+				// the owner of the to-account notifies about the credit when the transfer is committed
+				this.transferScheduler.execute(lane,
+						() -> rateLimited(accountIds, () -> this.clusterTransferService.transferAmount(accountTransfer)));
+				notificationService.notifyAboutTransfer(accountsService.getAccount(accountTransfer.getFromAccountId()),
+						"Dear User, Amount " + accountTransfer.getBalance() + " has been debited from account "
+								+ accountTransfer.getFromAccountId());
+			} else if (this.transferScheduler.execute(lane,
+					() -> rateLimited(accountIds, () -> this.accountsService.transferAmount(accountTransfer)))) {
 				notificationService.notifyAboutTransfer(accountsService.getAccount(accountTransfer.getFromAccountId()),
 						"Dear User, Amount " + accountTransfer.getBalance() + " has been debited from account "
 								+ accountTransfer.getFromAccountId());
@@ -81,14 +244,20 @@ public class AccountsController {
 						"Failed to transfer balance from account id - " + accountTransfer.getFromAccountId()
 								+ " to account id - " + accountTransfer.getToAccountId() + "!!!");
 			}
+		} catch (RateLimitExceededException rle) {
+			return tooManyRequests(rle);
 		} catch (AccountNotFoundException anfe) {
 			return new ResponseEntity<>(anfe.getMessage(), HttpStatus.NOT_FOUND);
 		} catch (AccountBusyException abe) {
 			return new ResponseEntity<>(abe.getMessage(), HttpStatus.CONFLICT);
 		} catch (InsufficientBalanceException ibe) {
 			return new ResponseEntity<>(ibe.getMessage(), HttpStatus.NOT_ACCEPTABLE);
+		} catch (VelocityLimitExceededException vlee) {
+			return new ResponseEntity<>(vlee.getMessage(), HttpStatus.UNPROCESSABLE_ENTITY);
 		} catch (TransferFailureException tfe) {
 			return new ResponseEntity<>(tfe.getMessage(), HttpStatus.BAD_REQUEST);
+		} catch (ReadOnlyReplicaException | LaneSaturatedException e) {
+			return new ResponseEntity<>(e.getMessage(), HttpStatus.SERVICE_UNAVAILABLE);
 		} catch (Exception e) {
 			e.printStackTrace();
 			return new ResponseEntity<>(e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
@@ -97,4 +266,89 @@ public class AccountsController {
 		return new ResponseEntity<>(HttpStatus.ACCEPTED);
 	}
 
+	/**
+	 * @RequestMapping Used to transfer several legs at once
+	 * @RequestBody accepts MultiLegTransfer object, e.g. one debit split into
+	 * merchant amount, fee and tax. All legs are committed or none.
+	 * In cluster mode all accounts must be owned by one node, which executes the
+	 * transfer.
+	 */
+	@RequestMapping(value = "/transferAmount/multi-leg", method = RequestMethod.POST, consumes = {
+			MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE })
+	public ResponseEntity<Object> transferMultiLeg(@RequestBody @Valid MultiLegTransfer multiLegTransfer,
+			@RequestHeader(value = ClusterRouter.FORWARDED_HEADER, required = false) String forwardedBy,
+			@RequestHeader(value = TransferScheduler.LANE_HEADER, required = false) String laneHeader,
+			@RequestHeader(value = TransferScheduler.API_KEY_HEADER, required = false) String apiKey,
+			@RequestHeader HttpHeaders requestHeaders) {
+		log.info("Initiating multi-leg transfer {}", multiLegTransfer);
+		String[] accountIds = multiLegTransfer.getLegs().stream()
+				.flatMap(leg -> Stream.of(leg.getFromAccountId(), leg.getToAccountId())).distinct()
+				.toArray(String[]::new);
+		Set<String> owners = Arrays.stream(accountIds).map(this.clusterRouter::ownerOf).collect(Collectors.toSet());
+		if (owners.size() > 1) {
+			return new ResponseEntity<>("All accounts of a multi-leg transfer must be owned by one node.",
+					HttpStatus.BAD_REQUEST);
+		}
+		if (!this.clusterRouter.isLocal(accountIds[0], forwardedBy)) {
+			return this.clusterRouter.forward(owners.iterator().next(), HttpMethod.POST,
+					"/v1/accounts/transferAmount/multi-leg", multiLegTransfer, requestHeaders);
+		}
+		Lane lane;
+		try {
+			lane = this.transferScheduler.laneOf(laneHeader, apiKey);
+		} catch (IllegalArgumentException iae) {
+			return new ResponseEntity<>(iae.getMessage(), HttpStatus.BAD_REQUEST);
+		}
+		try {
+			this.transferScheduler.execute(lane,
+					() -> rateLimited(accountIds, () -> this.accountsService.transferMultiLeg(multiLegTransfer)));
+			for (AccountTransfer leg : multiLegTransfer.getLegs()) {
+				notificationService.notifyAboutTransfer(accountsService.getAccount(leg.getFromAccountId()),
+						"Dear User, Amount " + leg.getBalance() + " has been debited from account "
+								+ leg.getFromAccountId());
+				notificationService.notifyAboutTransfer(accountsService.getAccount(leg.getToAccountId()),
+						"Dear User, Amount " + leg.getBalance() + " has been credited to account "
+								+ leg.getToAccountId());
+			}
+		} catch (RateLimitExceededException rle) {
+			return tooManyRequests(rle);
+		} catch (AccountNotFoundException anfe) {
+			return new ResponseEntity<>(anfe.getMessage(), HttpStatus.NOT_FOUND);
+		} catch (AccountBusyException abe) {
+			return new ResponseEntity<>(abe.getMessage(), HttpStatus.CONFLICT);
+		} catch (InsufficientBalanceException ibe) {
+			return new ResponseEntity<>(ibe.getMessage(), HttpStatus.NOT_ACCEPTABLE);
+		} catch (VelocityLimitExceededException vlee) {
+			return new ResponseEntity<>(vlee.getMessage(), HttpStatus.UNPROCESSABLE_ENTITY);
+		} catch (TransferFailureException tfe) {
+			return new ResponseEntity<>(tfe.getMessage(), HttpStatus.BAD_REQUEST);
+		} catch (ReadOnlyReplicaException | LaneSaturatedException e) {
+			return new ResponseEntity<>(e.getMessage(), HttpStatus.SERVICE_UNAVAILABLE);
+		} catch (Exception e) {
+			log.error("Multi-leg transfer {} failed", multiLegTransfer, e);
+			return new ResponseEntity<>(e.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
+		}
+
+		return new ResponseEntity<>(HttpStatus.ACCEPTED);
+	}
+
+	/**
+	 * Runs an admitted transfer within a rate limit slot.
+	 * @throws RateLimitExceededException if the transfer is not admitted
+	 */
+	private <T> T rateLimited(String[] accountIds, Supplier<T> transfer) {
+		this.rateLimiter.acquire(accountIds);
+		try {
+			return transfer.get();
+		} finally {
+			this.rateLimiter.release();
+		}
+	}
+
+	private ResponseEntity<Object> tooManyRequests(RateLimitExceededException rle) {
+		HttpHeaders headers = new HttpHeaders();
+		headers.set(HttpHeaders.RETRY_AFTER, String.valueOf(rle.getRetryAfterSeconds()));
+		return new ResponseEntity<>(rle.getMessage(), headers, HttpStatus.TOO_MANY_REQUESTS);
+	}
+
 }
@@ -0,0 +1,63 @@
+package com.dws.challenge.web;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.dws.challenge.audit.AuditReport;
+import com.dws.challenge.audit.ConservationAuditor;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Money conservation audit: the latest drift for dashboards, an alert check for
+ * monitoring and a manual rebase.
+ */
+@RestController
+@RequestMapping("/v1/audit")
+@Slf4j
+public class AuditController {
+
+	private final ConservationAuditor conservationAuditor;
+
+	@Autowired
+	public AuditController(ConservationAuditor conservationAuditor) {
+		this.conservationAuditor = conservationAuditor;
+	}
+
+	@GetMapping
+	public ResponseEntity<Object> getLastReport() {
+		AuditReport report = this.conservationAuditor.getLastReport();
+		if (report == null) {
+			return new ResponseEntity<>("No verification has run yet.", HttpStatus.NOT_FOUND);
+		}
+		return new ResponseEntity<>(report, HttpStatus.OK);
+	}
+
+	/**
+	 * Returns 503 while a confirmed drift is alerted, for monitoring probes.
+	 */
+	@GetMapping(path = "/alert")
+	public ResponseEntity<Object> getAlert() {
+		AuditReport report = this.conservationAuditor.getLastReport();
+		if (report != null && report.isAlert()) {
+			return new ResponseEntity<>(report, HttpStatus.SERVICE_UNAVAILABLE);
+		}
+		return new ResponseEntity<>(report, HttpStatus.OK);
+	}
+
+	@PostMapping(path = "/verify")
+	public ResponseEntity<Object> verify() {
+		return new ResponseEntity<>(this.conservationAuditor.verify(), HttpStatus.OK);
+	}
+
+	@PostMapping(path = "/rebase")
+	public ResponseEntity<Object> rebase() {
+		log.info("Rebasing the money conservation auditor");
+		return new ResponseEntity<>(this.conservationAuditor.rebase(), HttpStatus.OK);
+	}
+}
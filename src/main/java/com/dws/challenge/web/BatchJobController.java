@@ -0,0 +1,76 @@
+package com.dws.challenge.web;
+
+import java.math.BigDecimal;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.dws.challenge.batch.BatchJobService;
+import com.dws.challenge.batch.BatchJobStatus;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * End of day jobs over the whole book, e.g. interest accrual and fees.
+ */
+@RestController
+@RequestMapping("/v1/batch-jobs")
+@Slf4j
+public class BatchJobController {
+
+	private final BatchJobService batchJobService;
+
+	@Autowired
+	public BatchJobController(BatchJobService batchJobService) {
+		this.batchJobService = batchJobService;
+	}
+
+	@PostMapping(path = "/interest")
+	public ResponseEntity<Object> accrueInterest(@RequestParam BigDecimal rate) {
+		log.info("Starting interest accrual at rate {}", rate);
+		if (rate.signum() < 0) {
+			return new ResponseEntity<>("Interest rate must not be negative.", HttpStatus.BAD_REQUEST);
+		}
+		return new ResponseEntity<>(this.batchJobService.accrueInterest(rate), HttpStatus.ACCEPTED);
+	}
+
+	@PostMapping(path = "/fees")
+	public ResponseEntity<Object> chargeFee(@RequestParam BigDecimal amount) {
+		log.info("Starting fee charge of {}", amount);
+		if (amount.signum() <= 0) {
+			return new ResponseEntity<>("Fee must be positive.", HttpStatus.BAD_REQUEST);
+		}
+		return new ResponseEntity<>(this.batchJobService.chargeFee(amount), HttpStatus.ACCEPTED);
+	}
+
+	@GetMapping(path = "/{jobId}")
+	public ResponseEntity<Object> getStatus(@PathVariable String jobId) {
+		return statusOrNotFound(this.batchJobService.getStatus(jobId));
+	}
+
+	@PostMapping(path = "/{jobId}/cancel")
+	public ResponseEntity<Object> cancel(@PathVariable String jobId) {
+		log.info("Cancelling batch job {}", jobId);
+		return statusOrNotFound(this.batchJobService.cancel(jobId));
+	}
+
+	@PostMapping(path = "/{jobId}/resume")
+	public ResponseEntity<Object> resume(@PathVariable String jobId) {
+		log.info("Resuming batch job {}", jobId);
+		return statusOrNotFound(this.batchJobService.resume(jobId));
+	}
+
+	private static ResponseEntity<Object> statusOrNotFound(BatchJobStatus status) {
+		if (status == null) {
+			return new ResponseEntity<>("Batch job not found !!!", HttpStatus.NOT_FOUND);
+		}
+		return new ResponseEntity<>(status, HttpStatus.OK);
+	}
+}
@@ -0,0 +1,141 @@
+package com.dws.challenge.web;
+
+import java.util.Map;
+
+import javax.validation.Valid;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.dws.challenge.cluster.ClusterCredit;
+import com.dws.challenge.cluster.ClusterRouter;
+import com.dws.challenge.cluster.ClusterTransferService;
+import com.dws.challenge.exception.AccountBusyException;
+import com.dws.challenge.exception.DuplicateReservationException;
+import com.dws.challenge.exception.UnknownReservationException;
+import com.dws.challenge.service.AccountsService;
+import com.dws.challenge.service.NotificationService;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Node to node endpoints of the cross node transfer protocol, registered only
+ * when clustering is enabled. Every request must carry the shared cluster
+ * secret in {@link ClusterRouter#SECRET_HEADER}, otherwise it is answered 403.
+ */
+@RestController
+@RequestMapping("/internal/cluster")
+@ConditionalOnProperty(name = "cluster.enabled", havingValue = "true")
+@Slf4j
+public class ClusterController {
+
+	private final ClusterRouter clusterRouter;
+
+	private final ClusterTransferService clusterTransferService;
+
+	private final AccountsService accountsService;
+
+	private final NotificationService notificationService;
+
+	@Autowired
+	public ClusterController(ClusterRouter clusterRouter, ClusterTransferService clusterTransferService,
+			AccountsService accountsService, NotificationService notificationService) {
+		this.clusterRouter = clusterRouter;
+		this.clusterTransferService = clusterTransferService;
+		this.accountsService = accountsService;
+		this.notificationService = notificationService;
+	}
+
+	/**
+	 * Answers 400 for a non-positive amount and 409 for a reservation id that
+	 * was prepared before.
+	 */
+	@PostMapping(path = "/prepare", consumes = MediaType.APPLICATION_JSON_VALUE)
+	public ResponseEntity<Object> prepare(
+			@RequestHeader(name = ClusterRouter.SECRET_HEADER, required = false) String secret,
+			@RequestBody @Valid ClusterCredit credit) {
+		if (!this.clusterRouter.isClusterSecret(secret)) {
+			return forbidden();
+		}
+		log.info("Preparing cluster credit {}", credit);
+		try {
+			if (!this.clusterTransferService.prepare(credit)) {
+				return new ResponseEntity<>("Account not found !!!", HttpStatus.NOT_FOUND);
+			}
+		} catch (IllegalArgumentException iae) {
+			return new ResponseEntity<>(iae.getMessage(), HttpStatus.BAD_REQUEST);
+		} catch (DuplicateReservationException dre) {
+			return new ResponseEntity<>(dre.getMessage(), HttpStatus.CONFLICT);
+		}
+		return new ResponseEntity<>(HttpStatus.OK);
+	}
+
+	/**
+	 * Answers 200 for a new or a repeated commit and 410 for a reservation
+	 * this node does not know, which the coordinator rolls back.
+	 */
+	@PostMapping(path = "/commit/{reservationId}")
+	public ResponseEntity<Object> commit(
+			@RequestHeader(name = ClusterRouter.SECRET_HEADER, required = false) String secret,
+			@PathVariable String reservationId) {
+		if (!this.clusterRouter.isClusterSecret(secret)) {
+			return forbidden();
+		}
+		log.info("Committing cluster credit {}", reservationId);
+		try {
+			ClusterCredit credit = this.clusterTransferService.commit(reservationId);
+			if (credit != null) {
+				notificationService.notifyAboutTransfer(this.accountsService.getAccount(credit.getAccountId()),
+						"Dear User, Amount " + credit.getAmount() + " has been credited to account "
+								+ credit.getAccountId());
+			}
+		} catch (UnknownReservationException ure) {
+			return new ResponseEntity<>(ure.getMessage(), HttpStatus.GONE);
+		} catch (AccountBusyException abe) {
+			return new ResponseEntity<>(abe.getMessage(), HttpStatus.CONFLICT);
+		}
+		return new ResponseEntity<>(HttpStatus.OK);
+	}
+
+	/**
+	 * Answers 409 if the reservation is already committed.
+	 */
+	@PostMapping(path = "/abort/{reservationId}")
+	public ResponseEntity<Object> abort(
+			@RequestHeader(name = ClusterRouter.SECRET_HEADER, required = false) String secret,
+			@PathVariable String reservationId) {
+		if (!this.clusterRouter.isClusterSecret(secret)) {
+			return forbidden();
+		}
+		log.info("Aborting cluster credit {}", reservationId);
+		if (!this.clusterTransferService.abort(reservationId)) {
+			return new ResponseEntity<>("Reservation " + reservationId + " is already committed!!!",
+					HttpStatus.CONFLICT);
+		}
+		return new ResponseEntity<>(HttpStatus.OK);
+	}
+
+	@GetMapping(path = "/in-doubt")
+	public ResponseEntity<Object> inDoubt(
+			@RequestHeader(name = ClusterRouter.SECRET_HEADER, required = false) String secret) {
+		if (!this.clusterRouter.isClusterSecret(secret)) {
+			return forbidden();
+		}
+		Map<String, ClusterCredit> credits = this.clusterTransferService.getInDoubtCredits();
+		return new ResponseEntity<>(credits, HttpStatus.OK);
+	}
+
+	private static ResponseEntity<Object> forbidden() {
+		return new ResponseEntity<>("Missing or wrong cluster secret!!!", HttpStatus.FORBIDDEN);
+	}
+}
@@ -0,0 +1,42 @@
+package com.dws.challenge.web;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.dws.challenge.diagnostics.LockDiagnostics;
+import com.dws.challenge.diagnostics.LockGraph;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Live view of the account locks for contention incidents.
+ */
+@RestController
+@RequestMapping("/v1/diagnostics")
+@Slf4j
+public class DiagnosticsController {
+
+	private final LockDiagnostics lockDiagnostics;
+
+	@Autowired
+	public DiagnosticsController(LockDiagnostics lockDiagnostics) {
+		this.lockDiagnostics = lockDiagnostics;
+	}
+
+	@GetMapping(path = "/locks")
+	public ResponseEntity<Object> getLocks(@RequestParam(name = "top", defaultValue = "10") int top) {
+		if (top < 0) {
+			return new ResponseEntity<>("top must not be negative.", HttpStatus.BAD_REQUEST);
+		}
+		LockGraph graph = this.lockDiagnostics.dump(top);
+		if (!graph.getDeadlocks().isEmpty()) {
+			log.warn("Account lock deadlocks found: {}", graph.getDeadlocks());
+		}
+		return new ResponseEntity<>(graph, HttpStatus.OK);
+	}
+}
@@ -0,0 +1,87 @@
+package com.dws.challenge.web;
+
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.dws.challenge.export.AccountSnapshot;
+import com.dws.challenge.export.ExportFormat;
+import com.dws.challenge.export.SnapshotExporter;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Streams a point-in-time snapshot of all balances as a gzip file.
+ *
+ * The snapshot is written before the response starts, so its size and time
+ * are sent as headers; the segment files are then copied to the chunked
+ * response with {@link FileChannel#transferTo}, a segment at a time.
+ */
+@RestController
+@RequestMapping("/v1/export")
+@Slf4j
+public class ExportController {
+
+	public static final String TAKEN_AT_HEADER = "X-Snapshot-Taken-At";
+
+	public static final String ACCOUNTS_HEADER = "X-Snapshot-Accounts";
+
+	private static final String GZIP_CONTENT_TYPE = "application/gzip";
+
+	private final SnapshotExporter snapshotExporter;
+
+	@Autowired
+	public ExportController(SnapshotExporter snapshotExporter) {
+		this.snapshotExporter = snapshotExporter;
+	}
+
+	@GetMapping(path = "/accounts")
+	public ResponseEntity<StreamingResponseBody> exportAccounts(
+			@RequestParam(name = "format", defaultValue = "ndjson") String formatName) {
+		ExportFormat format;
+		try {
+			format = ExportFormat.of(formatName);
+		} catch (IllegalArgumentException iae) {
+			byte[] message = iae.getMessage().getBytes(StandardCharsets.UTF_8);
+			return new ResponseEntity<>(out -> out.write(message), HttpStatus.BAD_REQUEST);
+		}
+		AccountSnapshot snapshot = this.snapshotExporter.snapshot(format);
+		log.info("Streaming {} snapshot of {} accounts", format, snapshot.getAccounts());
+
+		HttpHeaders headers = new HttpHeaders();
+		headers.set(HttpHeaders.CONTENT_TYPE, GZIP_CONTENT_TYPE);
+		headers.set(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"accounts-"
+				+ snapshot.getTakenAt().toEpochMilli() + "." + format.getFileExtension() + "\"");
+		headers.set(TAKEN_AT_HEADER, snapshot.getTakenAt().toString());
+		headers.set(ACCOUNTS_HEADER, Long.toString(snapshot.getAccounts()));
+		StreamingResponseBody body = out -> {
+			try (AccountSnapshot streamed = snapshot) {
+				WritableByteChannel target = Channels.newChannel(out);
+				for (Path segment : streamed.getSegments()) {
+					try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+						long size = channel.size();
+						long position = 0;
+						while (position < size) {
+							position += channel.transferTo(position, size - position, target);
+						}
+					}
+					out.flush();
+				}
+			}
+		};
+		return new ResponseEntity<>(body, headers, HttpStatus.OK);
+	}
+}
@@ -0,0 +1,42 @@
+package com.dws.challenge.web;
+
+import java.io.IOException;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.dws.challenge.replication.ReplicationFollower;
+
+/**
+ * Operator endpoint to fail over to a follower, see
+ * {@link ReplicationFollower#promote()}.
+ */
+@RestController
+@RequestMapping("/v1/replication")
+public class ReplicationController {
+
+	private final ReplicationFollower replicationFollower;
+
+	@Autowired
+	public ReplicationController(ReplicationFollower replicationFollower) {
+		this.replicationFollower = replicationFollower;
+	}
+
+	@PostMapping(path = "/promote")
+	public ResponseEntity<Object> promote() throws IOException {
+		try {
+			if (!this.replicationFollower.promote()) {
+				return new ResponseEntity<>("This node is not following a primary.", HttpStatus.CONFLICT);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return new ResponseEntity<>("Interrupted while promoting.", HttpStatus.SERVICE_UNAVAILABLE);
+		}
+		return new ResponseEntity<>("Promoted at sequence " + this.replicationFollower.getAppliedSequence() + ".",
+				HttpStatus.OK);
+	}
+}
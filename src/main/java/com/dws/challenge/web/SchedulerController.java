@@ -0,0 +1,44 @@
+package com.dws.challenge.web;
+
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.dws.challenge.scheduling.LaneStatistics;
+import com.dws.challenge.scheduling.TransferScheduler;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Load and latency per priority lane of transfer execution.
+ */
+@RestController
+@RequestMapping("/v1/scheduler")
+@Slf4j
+public class SchedulerController {
+
+	private final TransferScheduler transferScheduler;
+
+	@Autowired
+	public SchedulerController(TransferScheduler transferScheduler) {
+		this.transferScheduler = transferScheduler;
+	}
+
+	@GetMapping(path = "/lanes")
+	public List<LaneStatistics> getLanes() {
+		return this.transferScheduler.getStatistics();
+	}
+
+	@PostMapping(path = "/lanes/reset")
+	public ResponseEntity<Object> resetLanes() {
+		log.info("Resetting lane statistics");
+		this.transferScheduler.resetStatistics();
+		return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+	}
+}
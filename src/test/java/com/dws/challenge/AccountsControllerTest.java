@@ -1,13 +1,18 @@
 package com.dws.challenge;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.contains;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 import static org.springframework.test.web.servlet.setup.MockMvcBuilders.webAppContextSetup;
 
 import java.math.BigDecimal;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -18,10 +23,13 @@ import org.springframework.http.MediaType;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.context.web.WebAppConfiguration;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.web.context.WebApplicationContext;
 
 import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.AccountTransfer;
 import com.dws.challenge.service.AccountsService;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
 
 @ExtendWith(SpringExtension.class)
 @SpringBootTest
@@ -177,4 +185,121 @@ class AccountsControllerTest {
 				.andExpect(status().isNotAcceptable());
 	}
 
+	/**
+	 * Test method which checks account creation, retrieval and transfer using
+	 * the CBOR wire format.
+	 */
+	@Test
+	void account_transfer_cbor() throws Exception {
+		CBORMapper cborMapper = new CBORMapper();
+		this.mockMvc.perform(post("/v1/accounts").contentType(MediaType.APPLICATION_CBOR)
+				.content(cborMapper.writeValueAsBytes(new Account("Id-CB123", new BigDecimal(1000)))))
+				.andExpect(status().isCreated());
+		this.mockMvc.perform(post("/v1/accounts").contentType(MediaType.APPLICATION_CBOR)
+				.content(cborMapper.writeValueAsBytes(new Account("Id-CB345", new BigDecimal(500)))))
+				.andExpect(status().isCreated());
+
+		this.mockMvc
+				.perform(post("/v1/accounts/transferAmount").contentType(MediaType.APPLICATION_CBOR).content(
+						cborMapper.writeValueAsBytes(new AccountTransfer("Id-CB123", "Id-CB345", new BigDecimal(250)))))
+				.andExpect(status().isAccepted());
+
+		byte[] body = this.mockMvc.perform(get("/v1/accounts/Id-CB345").accept(MediaType.APPLICATION_CBOR))
+				.andExpect(status().isOk()).andExpect(content().contentType(MediaType.APPLICATION_CBOR)).andReturn()
+				.getResponse().getContentAsByteArray();
+		Account account = cborMapper.readValue(body, Account.class);
+		assertThat(account.getBalance()).isEqualByComparingTo("750");
+	}
+
+	/**
+	 * Test method which checks that a subscription streams the current balance
+	 * and then the committed changes as server sent events.
+	 */
+	@Test
+	void subscribeToBalances() throws Exception {
+		this.accountsService.createAccount(new Account("Id-SSE1", new BigDecimal(100)));
+
+		MvcResult result = this.mockMvc
+				.perform(get("/v1/accounts/subscribe").param("accountIds", "Id-SSE1").accept(MediaType.TEXT_EVENT_STREAM))
+				.andExpect(request().asyncStarted()).andReturn();
+		awaitContent(result, "\"balance\":100");
+		this.accountsService.credit("Id-SSE1", new BigDecimal(50));
+		awaitContent(result, "\"balance\":150");
+
+		assertThat(result.getResponse().getStatus()).isEqualTo(200);
+		assertThat(result.getResponse().getContentType()).startsWith(MediaType.TEXT_EVENT_STREAM_VALUE);
+		assertThat(result.getResponse().getContentAsString()).contains("event:balance", "id:Id-SSE1");
+	}
+
+	@Test
+	void subscribeToTooManyAccounts() throws Exception {
+		String accountIds = IntStream.rangeClosed(1, 1001).mapToObj(i -> "Id-SSE" + i).collect(Collectors.joining(","));
+		this.mockMvc
+				.perform(get("/v1/accounts/subscribe").param("accountIds", accountIds).accept(MediaType.TEXT_EVENT_STREAM))
+				.andExpect(status().isServiceUnavailable());
+	}
+
+	/**
+	 * Test method which checks paging through the accounts below a balance.
+	 */
+	@Test
+	void queryBalanceBelow() throws Exception {
+		accountsService.createAccount(new Account("Id-Q1", new BigDecimal(100)));
+		accountsService.createAccount(new Account("Id-Q2", new BigDecimal(200)));
+		accountsService.createAccount(new Account("Id-Q3", new BigDecimal(300)));
+
+		this.mockMvc.perform(get("/v1/accounts/query/balance-below?threshold=250&limit=1")).andExpect(status().isOk())
+				.andExpect(jsonPath("$.accounts[*].accountId").value(contains("Id-Q1")))
+				.andExpect(jsonPath("$.nextAfterBalance").value(100))
+				.andExpect(jsonPath("$.nextAfterAccountId").value("Id-Q1"));
+		this.mockMvc
+				.perform(get("/v1/accounts/query/balance-below?threshold=250&limit=1&afterBalance=100&afterAccountId=Id-Q1"))
+				.andExpect(status().isOk()).andExpect(jsonPath("$.accounts[*].accountId").value(contains("Id-Q2")))
+				.andExpect(jsonPath("$.nextAfterAccountId").doesNotExist());
+	}
+
+	/**
+	 * Test method which checks the top balances, accounts cleared before are
+	 * not returned.
+	 */
+	@Test
+	void queryTopBalances() throws Exception {
+		accountsService.createAccount(new Account("Id-Q4", new BigDecimal(100)));
+		accountsService.createAccount(new Account("Id-Q5", new BigDecimal(500)));
+		accountsService.createAccount(new Account("Id-Q6", new BigDecimal(300)));
+
+		this.mockMvc.perform(get("/v1/accounts/query/top-balances?limit=5")).andExpect(status().isOk())
+				.andExpect(jsonPath("$.accounts[*].accountId").value(contains("Id-Q5", "Id-Q6", "Id-Q4")))
+				.andExpect(jsonPath("$.accounts[0].balance").value(500))
+				.andExpect(jsonPath("$.nextAfterAccountId").doesNotExist());
+	}
+
+	@Test
+	void queryBalanceBelowInvalidThreshold() throws Exception {
+		this.mockMvc.perform(get("/v1/accounts/query/balance-below?threshold=abc")).andExpect(status().isBadRequest());
+		this.mockMvc.perform(get("/v1/accounts/query/balance-below")).andExpect(status().isBadRequest());
+	}
+
+	/**
+	 * Test method which checks that the node to node endpoints do not exist
+	 * while clustering is disabled.
+	 */
+	@Test
+	void clusterEndpointsDisabled() throws Exception {
+		accountsService.createAccount(new Account("Id-CL1", new BigDecimal(0)));
+		this.mockMvc.perform(post("/internal/cluster/prepare").contentType(MediaType.APPLICATION_JSON)
+				.content("{\"reservationId\":\"r-1\",\"accountId\":\"Id-CL1\",\"amount\":1000}"))
+				.andExpect(status().isNotFound());
+		this.mockMvc.perform(post("/internal/cluster/commit/r-1")).andExpect(status().isNotFound());
+
+		assertThat(accountsService.getAccount("Id-CL1").getBalance()).isEqualByComparingTo("0");
+	}
+
+	private static void awaitContent(MvcResult result, String expected) throws Exception {
+		for (int i = 0; i < 100 && !result.getResponse().getContentAsString().contains(expected); i++) {
+			Thread.sleep(20);
+		}
+		assertThat(result.getResponse().getContentAsString()).contains(expected);
+	}
+
 }
@@ -0,0 +1,262 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+
+import com.dws.challenge.config.JdbcRepositoryProperties;
+import com.dws.challenge.config.JdbcRepositoryProperties.WriteMode;
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.exception.DuplicateAccountIdException;
+import com.dws.challenge.repository.AccountsRepository;
+import com.dws.challenge.repository.AccountsRepositoryInMemory;
+import com.dws.challenge.repository.AccountsRepositoryJdbc;
+
+class AccountsRepositoryJdbcTest {
+
+	private static final int ACCOUNTS = 1000;
+
+	private static final int THREADS = 4;
+
+	private static final int UPDATES_PER_THREAD = 5000;
+
+	private EmbeddedDatabase database;
+
+	private final List<AccountsRepositoryJdbc> repositories = new ArrayList<>();
+
+	@BeforeEach
+	void createDatabase() {
+		database = new EmbeddedDatabaseBuilder().setType(EmbeddedDatabaseType.H2)
+				.setName("accounts-" + UUID.randomUUID()).build();
+	}
+
+	@AfterEach
+	void shutdownDatabase() {
+		repositories.forEach(AccountsRepositoryJdbc::stop);
+		database.shutdown();
+	}
+
+	private AccountsRepositoryJdbc repository(WriteMode writeMode, int cacheSize) {
+		return repository(database, writeMode, cacheSize);
+	}
+
+	private AccountsRepositoryJdbc repository(DataSource dataSource, WriteMode writeMode, int cacheSize) {
+		JdbcRepositoryProperties properties = new JdbcRepositoryProperties();
+		properties.setWriteMode(writeMode);
+		properties.setCacheSize(cacheSize);
+		properties.setBatchSize(200);
+		properties.setFlushIntervalMillis(10);
+		AccountsRepositoryJdbc repository = new AccountsRepositoryJdbc(dataSource, properties);
+		repository.start();
+		repositories.add(repository);
+		return repository;
+	}
+
+	/**
+	 * Test method which checks that coalesced updates reach the database, read
+	 * back through a repository with an empty cache.
+	 */
+	@Test
+	void write_behind_persists_latest_balances() {
+		AccountsRepositoryJdbc repository = repository(WriteMode.WRITE_BEHIND, 10000);
+		for (int i = 0; i < 100; i++) {
+			repository.createAccount(new Account("Id-J" + i, BigDecimal.ZERO));
+		}
+		for (int round = 1; round <= 5; round++) {
+			for (int i = 0; i < 100; i++) {
+				Account account = repository.getAccount("Id-J" + i);
+				account.setBalance(new BigDecimal(round * 10 + i));
+				repository.updateAccount(account);
+			}
+		}
+		repository.flush();
+		assertThat(repository.getPendingWriteCount()).isZero();
+
+		AccountsRepositoryJdbc reader = repository(WriteMode.WRITE_BEHIND, 10000);
+		for (int i = 0; i < 100; i++) {
+			assertThat(reader.getAccount("Id-J" + i).getBalance()).isEqualByComparingTo(new BigDecimal(50 + i));
+		}
+		assertThat(reader.getAccounts()).hasSize(100);
+		assertThat(reader.getAccount("Id-J-missing")).isNull();
+	}
+
+	/**
+	 * Test method which checks that the cache stays bounded without losing
+	 * updates that are not written yet.
+	 */
+	@Test
+	void evicts_only_written_accounts() {
+		AccountsRepositoryJdbc repository = repository(WriteMode.WRITE_BEHIND, 50);
+		for (int i = 0; i < 500; i++) {
+			repository.createAccount(new Account("Id-J" + i, new BigDecimal(i)));
+		}
+		assertThat(repository.getCachedAccountCount()).isLessThanOrEqualTo(50);
+
+		for (int i = 0; i < 500; i++) {
+			Account account = repository.getAccount("Id-J" + i);
+			account.setBalance(account.getBalance().add(BigDecimal.ONE));
+			repository.updateAccount(account);
+		}
+		for (int i = 0; i < 500; i++) {
+			assertThat(repository.getAccount("Id-J" + i).getBalance()).isEqualByComparingTo(new BigDecimal(i + 1));
+		}
+		repository.flush();
+		assertThat(repository.getCachedAccountCount()).isLessThanOrEqualTo(50);
+	}
+
+	/**
+	 * Test method which checks that a full scan sees cached, pending and
+	 * written balances without loading the accounts into the cache.
+	 */
+	@Test
+	void scans_balances_without_caching() {
+		AccountsRepositoryJdbc repository = repository(WriteMode.WRITE_BEHIND, 50);
+		for (int i = 0; i < 500; i++) {
+			repository.createAccount(new Account("Id-J" + i, new BigDecimal(i)));
+		}
+		repository.flush();
+		for (int i = 0; i < 10; i++) {
+			Account account = repository.getAccount("Id-J" + i);
+			account.setBalance(account.getBalance().add(BigDecimal.ONE));
+			repository.updateAccount(account);
+		}
+		int cached = repository.getCachedAccountCount();
+
+		Map<String, BigDecimal> balances = new HashMap<>();
+		repository.forEachBalance(balances::put);
+
+		assertThat(balances).hasSize(500);
+		for (int i = 0; i < 500; i++) {
+			assertThat(balances.get("Id-J" + i)).isEqualByComparingTo(new BigDecimal(i < 10 ? i + 1 : i));
+		}
+		assertThat(repository.getCachedAccountCount()).isLessThanOrEqualTo(cached);
+	}
+
+	/**
+	 * Test method which checks that an update made while a flush writes an
+	 * older balance of the same account stays pending and is written by the
+	 * next flush.
+	 */
+	@Test
+	void keeps_update_made_during_flush() {
+		AtomicReference<Runnable> onConnection = new AtomicReference<>();
+		DataSource dataSource = new DelegatingDataSource(database) {
+
+			@Override
+			public Connection getConnection() throws SQLException {
+				Runnable hook = onConnection.getAndSet(null);
+				if (hook != null) {
+					hook.run();
+				}
+				return super.getConnection();
+			}
+		};
+		AccountsRepositoryJdbc repository = repository(dataSource, WriteMode.WRITE_BEHIND, 10000);
+		repository.createAccount(new Account("Id-JF", BigDecimal.ZERO));
+		Account account = repository.getAccount("Id-JF");
+		account.setBalance(BigDecimal.ONE);
+		repository.updateAccount(account);
+
+		// runs after the flush collected balance 1, before it is written
+		onConnection.set(() -> {
+			Account newer = repository.getAccount("Id-JF");
+			newer.setBalance(BigDecimal.TEN);
+			repository.updateAccount(newer);
+		});
+		repository.flush();
+		assertThat(onConnection.get()).isNull();
+		repository.flush();
+
+		AccountsRepositoryJdbc reader = repository(WriteMode.WRITE_BEHIND, 10000);
+		assertThat(reader.getAccount("Id-JF").getBalance()).isEqualByComparingTo(BigDecimal.TEN);
+	}
+
+	@Test
+	void rejects_duplicate_account_not_cached() {
+		AccountsRepositoryJdbc repository = repository(WriteMode.WRITE_THROUGH, 10000);
+		repository.createAccount(new Account("Id-J1", BigDecimal.ONE));
+
+		AccountsRepositoryJdbc other = repository(WriteMode.WRITE_THROUGH, 10000);
+		try {
+			other.createAccount(new Account("Id-J1", BigDecimal.TEN));
+		} catch (DuplicateAccountIdException ex) {
+			assertThat(ex.getMessage()).isEqualTo("Account id Id-J1 already exists!");
+			return;
+		}
+		throw new AssertionError("Duplicate account id was accepted");
+	}
+
+	/**
+	 * Test method which checks that concurrent updates are neither lost nor
+	 * duplicated by the in-memory repository and by the JDBC repository in each
+	 * write mode. Every thread updates its own range of accounts, like transfers
+	 * holding the account locks would.
+	 */
+	@Test
+	void concurrent_updates_in_every_write_mode() throws Exception {
+		updateConcurrently(new AccountsRepositoryInMemory());
+		for (WriteMode writeMode : WriteMode.values()) {
+			updateConcurrently(repository(writeMode, 100000));
+			AccountsRepositoryJdbc reader = repository(WriteMode.WRITE_THROUGH, 100000);
+			assertThat(total(reader)).as("persisted by %s", writeMode)
+					.isEqualByComparingTo(new BigDecimal(THREADS * UPDATES_PER_THREAD));
+			reader.clearAccounts();
+		}
+	}
+
+	private static BigDecimal total(AccountsRepository repository) {
+		return repository.getAccounts().stream().map(Account::getBalance).reduce(BigDecimal.ZERO, BigDecimal::add);
+	}
+
+	private void updateConcurrently(AccountsRepository repository) throws Exception {
+		for (int i = 0; i < ACCOUNTS; i++) {
+			repository.createAccount(new Account("Id-JT" + i, BigDecimal.ZERO));
+		}
+		int accountsPerThread = ACCOUNTS / THREADS;
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		List<Future<?>> futures = new ArrayList<>();
+		for (int t = 0; t < THREADS; t++) {
+			int first = t * accountsPerThread;
+			futures.add(executor.submit(() -> {
+				for (int i = 0; i < UPDATES_PER_THREAD; i++) {
+					int index = first + ThreadLocalRandom.current().nextInt(accountsPerThread);
+					Account account = repository.getAccount("Id-JT" + index);
+					account.setBalance(account.getBalance().add(BigDecimal.ONE));
+					repository.updateAccount(account);
+				}
+			}));
+		}
+		for (Future<?> future : futures) {
+			future.get(2, TimeUnit.MINUTES);
+		}
+		executor.shutdown();
+
+		if (repository instanceof AccountsRepositoryJdbc) {
+			((AccountsRepositoryJdbc) repository).flush();
+		}
+		assertThat(total(repository)).isEqualByComparingTo(new BigDecimal(THREADS * UPDATES_PER_THREAD));
+	}
+}
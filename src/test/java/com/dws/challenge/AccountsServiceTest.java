@@ -5,6 +5,8 @@ import static org.junit.jupiter.api.Assertions.fail;
 
 import java.math.BigDecimal;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -14,6 +16,7 @@ import org.springframework.test.context.junit.jupiter.SpringExtension;
 
 import com.dws.challenge.domain.Account;
 import com.dws.challenge.domain.AccountTransfer;
+import com.dws.challenge.domain.MultiLegTransfer;
 import com.dws.challenge.exception.AccountBusyException;
 import com.dws.challenge.exception.AccountNotFoundException;
 import com.dws.challenge.exception.DuplicateAccountIdException;
@@ -223,4 +226,102 @@ class AccountsServiceTest {
 
 	}
 
+	/**
+	 * Test method which checks that a failed transfer releases the account
+	 * locks, so the next transfer of the same accounts goes through.
+	 */
+	@Test
+	void account_transfer_releases_locks_after_insufficient_balance() {
+		this.accountsService.createAccount(new Account("Id-C101", new BigDecimal(100)));
+		this.accountsService.createAccount(new Account("Id-C102", new BigDecimal(100)));
+
+		try {
+			this.accountsService.transferAmount(new AccountTransfer("Id-C101", "Id-C102", new BigDecimal(500)));
+			fail("Should have failed due to insufficient balance in from account");
+		} catch (InsufficientBalanceException ibe) {
+			assertThat(ibe.getMessage()).isEqualTo("Insufficient Balance Account id Id-C101!!!");
+		}
+
+		assertThat(this.accountsService.transferAmount(new AccountTransfer("Id-C101", "Id-C102", new BigDecimal(50))))
+				.isTrue();
+		assertThat(this.accountsService.getAccount("Id-C101").getBalance()).isEqualByComparingTo("50");
+		assertThat(this.accountsService.getAccount("Id-C102").getBalance()).isEqualByComparingTo("150");
+	}
+
+	/**
+	 * Test method which checks a one-to-many transfer committing all legs.
+	 */
+	@Test
+	void multi_leg_transfer_commits_all_legs() {
+		this.accountsService.createAccount(new Account("Id-M001", new BigDecimal(1000)));
+		this.accountsService.createAccount(new Account("Id-M002", BigDecimal.ZERO));
+		this.accountsService.createAccount(new Account("Id-M003", BigDecimal.ZERO));
+		this.accountsService.createAccount(new Account("Id-M004", BigDecimal.ZERO));
+
+		assertThat(this.accountsService.transferMultiLeg(new MultiLegTransfer(List.of(
+				new AccountTransfer("Id-M001", "Id-M002", new BigDecimal(900)),
+				new AccountTransfer("Id-M001", "Id-M003", new BigDecimal(30)),
+				new AccountTransfer("Id-M001", "Id-M004", new BigDecimal(70)))))).isTrue();
+
+		assertThat(this.accountsService.getAccount("Id-M001").getBalance()).isEqualByComparingTo("0");
+		assertThat(this.accountsService.getAccount("Id-M002").getBalance()).isEqualByComparingTo("900");
+		assertThat(this.accountsService.getAccount("Id-M003").getBalance()).isEqualByComparingTo("30");
+		assertThat(this.accountsService.getAccount("Id-M004").getBalance()).isEqualByComparingTo("70");
+	}
+
+	/**
+	 * Test method which checks that no leg is committed when the total exceeds
+	 * the balance, although every single leg is covered.
+	 */
+	@Test
+	void multi_leg_transfer_commits_no_leg_when_total_exceeds_balance() {
+		this.accountsService.createAccount(new Account("Id-M101", new BigDecimal(100)));
+		this.accountsService.createAccount(new Account("Id-M102", BigDecimal.ZERO));
+		this.accountsService.createAccount(new Account("Id-M103", BigDecimal.ZERO));
+
+		MultiLegTransfer multiLegTransfer = new MultiLegTransfer(
+				List.of(new AccountTransfer("Id-M101", "Id-M102", new BigDecimal(60)),
+						new AccountTransfer("Id-M101", "Id-M103", new BigDecimal(60))));
+		try {
+			this.accountsService.transferMultiLeg(multiLegTransfer);
+			fail("Should have failed due to insufficient balance for the total");
+		} catch (InsufficientBalanceException ibe) {
+			assertThat(ibe.getMessage()).isEqualTo("Insufficient Balance Account id Id-M101!!!");
+		}
+		assertThat(this.accountsService.getAccount("Id-M101").getBalance()).isEqualByComparingTo("100");
+		assertThat(this.accountsService.getAccount("Id-M102").getBalance()).isEqualByComparingTo("0");
+		assertThat(this.accountsService.getAccount("Id-M103").getBalance()).isEqualByComparingTo("0");
+		assertThat(this.accountsService.getLockUtilByAccountNo().isLockAquired("Id-M101")).isFalse();
+	}
+
+	/**
+	 * Test method which checks that a many-to-one transfer fails as a whole if
+	 * one of the accounts is locked.
+	 */
+	@Test
+	void multi_leg_transfer_fails_when_account_busy() throws Exception {
+		this.accountsService.createAccount(new Account("Id-M201", new BigDecimal(100)));
+		this.accountsService.createAccount(new Account("Id-M202", new BigDecimal(100)));
+		this.accountsService.createAccount(new Account("Id-M203", BigDecimal.ZERO));
+
+		// held by another thread, the account locks are reentrant
+		ExecutorService holder = Executors.newSingleThreadExecutor();
+		assertThat(holder.submit(() -> this.accountsService.getLockUtilByAccountNo().tryLock("Id-M202")).get())
+				.isTrue();
+		try {
+			this.accountsService.transferMultiLeg(new MultiLegTransfer(
+					List.of(new AccountTransfer("Id-M201", "Id-M203", new BigDecimal(10)),
+							new AccountTransfer("Id-M202", "Id-M203", new BigDecimal(10)))));
+			fail("Should have failed due to the locked account");
+		} catch (AccountBusyException abe) {
+			assertThat(abe.getMessage())
+					.isEqualTo("Transaction is processing on one of the accounts. Please wait and try after sometime.");
+		} finally {
+			holder.submit(() -> this.accountsService.getLockUtilByAccountNo().unlock("Id-M202")).get();
+			holder.shutdown();
+		}
+		assertThat(this.accountsService.getLockUtilByAccountNo().isLockAquired("Id-M201")).isFalse();
+		assertThat(this.accountsService.getAccount("Id-M203").getBalance()).isEqualByComparingTo("0");
+	}
+
 }
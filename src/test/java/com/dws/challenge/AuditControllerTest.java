@@ -0,0 +1,86 @@
+package com.dws.challenge;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static org.springframework.test.web.servlet.setup.MockMvcBuilders.webAppContextSetup;
+
+import java.math.BigDecimal;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.web.context.WebApplicationContext;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.service.AccountsService;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest
+@WebAppConfiguration
+class AuditControllerTest {
+
+	private MockMvc mockMvc;
+
+	@Autowired
+	private AccountsService accountsService;
+
+	@Autowired
+	private WebApplicationContext webApplicationContext;
+
+	/**
+	 * Fresh account ids per test, locks are kept across application contexts.
+	 */
+	private String prefix;
+
+	@BeforeEach
+	void prepareMockMvc() throws Exception {
+		this.mockMvc = webAppContextSetup(this.webApplicationContext).build();
+		prefix = "Id-AC" + System.nanoTime() + "-";
+		accountsService.getAccountsRepository().clearAccounts();
+		accountsService.createAccount(new Account(prefix + 1, new BigDecimal(1000)));
+		accountsService.createAccount(new Account(prefix + 2, new BigDecimal(500)));
+		this.mockMvc.perform(post("/v1/audit/rebase")).andExpect(status().isOk());
+	}
+
+	@Test
+	void verifyReportsNoDrift() throws Exception {
+		this.mockMvc.perform(post("/v1/audit/verify")).andExpect(status().isOk())
+				.andExpect(jsonPath("$.accounts").value(2))
+				.andExpect(jsonPath("$.observedTotal").value(1500))
+				.andExpect(jsonPath("$.drift").value(0))
+				.andExpect(jsonPath("$.alert").value(false));
+
+		this.mockMvc.perform(get("/v1/audit")).andExpect(status().isOk())
+				.andExpect(jsonPath("$.expectedTotal").value(1500));
+		this.mockMvc.perform(get("/v1/audit/alert")).andExpect(status().isOk());
+	}
+
+	/**
+	 * Test method which checks that a confirmed drift fails the alert probe
+	 * until the auditor is rebased.
+	 */
+	@Test
+	void alertsConfirmedDriftUntilRebase() throws Exception {
+		accountsService.getAccount(prefix + 1).setBalance(new BigDecimal(990));
+
+		this.mockMvc.perform(post("/v1/audit/verify")).andExpect(status().isOk())
+				.andExpect(jsonPath("$.alert").value(false));
+		this.mockMvc.perform(post("/v1/audit/verify")).andExpect(status().isOk())
+				.andExpect(jsonPath("$.drift").value(-10))
+				.andExpect(jsonPath("$.alert").value(true));
+		this.mockMvc.perform(get("/v1/audit/alert")).andExpect(status().isServiceUnavailable())
+				.andExpect(jsonPath("$.drift").value(-10));
+
+		this.mockMvc.perform(post("/v1/audit/rebase")).andExpect(status().isOk())
+				.andExpect(jsonPath("$.expectedTotal").value(1490))
+				.andExpect(jsonPath("$.alert").value(false));
+		this.mockMvc.perform(get("/v1/audit/alert")).andExpect(status().isOk());
+	}
+}
@@ -0,0 +1,93 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.AccountTransfer;
+import com.dws.challenge.index.BalanceIndex;
+import com.dws.challenge.index.BalancePage;
+import com.dws.challenge.repository.AccountsRepositoryInMemory;
+
+class BalanceIndexTest {
+
+	private AccountsRepositoryInMemory repository;
+
+	private BalanceIndex balanceIndex;
+
+	@BeforeEach
+	void createAccounts() {
+		repository = new AccountsRepositoryInMemory();
+		balanceIndex = new BalanceIndex(repository);
+		for (int i = 1; i <= 10; i++) {
+			Account account = new Account("Id-X" + i, new BigDecimal(i * 100));
+			repository.createAccount(account);
+			balanceIndex.onAccountCreated(account);
+		}
+	}
+
+	private static List<String> ids(BalancePage page) {
+		return page.getAccounts().stream().map(Account::getAccountId).collect(Collectors.toList());
+	}
+
+	/**
+	 * Test method which checks paging through a balance range.
+	 */
+	@Test
+	void pages_balance_below() {
+		BalancePage first = balanceIndex.balanceBelow(new BigDecimal(450), 2, null, null);
+		assertThat(ids(first)).containsExactly("Id-X1", "Id-X2");
+
+		BalancePage second = balanceIndex.balanceBelow(new BigDecimal(450), 2, first.getNextAfterBalance(),
+				first.getNextAfterAccountId());
+		assertThat(ids(second)).containsExactly("Id-X3", "Id-X4");
+		assertThat(second.getNextAfterAccountId()).isNull();
+	}
+
+	/**
+	 * Test method which checks that the index follows committed transfers.
+	 */
+	@Test
+	void top_balances_follow_transfers() {
+		Account from = repository.getAccount("Id-X1");
+		Account to = repository.getAccount("Id-X2");
+		from.setBalance(BigDecimal.ZERO);
+		to.setBalance(new BigDecimal(2000));
+		balanceIndex.onTransferCommitted(new AccountTransfer("Id-X1", "Id-X2", new BigDecimal(100)), from, to);
+
+		assertThat(ids(balanceIndex.topBalances(2, null, null))).containsExactly("Id-X2", "Id-X10");
+		assertThat(ids(balanceIndex.balanceBelow(new BigDecimal(300), 10, null, null))).containsExactly("Id-X1");
+	}
+
+	/**
+	 * Test method which checks that a rebuilt index holds the accounts of the
+	 * repository.
+	 */
+	@Test
+	void rebuilds_from_repository() {
+		BalanceIndex rebuilt = new BalanceIndex(repository);
+		rebuilt.rebuild();
+		assertThat(ids(rebuilt.topBalances(3, null, null))).containsExactly("Id-X10", "Id-X9", "Id-X8");
+	}
+
+	/**
+	 * Test method which checks that removed accounts are not returned, and
+	 * that accounts created after the clear are.
+	 */
+	@Test
+	void skips_cleared_accounts() {
+		repository.clearAccounts();
+		assertThat(balanceIndex.topBalances(10, null, null).getAccounts()).isEmpty();
+
+		Account account = new Account("Id-X1", new BigDecimal(100));
+		repository.createAccount(account);
+		balanceIndex.onAccountCreated(account);
+		assertThat(ids(balanceIndex.topBalances(10, null, null))).containsExactly("Id-X1");
+	}
+}
@@ -0,0 +1,189 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.dws.challenge.config.SubscriptionProperties;
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.repository.AccountsRepositoryInMemory;
+import com.dws.challenge.subscription.BalanceSubscriptionService;
+import com.dws.challenge.subscription.BalanceUpdate;
+
+class BalanceSubscriptionServiceTest {
+
+	/**
+	 * Emitter recording the updates, blocking every send until the gate opens.
+	 * Like SseEmitter, a send holds the emitter's monitor, so completing the
+	 * emitter waits for a blocked send.
+	 */
+	private static class RecordingEmitter extends SseEmitter {
+
+		private final List<BalanceUpdate> updates = new CopyOnWriteArrayList<>();
+
+		private final CountDownLatch gate = new CountDownLatch(1);
+
+		private final CountDownLatch sending = new CountDownLatch(1);
+
+		private final CountDownLatch completed = new CountDownLatch(1);
+
+		@Override
+		public void send(SseEventBuilder builder) throws IOException {
+			synchronized (this) {
+				sending.countDown();
+				try {
+					gate.await();
+				} catch (InterruptedException e) {
+					throw new IOException(e);
+				}
+				for (ResponseBodyEmitter.DataWithMediaType data : builder.build()) {
+					if (data.getData() instanceof BalanceUpdate) {
+						updates.add((BalanceUpdate) data.getData());
+					}
+				}
+			}
+		}
+
+		@Override
+		public synchronized void complete() {
+			super.complete();
+			completed.countDown();
+		}
+	}
+
+	private static void awaitUpdates(RecordingEmitter emitter, int count) throws InterruptedException {
+		for (int i = 0; i < 100 && emitter.updates.size() < count; i++) {
+			Thread.sleep(20);
+		}
+	}
+
+	/**
+	 * Test method which checks that a blocked subscriber only receives the latest
+	 * balance once it catches up.
+	 */
+	@Test
+	void conflates_updates_of_slow_subscriber() throws Exception {
+		AccountsRepositoryInMemory repository = new AccountsRepositoryInMemory();
+		Account account = new Account("Id-S001", new BigDecimal(100));
+		repository.createAccount(account);
+		BalanceSubscriptionService service = new BalanceSubscriptionService(new SubscriptionProperties(), repository);
+
+		RecordingEmitter emitter = new RecordingEmitter();
+		service.subscribe(Set.of("Id-S001"), emitter);
+		emitter.sending.await();
+		for (int i = 1; i <= 50; i++) {
+			account.setBalance(new BigDecimal(i));
+			service.onBalanceAdjusted(account, BigDecimal.ONE);
+		}
+		emitter.gate.countDown();
+
+		awaitUpdates(emitter, 2);
+		Thread.sleep(50);
+		assertThat(emitter.updates).hasSize(2);
+		assertThat(emitter.updates.get(0).getBalance()).isEqualByComparingTo("100");
+		assertThat(emitter.updates.get(1).getBalance()).isEqualByComparingTo("50");
+		service.stop();
+	}
+
+	/**
+	 * Test method which checks that the balance read on subscription does not
+	 * overwrite a change committed while it was read.
+	 */
+	@Test
+	void initial_balance_does_not_overwrite_committed_change() throws Exception {
+		BalanceSubscriptionService[] service = new BalanceSubscriptionService[1];
+		Account account = new Account("Id-S003", new BigDecimal(100));
+		AccountsRepositoryInMemory repository = new AccountsRepositoryInMemory() {
+			@Override
+			public Account getAccount(String accountId) {
+				Account read = new Account(accountId, account.getBalance());
+				account.setBalance(new BigDecimal(50));
+				service[0].onBalanceAdjusted(account, new BigDecimal(-50));
+				return read;
+			}
+		};
+		service[0] = new BalanceSubscriptionService(new SubscriptionProperties(), repository);
+
+		RecordingEmitter emitter = new RecordingEmitter();
+		emitter.gate.countDown();
+		service[0].subscribe(Set.of("Id-S003"), emitter);
+
+		awaitUpdates(emitter, 1);
+		Thread.sleep(50);
+		assertThat(emitter.updates).hasSize(1);
+		assertThat(emitter.updates.get(0).getBalance()).isEqualByComparingTo("50");
+		service[0].stop();
+	}
+
+	/**
+	 * Test method which checks that a stalled subscriber does not keep the only
+	 * dispatcher thread from serving other subscribers.
+	 */
+	@Test
+	void keeps_dispatching_while_subscriber_stalls() throws Exception {
+		AccountsRepositoryInMemory repository = new AccountsRepositoryInMemory();
+		repository.createAccount(new Account("Id-S004", new BigDecimal(100)));
+		repository.createAccount(new Account("Id-S005", new BigDecimal(200)));
+		SubscriptionProperties properties = new SubscriptionProperties();
+		properties.setDispatcherThreads(1);
+		properties.setMaxStallMillis(100);
+		BalanceSubscriptionService service = new BalanceSubscriptionService(properties, repository);
+
+		RecordingEmitter stalled = new RecordingEmitter();
+		service.subscribe(Set.of("Id-S004"), stalled);
+		stalled.sending.await();
+		RecordingEmitter healthy = new RecordingEmitter();
+		healthy.gate.countDown();
+		service.subscribe(Set.of("Id-S005"), healthy);
+
+		awaitUpdates(healthy, 1);
+		assertThat(healthy.updates).hasSize(1);
+		assertThat(healthy.updates.get(0).getBalance()).isEqualByComparingTo("200");
+		assertThat(service.getSubscriberCount()).isEqualTo(1);
+		assertThat(stalled.completed.getCount()).isEqualTo(1);
+
+		stalled.gate.countDown();
+		assertThat(stalled.completed.await(1, TimeUnit.SECONDS)).isTrue();
+		service.stop();
+	}
+
+	/**
+	 * Test method which checks that a subscriber blocked for too long is dropped
+	 * without a further update and without blocking the committing thread, and
+	 * that its emitter is completed once the blocked send returns.
+	 */
+	@Test
+	void drops_stalled_subscriber() throws Exception {
+		AccountsRepositoryInMemory repository = new AccountsRepositoryInMemory();
+		Account account = new Account("Id-S002", new BigDecimal(100));
+		repository.createAccount(account);
+		SubscriptionProperties properties = new SubscriptionProperties();
+		properties.setMaxStallMillis(50);
+		BalanceSubscriptionService service = new BalanceSubscriptionService(properties, repository);
+
+		RecordingEmitter emitter = new RecordingEmitter();
+		service.subscribe(Set.of("Id-S002"), emitter);
+		emitter.sending.await();
+		assertThat(service.getSubscriberCount()).isEqualTo(1);
+
+		Thread.sleep(200);
+		assertThat(service.getSubscriberCount()).isZero();
+		CompletableFuture.runAsync(() -> service.onBalanceAdjusted(account, BigDecimal.ONE)).get(1, TimeUnit.SECONDS);
+		assertThat(emitter.completed.getCount()).isEqualTo(1);
+
+		emitter.gate.countDown();
+		assertThat(emitter.completed.await(1, TimeUnit.SECONDS)).isTrue();
+		service.stop();
+	}
+}
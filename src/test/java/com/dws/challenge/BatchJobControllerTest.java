@@ -0,0 +1,100 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static org.springframework.test.web.servlet.setup.MockMvcBuilders.webAppContextSetup;
+
+import java.math.BigDecimal;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.web.context.WebApplicationContext;
+
+import com.dws.challenge.batch.BatchJobStatus;
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.service.AccountsService;
+import com.jayway.jsonpath.JsonPath;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest
+@WebAppConfiguration
+class BatchJobControllerTest {
+
+	private MockMvc mockMvc;
+
+	@Autowired
+	private AccountsService accountsService;
+
+	@Autowired
+	private WebApplicationContext webApplicationContext;
+
+	@BeforeEach
+	void prepareMockMvc() {
+		this.mockMvc = webAppContextSetup(this.webApplicationContext).build();
+		accountsService.getAccountsRepository().clearAccounts();
+	}
+
+	private String awaitCompletion(String jobId) throws Exception {
+		String state = BatchJobStatus.State.RUNNING.name();
+		for (int i = 0; i < 500 && BatchJobStatus.State.RUNNING.name().equals(state); i++) {
+			Thread.sleep(10);
+			String status = this.mockMvc.perform(get("/v1/batch-jobs/" + jobId)).andExpect(status().isOk())
+					.andReturn().getResponse().getContentAsString();
+			state = JsonPath.read(status, "$.state");
+		}
+		return state;
+	}
+
+	@Test
+	void accrueInterest() throws Exception {
+		accountsService.createAccount(new Account("Id-BC1", new BigDecimal(100)));
+		accountsService.createAccount(new Account("Id-BC2", new BigDecimal(200)));
+
+		String started = this.mockMvc.perform(post("/v1/batch-jobs/interest?rate=0.10"))
+				.andExpect(status().isAccepted()).andExpect(jsonPath("$.totalAccounts").value(2))
+				.andReturn().getResponse().getContentAsString();
+
+		assertThat(awaitCompletion(JsonPath.read(started, "$.jobId"))).isEqualTo("COMPLETED");
+		assertThat(accountsService.getAccount("Id-BC1").getBalance()).isEqualByComparingTo("110");
+		assertThat(accountsService.getAccount("Id-BC2").getBalance()).isEqualByComparingTo("220");
+	}
+
+	@Test
+	void chargeFee() throws Exception {
+		accountsService.createAccount(new Account("Id-BC3", new BigDecimal(100)));
+
+		String started = this.mockMvc.perform(post("/v1/batch-jobs/fees?amount=5"))
+				.andExpect(status().isAccepted()).andReturn().getResponse().getContentAsString();
+
+		assertThat(awaitCompletion(JsonPath.read(started, "$.jobId"))).isEqualTo("COMPLETED");
+		assertThat(accountsService.getAccount("Id-BC3").getBalance()).isEqualByComparingTo("95");
+	}
+
+	@Test
+	void rejectsInvalidAmounts() throws Exception {
+		this.mockMvc.perform(post("/v1/batch-jobs/interest?rate=-0.01")).andExpect(status().isBadRequest())
+				.andExpect(content().string("Interest rate must not be negative."));
+		this.mockMvc.perform(post("/v1/batch-jobs/fees?amount=0")).andExpect(status().isBadRequest())
+				.andExpect(content().string("Fee must be positive."));
+		this.mockMvc.perform(post("/v1/batch-jobs/fees?amount=abc")).andExpect(status().isBadRequest());
+		this.mockMvc.perform(post("/v1/batch-jobs/interest")).andExpect(status().isBadRequest());
+	}
+
+	@Test
+	void unknownJob() throws Exception {
+		this.mockMvc.perform(get("/v1/batch-jobs/unknown")).andExpect(status().isNotFound())
+				.andExpect(content().string("Batch job not found !!!"));
+		this.mockMvc.perform(post("/v1/batch-jobs/unknown/cancel")).andExpect(status().isNotFound());
+		this.mockMvc.perform(post("/v1/batch-jobs/unknown/resume")).andExpect(status().isNotFound());
+	}
+}
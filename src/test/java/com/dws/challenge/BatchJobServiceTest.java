@@ -0,0 +1,148 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigDecimal;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import com.dws.challenge.batch.BatchJobService;
+import com.dws.challenge.batch.BatchJobStatus;
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.service.AccountsService;
+import com.dws.challenge.util.LockUtilByAccountNo;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest
+class BatchJobServiceTest {
+
+	@Autowired
+	private AccountsService accountsService;
+
+	@Autowired
+	private BatchJobService batchJobService;
+
+	@Autowired
+	private LockUtilByAccountNo lockUtilByAccountNo;
+
+	@BeforeEach
+	void clearAccounts() {
+		accountsService.getAccountsRepository().clearAccounts();
+	}
+
+	private BatchJobStatus awaitCompletion(String jobId) throws InterruptedException {
+		BatchJobStatus status = batchJobService.getStatus(jobId);
+		for (int i = 0; i < 500 && status.getState() == BatchJobStatus.State.RUNNING; i++) {
+			Thread.sleep(10);
+			status = batchJobService.getStatus(jobId);
+		}
+		return status;
+	}
+
+	/**
+	 * Test method which checks interest accrual over all accounts and the
+	 * reported progress.
+	 */
+	@Test
+	void accrues_interest_on_every_account() throws Exception {
+		for (int i = 0; i < 2500; i++) {
+			this.accountsService.createAccount(new Account("Id-B" + i, new BigDecimal(100)));
+		}
+
+		BatchJobStatus status = awaitCompletion(batchJobService.accrueInterest(new BigDecimal("0.10")).getJobId());
+
+		assertThat(status.getState()).isEqualTo(BatchJobStatus.State.COMPLETED);
+		assertThat(status.getTotalAccounts()).isEqualTo(2500);
+		assertThat(status.getCompletedChunks()).isEqualTo(status.getTotalChunks());
+		assertThat(status.getUpdatedAccounts()).isEqualTo(2500);
+		assertThat(status.getPendingAccounts()).isZero();
+		for (int i = 0; i < 2500; i++) {
+			assertThat(this.accountsService.getAccount("Id-B" + i).getBalance()).isEqualByComparingTo("110");
+		}
+	}
+
+	/**
+	 * Test method which checks that fees are only charged where the balance
+	 * covers them.
+	 */
+	@Test
+	void charges_fee_where_covered() throws Exception {
+		this.accountsService.createAccount(new Account("Id-B-rich", new BigDecimal(100)));
+		this.accountsService.createAccount(new Account("Id-B-poor", new BigDecimal(3)));
+
+		BatchJobStatus status = awaitCompletion(batchJobService.chargeFee(new BigDecimal(5)).getJobId());
+
+		assertThat(status.getUpdatedAccounts()).isEqualTo(1);
+		assertThat(status.getUnchangedAccounts()).isEqualTo(1);
+		assertThat(this.accountsService.getAccount("Id-B-rich").getBalance()).isEqualByComparingTo("95");
+		assertThat(this.accountsService.getAccount("Id-B-poor").getBalance()).isEqualByComparingTo("3");
+	}
+
+	/**
+	 * Test method which checks that a job failing in the middle of a chunk
+	 * resumes without applying its function again to the accounts updated
+	 * before the failure.
+	 */
+	@Test
+	void resumes_failed_job_without_applying_twice() throws Exception {
+		for (int i = 0; i < 100; i++) {
+			this.accountsService.createAccount(new Account("Id-BR" + i, new BigDecimal(100)));
+		}
+		AtomicInteger calls = new AtomicInteger();
+		String jobId = batchJobService.submit("failing fee", balance -> {
+			if (calls.incrementAndGet() == 50) {
+				throw new IllegalStateException("Fee service unavailable");
+			}
+			return balance.subtract(BigDecimal.ONE);
+		}).getJobId();
+
+		BatchJobStatus failed = awaitCompletion(jobId);
+		assertThat(failed.getState()).isEqualTo(BatchJobStatus.State.FAILED);
+		assertThat(failed.getUpdatedAccounts()).isEqualTo(49);
+
+		batchJobService.resume(jobId);
+		BatchJobStatus status = awaitCompletion(jobId);
+
+		assertThat(status.getState()).isEqualTo(BatchJobStatus.State.COMPLETED);
+		assertThat(status.getUpdatedAccounts()).isEqualTo(100);
+		for (int i = 0; i < 100; i++) {
+			assertThat(this.accountsService.getAccount("Id-BR" + i).getBalance()).isEqualByComparingTo("99");
+		}
+	}
+
+	/**
+	 * Test method which checks that a job whose account stays locked by a
+	 * transfer ends as incomplete and updates the account once resumed.
+	 */
+	@Test
+	void reports_locked_account_as_incomplete() throws Exception {
+		this.accountsService.createAccount(new Account("Id-BL1", new BigDecimal(100)));
+		this.accountsService.createAccount(new Account("Id-BL2", new BigDecimal(100)));
+
+		String jobId;
+		assertThat(lockUtilByAccountNo.tryLock("Id-BL1")).isTrue();
+		try {
+			jobId = batchJobService.chargeFee(new BigDecimal(5)).getJobId();
+			BatchJobStatus status = awaitCompletion(jobId);
+			assertThat(status.getState()).isEqualTo(BatchJobStatus.State.INCOMPLETE);
+			assertThat(status.getPendingAccounts()).isEqualTo(1);
+			assertThat(status.getUpdatedAccounts()).isEqualTo(1);
+		} finally {
+			lockUtilByAccountNo.unlock("Id-BL1");
+		}
+
+		batchJobService.resume(jobId);
+		BatchJobStatus status = awaitCompletion(jobId);
+
+		assertThat(status.getState()).isEqualTo(BatchJobStatus.State.COMPLETED);
+		assertThat(status.getPendingAccounts()).isZero();
+		assertThat(this.accountsService.getAccount("Id-BL1").getBalance()).isEqualByComparingTo("95");
+		assertThat(this.accountsService.getAccount("Id-BL2").getBalance()).isEqualByComparingTo("95");
+	}
+}
@@ -0,0 +1,293 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.ServerSocket;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.client.RestTemplate;
+
+import com.dws.challenge.cluster.ClusterCredit;
+import com.dws.challenge.cluster.ClusterRouter;
+import com.dws.challenge.cluster.ConsistentHashRing;
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.AccountTransfer;
+import com.dws.challenge.domain.MultiLegTransfer;
+import com.dws.challenge.index.BalancePage;
+import com.dws.challenge.scheduling.Lane;
+import com.dws.challenge.scheduling.TransferScheduler;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+
+/**
+ * Runs two cluster nodes in process on localhost and checks routing and cross
+ * node transfers through the public api.
+ */
+class ClusterModeTest {
+
+	private static final List<String> NODES = List.of("node-1", "node-2");
+
+	private static final ConsistentHashRing RING = new ConsistentHashRing(NODES, 128);
+
+	private static final RestTemplate restTemplate = new RestTemplate();
+
+	private static final Map<String, String> urls = new HashMap<>();
+
+	private static final List<ConfigurableApplicationContext> contexts = new ArrayList<>();
+
+	private static final String SECRET = "cluster-mode-test";
+
+	@TempDir
+	static Path journals;
+
+	@BeforeAll
+	static void startNodes() throws IOException {
+		for (String node : NODES) {
+			urls.put(node, "http://localhost:" + freePort());
+		}
+		for (String node : NODES) {
+			List<String> properties = new ArrayList<>();
+			properties.add("server.port=" + urls.get(node).substring(urls.get(node).lastIndexOf(':') + 1));
+			properties.add("cluster.enabled=true");
+			properties.add("cluster.node-id=" + node);
+			properties.add("cluster.secret=" + SECRET);
+			properties.add("cluster.committed-journal=" + journals.resolve(node + ".log"));
+			urls.forEach((id, url) -> properties.add("cluster.nodes." + id + "=" + url));
+			contexts.add(new SpringApplicationBuilder(ChallengeApplication.class)
+					.properties(properties.toArray(new String[0])).run());
+		}
+	}
+
+	@AfterAll
+	static void stopNodes() {
+		contexts.forEach(ConfigurableApplicationContext::close);
+	}
+
+	private static int freePort() throws IOException {
+		try (ServerSocket socket = new ServerSocket(0)) {
+			return socket.getLocalPort();
+		}
+	}
+
+	private static String accountOwnedBy(String node, String prefix) {
+		for (int i = 0;; i++) {
+			if (RING.ownerOf(prefix + i).equals(node)) {
+				return prefix + i;
+			}
+		}
+	}
+
+	/**
+	 * Test method which checks that any node accepts requests for any account.
+	 */
+	@Test
+	void forwards_to_owner() {
+		String accountId = accountOwnedBy("node-2", "Id-N");
+		restTemplate.postForEntity(urls.get("node-1") + "/v1/accounts", new Account(accountId, new BigDecimal(100)),
+				Void.class);
+
+		Account fromOwner = restTemplate.getForObject(urls.get("node-2") + "/v1/accounts/" + accountId, Account.class);
+		Account fromOther = restTemplate.getForObject(urls.get("node-1") + "/v1/accounts/" + accountId, Account.class);
+		assertThat(fromOwner.getBalance()).isEqualByComparingTo("100");
+		assertThat(fromOther).isEqualTo(fromOwner);
+	}
+
+	/**
+	 * Test method which checks a transfer between accounts owned by different
+	 * nodes, sent to the node owning neither side of the debit.
+	 */
+	@Test
+	void cross_node_transfer() {
+		String fromAccountId = accountOwnedBy("node-1", "Id-F");
+		String toAccountId = accountOwnedBy("node-2", "Id-T");
+		restTemplate.postForEntity(urls.get("node-1") + "/v1/accounts", new Account(fromAccountId, new BigDecimal(1000)),
+				Void.class);
+		restTemplate.postForEntity(urls.get("node-1") + "/v1/accounts", new Account(toAccountId, new BigDecimal(500)),
+				Void.class);
+
+		ResponseEntity<String> response = restTemplate.postForEntity(urls.get("node-2") + "/v1/accounts/transferAmount",
+				new AccountTransfer(fromAccountId, toAccountId, new BigDecimal(300)), String.class);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.ACCEPTED);
+
+		assertThat(restTemplate.getForObject(urls.get("node-2") + "/v1/accounts/" + fromAccountId, Account.class)
+				.getBalance()).isEqualByComparingTo("700");
+		assertThat(restTemplate.getForObject(urls.get("node-1") + "/v1/accounts/" + toAccountId, Account.class)
+				.getBalance()).isEqualByComparingTo("800");
+	}
+
+	/**
+	 * Test method which checks that a forwarded request keeps the CBOR wire
+	 * format of the client in both directions.
+	 */
+	@Test
+	void forwards_cbor_as_is() throws IOException {
+		CBORMapper cborMapper = new CBORMapper();
+		String accountId = accountOwnedBy("node-2", "Id-C");
+		HttpHeaders headers = new HttpHeaders();
+		headers.setContentType(MediaType.APPLICATION_CBOR);
+		headers.setAccept(List.of(MediaType.APPLICATION_CBOR));
+
+		ResponseEntity<byte[]> created = restTemplate.exchange(urls.get("node-1") + "/v1/accounts", HttpMethod.POST,
+				new HttpEntity<>(cborMapper.writeValueAsBytes(new Account(accountId, new BigDecimal(100))), headers),
+				byte[].class);
+		assertThat(created.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+
+		ResponseEntity<byte[]> response = restTemplate.exchange(urls.get("node-1") + "/v1/accounts/" + accountId,
+				HttpMethod.GET, new HttpEntity<>(headers), byte[].class);
+		assertThat(response.getHeaders().getContentType()).isEqualTo(MediaType.APPLICATION_CBOR);
+		assertThat(cborMapper.readValue(response.getBody(), Account.class).getBalance()).isEqualByComparingTo("100");
+	}
+
+	/**
+	 * Test method which checks that a forwarded transfer is executed in the
+	 * priority lane requested by the client.
+	 */
+	@Test
+	void forwards_priority_lane() {
+		String fromAccountId = accountOwnedBy("node-2", "Id-LF");
+		String toAccountId = accountOwnedBy("node-2", "Id-LT");
+		restTemplate.postForEntity(urls.get("node-2") + "/v1/accounts", new Account(fromAccountId, new BigDecimal(100)),
+				Void.class);
+		restTemplate.postForEntity(urls.get("node-2") + "/v1/accounts", new Account(toAccountId, new BigDecimal(0)),
+				Void.class);
+		restTemplate.postForEntity(urls.get("node-2") + "/v1/scheduler/lanes/reset", null, Void.class);
+
+		HttpHeaders headers = new HttpHeaders();
+		headers.set(TransferScheduler.LANE_HEADER, "bulk");
+		HttpEntity<AccountTransfer> transfer = new HttpEntity<>(
+				new AccountTransfer(fromAccountId, toAccountId, new BigDecimal(10)), headers);
+		ResponseEntity<String> response = restTemplate.exchange(urls.get("node-1") + "/v1/accounts/transferAmount",
+				HttpMethod.POST, transfer, String.class);
+		assertThat(response.getStatusCode()).isEqualTo(HttpStatus.ACCEPTED);
+
+		JsonNode lanes = restTemplate.getForObject(urls.get("node-2") + "/v1/scheduler/lanes", JsonNode.class);
+		long bulkCompleted = -1;
+		for (JsonNode lane : lanes) {
+			if (Lane.BULK.name().equals(lane.get("lane").asText())) {
+				bulkCompleted = lane.get("completed").asLong();
+			}
+		}
+		assertThat(bulkCompleted).isEqualTo(1);
+	}
+
+	/**
+	 * Test method which checks that a multi-leg transfer over accounts of
+	 * different nodes is rejected, while one over accounts of one node is
+	 * forwarded to that node.
+	 */
+	@Test
+	void multi_leg_requires_single_owner() {
+		String payerAccountId = accountOwnedBy("node-2", "Id-MP");
+		String localAccountId = accountOwnedBy("node-1", "Id-MM");
+		String remoteAccountId = accountOwnedBy("node-2", "Id-MM");
+		for (String accountId : List.of(payerAccountId, localAccountId, remoteAccountId)) {
+			restTemplate.postForEntity(urls.get("node-1") + "/v1/accounts", new Account(accountId, new BigDecimal(100)),
+					Void.class);
+		}
+
+		HttpStatus crossNode = multiLeg(payerAccountId, localAccountId);
+		assertThat(crossNode).isEqualTo(HttpStatus.BAD_REQUEST);
+		HttpStatus singleNode = multiLeg(payerAccountId, remoteAccountId);
+		assertThat(singleNode).isEqualTo(HttpStatus.ACCEPTED);
+
+		assertThat(restTemplate.getForObject(urls.get("node-1") + "/v1/accounts/" + payerAccountId, Account.class)
+				.getBalance()).isEqualByComparingTo("90");
+		assertThat(restTemplate.getForObject(urls.get("node-1") + "/v1/accounts/" + localAccountId, Account.class)
+				.getBalance()).isEqualByComparingTo("100");
+	}
+
+	private static HttpStatus multiLeg(String fromAccountId, String toAccountId) {
+		MultiLegTransfer transfer = new MultiLegTransfer(
+				List.of(new AccountTransfer(fromAccountId, toAccountId, new BigDecimal(10))));
+		try {
+			return restTemplate.postForEntity(urls.get("node-1") + "/v1/accounts/transferAmount/multi-leg", transfer,
+					String.class).getStatusCode();
+		} catch (HttpStatusCodeException e) {
+			return e.getStatusCode();
+		}
+	}
+
+	/**
+	 * Test method which checks that a balance query sent to one node pages
+	 * through the accounts of all nodes, while a forwarded one only answers
+	 * for the local accounts.
+	 */
+	@Test
+	void queries_balances_of_all_nodes() {
+		String localAccountId = accountOwnedBy("node-1", "Id-Q");
+		String remoteAccountId = accountOwnedBy("node-2", "Id-Q");
+		restTemplate.postForEntity(urls.get("node-1") + "/v1/accounts",
+				new Account(localAccountId, new BigDecimal(2000000000)), Void.class);
+		restTemplate.postForEntity(urls.get("node-1") + "/v1/accounts",
+				new Account(remoteAccountId, new BigDecimal(3000000000L)), Void.class);
+
+		BalancePage first = restTemplate.getForObject(urls.get("node-1") + "/v1/accounts/query/top-balances?limit=1",
+				BalancePage.class);
+		assertThat(first.getAccounts()).extracting(Account::getAccountId).containsExactly(remoteAccountId);
+		BalancePage second = restTemplate.getForObject(urls.get("node-1")
+				+ "/v1/accounts/query/top-balances?limit=1&afterBalance={balance}&afterAccountId={accountId}",
+				BalancePage.class, first.getNextAfterBalance(), first.getNextAfterAccountId());
+		assertThat(second.getAccounts()).extracting(Account::getAccountId).containsExactly(localAccountId);
+
+		HttpHeaders headers = new HttpHeaders();
+		headers.set(ClusterRouter.FORWARDED_HEADER, "node-2");
+		BalancePage local = restTemplate.exchange(urls.get("node-1") + "/v1/accounts/query/top-balances?limit=1",
+				HttpMethod.GET, new HttpEntity<>(headers), BalancePage.class).getBody();
+		assertThat(local.getAccounts()).extracting(Account::getAccountId).containsExactly(localAccountId);
+	}
+
+	private static HttpStatus prepare(String node, ClusterCredit credit, String secret) {
+		HttpHeaders headers = new HttpHeaders();
+		if (secret != null) {
+			headers.set(ClusterRouter.SECRET_HEADER, secret);
+		}
+		try {
+			return restTemplate.exchange(urls.get(node) + "/internal/cluster/prepare", HttpMethod.POST,
+					new HttpEntity<>(credit, headers), String.class).getStatusCode();
+		} catch (HttpStatusCodeException e) {
+			return e.getStatusCode();
+		}
+	}
+
+	/**
+	 * Test method which checks that the node to node endpoints refuse callers
+	 * without the cluster secret, credits that are not positive and repeated
+	 * reservation ids.
+	 */
+	@Test
+	void internal_endpoints_require_secret_and_valid_credit() {
+		String accountId = accountOwnedBy("node-2", "Id-S");
+		restTemplate.postForEntity(urls.get("node-2") + "/v1/accounts", new Account(accountId, new BigDecimal(0)),
+				Void.class);
+
+		ClusterCredit credit = new ClusterCredit("Id-S-reservation", accountId, new BigDecimal(100));
+		assertThat(prepare("node-2", credit, null)).isEqualTo(HttpStatus.FORBIDDEN);
+		assertThat(prepare("node-2", credit, "wrong")).isEqualTo(HttpStatus.FORBIDDEN);
+		assertThat(prepare("node-2", new ClusterCredit("Id-S-negative", accountId, new BigDecimal(-100)), SECRET))
+				.isEqualTo(HttpStatus.BAD_REQUEST);
+		assertThat(prepare("node-2", credit, SECRET)).isEqualTo(HttpStatus.OK);
+		assertThat(prepare("node-2", credit, SECRET)).isEqualTo(HttpStatus.CONFLICT);
+
+		assertThat(restTemplate.getForObject(urls.get("node-2") + "/v1/accounts/" + accountId, Account.class)
+				.getBalance()).isEqualByComparingTo("0");
+	}
+}
@@ -0,0 +1,264 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import com.dws.challenge.cluster.ClusterCredit;
+import com.dws.challenge.cluster.ClusterRouter;
+import com.dws.challenge.cluster.ClusterTransferService;
+import com.dws.challenge.config.ClusterProperties;
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.AccountTransfer;
+import com.dws.challenge.exception.DuplicateReservationException;
+import com.dws.challenge.exception.TransferFailureException;
+import com.dws.challenge.exception.UnknownReservationException;
+import com.dws.challenge.exception.VelocityLimitExceededException;
+import com.dws.challenge.service.AccountsService;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(properties = { "transfer.velocity.rules[0].name=hourly", "transfer.velocity.rules[0].window=1h",
+		"transfer.velocity.rules[0].buckets=12", "transfer.velocity.rules[0].max-count=2" })
+class ClusterTransferServiceTest {
+
+	/**
+	 * Router answering with scripted statuses instead of calling other nodes.
+	 */
+	private static final class ScriptedRouter extends ClusterRouter {
+
+		private final Deque<HttpStatus> statuses = new ArrayDeque<>();
+
+		private ScriptedRouter() {
+			this(new ClusterProperties());
+		}
+
+		private ScriptedRouter(ClusterProperties properties) {
+			super(properties, new RestTemplateBuilder());
+		}
+
+		@Override
+		public String ownerOf(String accountId) {
+			return "node-2";
+		}
+
+		@Override
+		public ResponseEntity<Object> forward(String nodeId, HttpMethod method, String path, Object body) {
+			return new ResponseEntity<>(statuses.isEmpty() ? HttpStatus.SERVICE_UNAVAILABLE : statuses.poll());
+		}
+	}
+
+	@Autowired
+	private AccountsService accountsService;
+
+	private final ScriptedRouter router = new ScriptedRouter();
+
+	private ClusterTransferService clusterTransferService;
+
+	private String prefix;
+
+	@BeforeEach
+	void createAccounts() {
+		prefix = "Id-C" + System.nanoTime() + "-";
+		accountsService.createAccount(new Account(prefix + "from", new BigDecimal(1000)));
+		accountsService.createAccount(new Account(prefix + "to", new BigDecimal(0)));
+		clusterTransferService = new ClusterTransferService(accountsService, router);
+	}
+
+	private void transferInDoubt() {
+		router.statuses.add(HttpStatus.OK);
+		try {
+			clusterTransferService
+					.transferAmount(new AccountTransfer(prefix + "from", prefix + "to", new BigDecimal(100)));
+			fail("Should have failed with the commit in doubt");
+		} catch (TransferFailureException tfe) {
+			assertThat(tfe.getMessage()).contains("pending confirmation");
+		}
+		assertThat(clusterTransferService.getInDoubtCredits()).hasSize(1);
+		assertThat(accountsService.getAccount(prefix + "from").getBalance()).isEqualByComparingTo("900");
+	}
+
+	/**
+	 * Test method which checks that a commit in doubt unknown to the
+	 * participant, e.g. after its restart, is rolled back by the resolver.
+	 */
+	@Test
+	void resolver_rolls_back_unknown_reservation() {
+		transferInDoubt();
+
+		clusterTransferService.resolveInDoubt();
+		assertThat(clusterTransferService.getInDoubtCredits()).hasSize(1);
+		router.statuses.add(HttpStatus.GONE);
+		clusterTransferService.resolveInDoubt();
+
+		assertThat(clusterTransferService.getInDoubtCredits()).isEmpty();
+		assertThat(accountsService.getAccount(prefix + "from").getBalance()).isEqualByComparingTo("1000");
+	}
+
+	@Test
+	void resolver_retries_commit() {
+		transferInDoubt();
+
+		router.statuses.add(HttpStatus.OK);
+		clusterTransferService.resolveInDoubt();
+
+		assertThat(clusterTransferService.getInDoubtCredits()).isEmpty();
+		assertThat(accountsService.getAccount(prefix + "from").getBalance()).isEqualByComparingTo("900");
+	}
+
+	/**
+	 * Test method which checks that the participant credits a reservation
+	 * once, refuses to abort it afterwards and rejects unknown reservations.
+	 */
+	@Test
+	void participant_commit_is_idempotent() {
+		ClusterCredit credit = new ClusterCredit(prefix + "reservation", prefix + "to", new BigDecimal(40));
+		assertThat(clusterTransferService.prepare(credit)).isTrue();
+
+		assertThat(clusterTransferService.commit(credit.getReservationId())).isEqualTo(credit);
+		assertThat(clusterTransferService.commit(credit.getReservationId())).isNull();
+		assertThat(clusterTransferService.abort(credit.getReservationId())).isFalse();
+		assertThat(accountsService.getAccount(prefix + "to").getBalance()).isEqualByComparingTo("40");
+
+		try {
+			clusterTransferService.commit(prefix + "unknown");
+			fail("Should have failed for an unknown reservation");
+		} catch (UnknownReservationException ure) {
+			assertThat(ure.getMessage()).isEqualTo("Reservation " + prefix + "unknown is unknown!!!");
+		}
+	}
+
+	/**
+	 * Test method which checks that the participant refuses credits that are
+	 * not positive and reservation ids it has seen before.
+	 */
+	@Test
+	void participant_rejects_invalid_credits() {
+		try {
+			clusterTransferService.prepare(new ClusterCredit(prefix + "negative", prefix + "to", new BigDecimal(-40)));
+			fail("Should have failed for a negative amount");
+		} catch (IllegalArgumentException iae) {
+			assertThat(iae.getMessage()).isEqualTo("Credit amount must be positive.");
+		}
+		ClusterCredit credit = new ClusterCredit(prefix + "reservation", prefix + "to", new BigDecimal(40));
+		assertThat(clusterTransferService.prepare(credit)).isTrue();
+		try {
+			clusterTransferService
+					.prepare(new ClusterCredit(prefix + "reservation", prefix + "to", new BigDecimal(4000)));
+			fail("Should have failed for a prepared reservation id");
+		} catch (DuplicateReservationException dre) {
+			assertThat(dre.getMessage()).isEqualTo("Reservation " + prefix + "reservation already exists!!!");
+		}
+		clusterTransferService.commit(credit.getReservationId());
+		try {
+			clusterTransferService.prepare(credit);
+			fail("Should have failed for a committed reservation id");
+		} catch (DuplicateReservationException dre) {
+			assertThat(accountsService.getAccount(prefix + "to").getBalance()).isEqualByComparingTo("40");
+		}
+	}
+
+	/**
+	 * Test method which checks that a prepared credit never committed is
+	 * aborted after the timeout.
+	 */
+	@Test
+	void resolver_aborts_expired_prepared_credit() throws InterruptedException {
+		ClusterProperties properties = new ClusterProperties();
+		properties.setPreparedTimeoutMillis(0);
+		clusterTransferService = new ClusterTransferService(accountsService, new ScriptedRouter(properties));
+		ClusterCredit credit = new ClusterCredit(prefix + "reservation", prefix + "to", new BigDecimal(40));
+		assertThat(clusterTransferService.prepare(credit)).isTrue();
+		Thread.sleep(5);
+
+		clusterTransferService.resolveInDoubt();
+
+		try {
+			clusterTransferService.commit(credit.getReservationId());
+			fail("Should have failed for an expired reservation");
+		} catch (UnknownReservationException ure) {
+			assertThat(accountsService.getAccount(prefix + "to").getBalance()).isEqualByComparingTo("0");
+		}
+	}
+
+	/**
+	 * Test method which checks that a restarted participant still confirms
+	 * the reservations it committed before, instead of answering that it does
+	 * not know them.
+	 */
+	@Test
+	void participant_keeps_commits_across_restart(@TempDir Path directory) throws IOException {
+		ClusterProperties properties = new ClusterProperties();
+		properties.setEnabled(true);
+		properties.getNodes().put("node-1", "http://localhost:1");
+		properties.getNodes().put("node-2", "http://localhost:2");
+		properties.setSecret("secret");
+		properties.setCommittedJournal(directory.resolve("committed.log").toString());
+		ScriptedRouter enabledRouter = new ScriptedRouter(properties);
+		ClusterCredit credit = new ClusterCredit(prefix + "reservation", prefix + "to", new BigDecimal(40));
+
+		ClusterTransferService participant = new ClusterTransferService(accountsService, enabledRouter);
+		participant.start();
+		assertThat(participant.prepare(credit)).isTrue();
+		assertThat(participant.commit(credit.getReservationId())).isEqualTo(credit);
+		participant.stop();
+
+		ClusterTransferService restarted = new ClusterTransferService(accountsService, enabledRouter);
+		restarted.start();
+		try {
+			assertThat(restarted.commit(credit.getReservationId())).isNull();
+			assertThat(restarted.abort(credit.getReservationId())).isFalse();
+		} finally {
+			restarted.stop();
+		}
+		assertThat(accountsService.getAccount(prefix + "to").getBalance()).isEqualByComparingTo("40");
+	}
+
+	/**
+	 * Test method which checks that the debit of a cross node transfer counts
+	 * against the velocity limits of the from-account, unless it is rolled back.
+	 */
+	@Test
+	void debit_counts_against_velocity_limits() {
+		AccountTransfer transfer = new AccountTransfer(prefix + "from", prefix + "to", new BigDecimal(10));
+		for (int i = 0; i < 3; i++) {
+			try {
+				clusterTransferService.transferAmount(transfer);
+				fail("Should have failed with the prepare unanswered");
+			} catch (TransferFailureException tfe) {
+				assertThat(tfe.getMessage()).startsWith("Failed to transfer");
+			}
+		}
+		for (int i = 0; i < 2; i++) {
+			router.statuses.add(HttpStatus.OK);
+			router.statuses.add(HttpStatus.OK);
+			assertThat(clusterTransferService.transferAmount(transfer)).isTrue();
+		}
+
+		router.statuses.add(HttpStatus.OK);
+		router.statuses.add(HttpStatus.OK);
+		try {
+			clusterTransferService.transferAmount(transfer);
+			fail("Should have failed after the hourly count");
+		} catch (VelocityLimitExceededException vlee) {
+			assertThat(vlee.getRule()).isEqualTo("hourly");
+		}
+		assertThat(accountsService.getAccount(prefix + "from").getBalance()).isEqualByComparingTo("980");
+	}
+}
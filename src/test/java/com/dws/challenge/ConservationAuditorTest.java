@@ -0,0 +1,123 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import com.dws.challenge.audit.AuditReport;
+import com.dws.challenge.audit.ConservationAuditor;
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.AccountTransfer;
+import com.dws.challenge.service.AccountsService;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest
+class ConservationAuditorTest {
+
+	private static final int ACCOUNTS = 20;
+
+	@Autowired
+	private AccountsService accountsService;
+
+	@Autowired
+	private ConservationAuditor conservationAuditor;
+
+	/**
+	 * Fresh account ids per test, locks are kept across application contexts.
+	 */
+	private String prefix;
+
+	@BeforeEach
+	void createAccounts() {
+		prefix = "Id-A" + System.nanoTime() + "-";
+		accountsService.getAccountsRepository().clearAccounts();
+		for (int i = 0; i < ACCOUNTS; i++) {
+			accountsService.createAccount(new Account(prefix + i, new BigDecimal(1000)));
+		}
+		conservationAuditor.rebase();
+	}
+
+	/**
+	 * Test method which checks that verifications running during concurrent
+	 * transfers find no drift.
+	 */
+	@Test
+	void no_drift_during_concurrent_transfers() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		AtomicBoolean running = new AtomicBoolean(true);
+		List<Future<?>> transfers = new ArrayList<>();
+		for (int t = 0; t < 4; t++) {
+			transfers.add(executor.submit(() -> {
+				ThreadLocalRandom random = ThreadLocalRandom.current();
+				while (running.get()) {
+					int from = random.nextInt(ACCOUNTS);
+					int to = (from + 1 + random.nextInt(ACCOUNTS - 1)) % ACCOUNTS;
+					try {
+						accountsService.transferAmount(
+								new AccountTransfer(prefix + from, prefix + to, new BigDecimal(random.nextInt(1, 50))));
+					} catch (RuntimeException e) {
+						// busy or insufficient balance, the audit only cares about committed transfers
+					}
+				}
+			}));
+		}
+		try {
+			for (int i = 0; i < 50; i++) {
+				AuditReport report = conservationAuditor.verify();
+				assertThat(report.getDrift()).isEqualByComparingTo(BigDecimal.ZERO);
+				assertThat(report.getObservedTotal()).isEqualByComparingTo(new BigDecimal(ACCOUNTS * 1000));
+			}
+		} finally {
+			running.set(false);
+			for (Future<?> transfer : transfers) {
+				transfer.get(1, TimeUnit.MINUTES);
+			}
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * Test method which checks that credits and debits move the expected total.
+	 */
+	@Test
+	void follows_adjustments() {
+		accountsService.credit(prefix + 1, new BigDecimal(250));
+		accountsService.debit(prefix + 2, new BigDecimal(100));
+
+		AuditReport report = conservationAuditor.verify();
+		assertThat(report.getDrift()).isEqualByComparingTo(BigDecimal.ZERO);
+		assertThat(report.getExpectedTotal()).isEqualByComparingTo(new BigDecimal(ACCOUNTS * 1000 + 150));
+	}
+
+	/**
+	 * Test method which checks that a balance changed outside the service is
+	 * alerted after the confirmations, until the auditor is rebased.
+	 */
+	@Test
+	void alerts_confirmed_drift() {
+		accountsService.getAccount(prefix + 3).setBalance(new BigDecimal(990));
+
+		assertThat(conservationAuditor.verify().isAlert()).isFalse();
+		AuditReport report = conservationAuditor.verify();
+		assertThat(report.isAlert()).isTrue();
+		assertThat(report.getDrift()).isEqualByComparingTo("-10");
+
+		conservationAuditor.rebase();
+		assertThat(conservationAuditor.verify().isAlert()).isFalse();
+	}
+}
@@ -0,0 +1,43 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import com.dws.challenge.cluster.ConsistentHashRing;
+
+class ConsistentHashRingTest {
+
+	/**
+	 * Test method which checks that accounts are spread evenly over the nodes.
+	 */
+	@Test
+	void spreads_accounts_evenly() {
+		ConsistentHashRing ring = new ConsistentHashRing(List.of("node-1", "node-2", "node-3"), 128);
+		Map<String, Integer> owned = new HashMap<>();
+		for (int i = 0; i < 30000; i++) {
+			owned.merge(ring.ownerOf("Id-" + i), 1, Integer::sum);
+		}
+		assertThat(owned).hasSize(3);
+		owned.values().forEach(count -> assertThat(count).isBetween(7000, 13000));
+	}
+
+	/**
+	 * Test method which checks that adding a node only moves accounts to that node.
+	 */
+	@Test
+	void adding_node_moves_only_its_accounts() {
+		ConsistentHashRing before = new ConsistentHashRing(List.of("node-1", "node-2"), 128);
+		ConsistentHashRing after = new ConsistentHashRing(List.of("node-1", "node-2", "node-3"), 128);
+		for (int i = 0; i < 10000; i++) {
+			String owner = after.ownerOf("Id-" + i);
+			if (!owner.equals("node-3")) {
+				assertThat(owner).isEqualTo(before.ownerOf("Id-" + i));
+			}
+		}
+	}
+}
@@ -0,0 +1,97 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.startsWith;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static org.springframework.test.web.servlet.setup.MockMvcBuilders.webAppContextSetup;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.web.context.WebApplicationContext;
+
+import com.dws.challenge.util.LockUtilByAccountNo;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest
+@WebAppConfiguration
+class DiagnosticsControllerTest {
+
+	private MockMvc mockMvc;
+
+	@Autowired
+	private LockUtilByAccountNo lockUtilByAccountNo;
+
+	@Autowired
+	private WebApplicationContext webApplicationContext;
+
+	private final ExecutorService executor = Executors
+			.newSingleThreadExecutor(r -> new Thread(r, "diagnostics-lock-holder"));
+
+	@BeforeEach
+	void prepareMockMvc() {
+		this.mockMvc = webAppContextSetup(this.webApplicationContext).build();
+	}
+
+	@AfterEach
+	void shutdown() {
+		executor.shutdownNow();
+	}
+
+	/**
+	 * Test method which checks that the dump lists a held lock with its owner.
+	 */
+	@Test
+	void listsHeldLocks() throws Exception {
+		String accountId = "Id-D" + System.nanoTime();
+		CountDownLatch locked = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		Future<?> holder = executor.submit(() -> {
+			lockUtilByAccountNo.lock(accountId);
+			try {
+				locked.countDown();
+				release.await(10, TimeUnit.SECONDS);
+			} finally {
+				lockUtilByAccountNo.unlock(accountId);
+			}
+			return null;
+		});
+		assertThat(locked.await(10, TimeUnit.SECONDS)).isTrue();
+		try {
+			this.mockMvc.perform(get("/v1/diagnostics/locks?top=1000")).andExpect(status().isOk())
+					.andExpect(jsonPath("$.heldLocks").isNumber())
+					.andExpect(jsonPath("$.longestHeld[?(@.accountId == '" + accountId + "')].owner")
+							.value(contains(startsWith("diagnostics-lock-holder#"))))
+					.andExpect(jsonPath("$.deadlocks").isEmpty());
+		} finally {
+			release.countDown();
+			holder.get(10, TimeUnit.SECONDS);
+		}
+
+		this.mockMvc.perform(get("/v1/diagnostics/locks")).andExpect(status().isOk())
+				.andExpect(jsonPath("$.longestHeld[?(@.accountId == '" + accountId + "')]").isEmpty());
+	}
+
+	@Test
+	void rejectsNegativeTop() throws Exception {
+		this.mockMvc.perform(get("/v1/diagnostics/locks?top=-1")).andExpect(status().isBadRequest())
+				.andExpect(content().string("top must not be negative."));
+		this.mockMvc.perform(get("/v1/diagnostics/locks?top=abc")).andExpect(status().isBadRequest());
+	}
+}
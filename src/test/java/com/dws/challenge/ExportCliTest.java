@@ -0,0 +1,55 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.export.ExportCli;
+import com.dws.challenge.service.AccountsService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Runs the export command line client against a started server.
+ */
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT, properties = "export.segment-rows=2")
+class ExportCliTest {
+
+	@LocalServerPort
+	private int port;
+
+	@Autowired
+	private AccountsService accountsService;
+
+	@Test
+	void exports_into_file(@TempDir Path directory) throws IOException, InterruptedException {
+		accountsService.getAccountsRepository().clearAccounts();
+		accountsService.createAccount(new Account("Id-C001", new BigDecimal(10)));
+		accountsService.createAccount(new Account("Id-C002", new BigDecimal(20)));
+		accountsService.createAccount(new Account("Id-C003", new BigDecimal(30)));
+		Path out = directory.resolve("accounts.ndjson.gz");
+
+		ExportCli.main(new String[] { "--url", "http://localhost:" + port, "--format", "ndjson", "--out",
+				out.toString() });
+
+		assertThat(out.resolveSibling("accounts.ndjson.gz.part")).doesNotExist();
+		Map<String, BigDecimal> balances;
+		try (InputStream in = Files.newInputStream(out)) {
+			balances = ExportControllerTest.readNdjson(in, new ObjectMapper());
+		}
+		assertThat(balances).containsOnlyKeys("Id-C001", "Id-C002", "Id-C003");
+		assertThat(balances.get("Id-C003")).isEqualByComparingTo("30");
+	}
+}
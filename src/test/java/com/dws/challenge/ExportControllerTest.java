@@ -0,0 +1,103 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static org.springframework.test.web.servlet.setup.MockMvcBuilders.webAppContextSetup;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.web.context.WebApplicationContext;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.service.AccountsService;
+import com.dws.challenge.web.ExportController;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Checks the snapshot export endpoint: its headers, the gzip body made of
+ * several segments and the answer to an unknown format.
+ */
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(properties = "export.segment-rows=2")
+@WebAppConfiguration
+class ExportControllerTest {
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+
+	private MockMvc mockMvc;
+
+	@Autowired
+	private AccountsService accountsService;
+
+	@Autowired
+	private WebApplicationContext webApplicationContext;
+
+	@BeforeEach
+	void prepareMockMvc() {
+		this.mockMvc = webAppContextSetup(this.webApplicationContext).build();
+
+		accountsService.getAccountsRepository().clearAccounts();
+		for (int i = 0; i < 5; i++) {
+			accountsService.createAccount(new Account("Id-E00" + i, new BigDecimal(100 + i)));
+		}
+	}
+
+	static Map<String, BigDecimal> readNdjson(InputStream gzip, ObjectMapper objectMapper) throws IOException {
+		Map<String, BigDecimal> balances = new HashMap<>();
+		try (BufferedReader reader = new BufferedReader(
+				new InputStreamReader(new GZIPInputStream(gzip), StandardCharsets.UTF_8))) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				JsonNode node = objectMapper.readTree(line);
+				balances.put(node.get("accountId").asText(), node.get("balance").decimalValue());
+			}
+		}
+		return balances;
+	}
+
+	@Test
+	void exportAccounts() throws Exception {
+		MvcResult started = this.mockMvc.perform(get("/v1/export/accounts?format=ndjson"))
+				.andExpect(request().asyncStarted()).andReturn();
+		MvcResult result = this.mockMvc.perform(asyncDispatch(started)).andExpect(status().isOk())
+				.andExpect(content().contentType("application/gzip"))
+				.andExpect(header().string(ExportController.ACCOUNTS_HEADER, "5"))
+				.andExpect(header().exists(ExportController.TAKEN_AT_HEADER)).andReturn();
+
+		Map<String, BigDecimal> balances = readNdjson(
+				new ByteArrayInputStream(result.getResponse().getContentAsByteArray()), objectMapper);
+		assertThat(balances).hasSize(5);
+		for (int i = 0; i < 5; i++) {
+			assertThat(balances.get("Id-E00" + i)).isEqualByComparingTo(new BigDecimal(100 + i));
+		}
+	}
+
+	@Test
+	void exportAccountsUnknownFormat() throws Exception {
+		this.mockMvc.perform(get("/v1/export/accounts?format=xml")).andExpect(status().isBadRequest());
+	}
+}
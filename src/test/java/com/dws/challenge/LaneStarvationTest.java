@@ -0,0 +1,119 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.math.BigDecimal;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.scheduling.Lane;
+import com.dws.challenge.scheduling.LaneStatistics;
+import com.dws.challenge.scheduling.TransferScheduler;
+import com.dws.challenge.service.AccountsService;
+
+/**
+ * Saturates the bulk lane through a server with few request threads and a
+ * small rate limit, and checks that an interactive transfer still gets a
+ * request thread and a rate limit slot.
+ */
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT, properties = { "server.tomcat.threads.max=16",
+		"transfer.scheduler.max-concurrent=4", "transfer.scheduler.lanes.interactive.queue-capacity=4",
+		"transfer.scheduler.lanes.standard.queue-capacity=2", "transfer.scheduler.lanes.bulk.max-concurrent=1",
+		"transfer.scheduler.lanes.bulk.queue-capacity=4", "transfer.rate-limit.max-concurrent-transfers=2" })
+class LaneStarvationTest {
+
+	private static final int BULK_REQUESTS = 30;
+
+	private final HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+	@LocalServerPort
+	private int port;
+
+	@Autowired
+	private AccountsService accountsService;
+
+	@Autowired
+	private TransferScheduler transferScheduler;
+
+	private HttpRequest transfer(String fromAccountId, String toAccountId, Lane lane, Duration timeout) {
+		return HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/v1/accounts/transferAmount"))
+				.timeout(timeout).header("Content-Type", "application/json")
+				.header(TransferScheduler.LANE_HEADER, lane.name().toLowerCase())
+				.POST(HttpRequest.BodyPublishers.ofString("{\"fromAccountId\":\"" + fromAccountId
+						+ "\",\"toAccountId\":\"" + toAccountId + "\",\"balance\":1}"))
+				.build();
+	}
+
+	private LaneStatistics bulk() {
+		return transferScheduler.getStatistics().stream().filter(s -> s.getLane() == Lane.BULK).findFirst()
+				.orElseThrow();
+	}
+
+	@Test
+	void interactive_transfer_passes_saturated_bulk_lane() throws Exception {
+		accountsService.getAccountsRepository().clearAccounts();
+		accountsService.createAccount(new Account("Id-LS-B1", new BigDecimal(1000)));
+		accountsService.createAccount(new Account("Id-LS-B2", new BigDecimal(0)));
+		accountsService.createAccount(new Account("Id-LS-I1", new BigDecimal(1000)));
+		accountsService.createAccount(new Account("Id-LS-I2", new BigDecimal(0)));
+		transferScheduler.resetStatistics();
+
+		CountDownLatch running = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		CompletableFuture<Boolean> holder = CompletableFuture
+				.supplyAsync(() -> transferScheduler.execute(Lane.BULK, () -> {
+					running.countDown();
+					try {
+						return release.await(10, TimeUnit.SECONDS);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						return false;
+					}
+				}));
+		assertThat(running.await(5, TimeUnit.SECONDS)).isTrue();
+
+		List<CompletableFuture<HttpResponse<String>>> bulkResponses = new ArrayList<>();
+		for (int i = 0; i < BULK_REQUESTS; i++) {
+			bulkResponses.add(client.sendAsync(transfer("Id-LS-B1", "Id-LS-B2", Lane.BULK, Duration.ofSeconds(15)),
+					HttpResponse.BodyHandlers.ofString()));
+		}
+		for (int i = 0; i < 250 && bulk().getQueued() + bulk().getRejected() < BULK_REQUESTS; i++) {
+			Thread.sleep(20);
+		}
+		assertThat(bulk().getQueued()).isEqualTo(4);
+
+		long startNanos = System.nanoTime();
+		HttpResponse<String> interactive = client.send(transfer("Id-LS-I1", "Id-LS-I2", Lane.INTERACTIVE, Duration.ofSeconds(2)),
+				HttpResponse.BodyHandlers.ofString());
+		assertThat(interactive.statusCode()).isEqualTo(202);
+		assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos)).isLessThan(1000);
+
+		release.countDown();
+		assertThat(holder.get(10, TimeUnit.SECONDS)).isTrue();
+		int accepted = 0;
+		for (CompletableFuture<HttpResponse<String>> response : bulkResponses) {
+			int status = response.get(10, TimeUnit.SECONDS).statusCode();
+			assertThat(status).isIn(202, 503);
+			if (status == 202) {
+				accepted++;
+			}
+		}
+		assertThat(accepted).isEqualTo(4);
+		assertThat(accountsService.getAccount("Id-LS-I2").getBalance()).isEqualByComparingTo("1");
+	}
+}
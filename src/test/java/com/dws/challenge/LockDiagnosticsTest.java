@@ -0,0 +1,178 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import com.dws.challenge.diagnostics.HeldLock;
+import com.dws.challenge.diagnostics.LockDiagnostics;
+import com.dws.challenge.diagnostics.LockGraph;
+import com.dws.challenge.util.LockUtilByAccountNo;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+class LockDiagnosticsTest {
+
+	private final LockUtilByAccountNo lockUtilByAccountNo = new LockUtilByAccountNo();
+
+	private final LockDiagnostics lockDiagnostics = new LockDiagnostics(lockUtilByAccountNo);
+
+	private final ExecutorService executor = Executors.newCachedThreadPool();
+
+	/**
+	 * Fresh account ids per test, the locks are static.
+	 */
+	private final String prefix = "Id-L" + System.nanoTime() + "-";
+
+	@AfterEach
+	void shutdown() {
+		executor.shutdownNow();
+	}
+
+	private Future<?> hold(String accountId, CountDownLatch locked, CountDownLatch release) {
+		return executor.submit(() -> {
+			lockUtilByAccountNo.lock(accountId);
+			try {
+				locked.countDown();
+				release.await(10, TimeUnit.SECONDS);
+			} finally {
+				lockUtilByAccountNo.unlock(accountId);
+			}
+			return null;
+		});
+	}
+
+	private HeldLock heldLock(LockGraph graph, String accountId) {
+		return graph.getLongestHeld().stream().filter(heldLock -> heldLock.getAccountId().equals(accountId)).findFirst()
+				.orElseThrow();
+	}
+
+	/**
+	 * Test method which checks that a dump shows the holder, the waiter and
+	 * the hold time of a contended lock.
+	 */
+	@Test
+	void dumps_holders_and_waiters() throws Exception {
+		CountDownLatch locked = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		Future<?> holder = hold(prefix + 1, locked, release);
+		assertThat(locked.await(10, TimeUnit.SECONDS)).isTrue();
+		Future<?> waiter = hold(prefix + 1, new CountDownLatch(1), new CountDownLatch(0));
+		for (int i = 0; i < 500 && heldLock(lockDiagnostics.dump(100), prefix + 1).getWaiters().isEmpty(); i++) {
+			Thread.sleep(10);
+		}
+		Thread.sleep(20);
+
+		LockGraph graph = lockDiagnostics.dump(100);
+		HeldLock heldLock = heldLock(graph, prefix + 1);
+		assertThat(heldLock.getWaiters()).hasSize(1);
+		assertThat(heldLock.getHeldMillis()).isGreaterThanOrEqualTo(20);
+		assertThat(graph.getContended()).contains(heldLock);
+		assertThat(graph.getWaitsFor()).containsEntry(heldLock.getWaiters().get(0), List.of(heldLock.getOwner()));
+		assertThat(graph.getDeadlocks()).isEmpty();
+
+		release.countDown();
+		holder.get(10, TimeUnit.SECONDS);
+		waiter.get(10, TimeUnit.SECONDS);
+		assertThat(lockDiagnostics.dump(100).getLongestHeld())
+				.noneMatch(held -> held.getAccountId().startsWith(prefix));
+	}
+
+	/**
+	 * Test method which checks that threads locking, trying and releasing the
+	 * same account while its wrapper is removed and created again never hold
+	 * the lock at the same time.
+	 */
+	@Test
+	void excludes_threads_while_wrappers_are_removed() throws Exception {
+		String accountId = prefix + 3;
+		AtomicInteger holders = new AtomicInteger();
+		AtomicInteger overlaps = new AtomicInteger();
+		List<Future<?>> workers = new ArrayList<>();
+		for (int t = 0; t < 8; t++) {
+			boolean trying = t % 2 == 0;
+			workers.add(executor.submit(() -> {
+				for (int i = 0; i < 20000; i++) {
+					if (trying) {
+						if (!lockUtilByAccountNo.tryLock(accountId)) {
+							continue;
+						}
+					} else {
+						lockUtilByAccountNo.lock(accountId);
+					}
+					try {
+						if (holders.incrementAndGet() != 1) {
+							overlaps.incrementAndGet();
+						}
+						holders.decrementAndGet();
+					} finally {
+						lockUtilByAccountNo.unlock(accountId);
+					}
+				}
+				return null;
+			}));
+		}
+		for (Future<?> worker : workers) {
+			worker.get(60, TimeUnit.SECONDS);
+		}
+
+		assertThat(overlaps).hasValue(0);
+		assertThat(lockUtilByAccountNo.isLockAquired(accountId)).isFalse();
+	}
+
+	@Test
+	void finds_wait_for_cycles() {
+		Map<String, List<String>> waitsFor = Map.of("t1", List.of("t2"), "t2", List.of("t3"), "t3", List.of("t1"),
+				"t4", List.of("t1"));
+
+		List<List<String>> cycles = LockDiagnostics.findCycles(waitsFor);
+		assertThat(cycles).hasSize(1);
+		assertThat(cycles.get(0)).containsExactlyInAnyOrder("t1", "t2", "t3");
+	}
+
+	/**
+	 * Test method which checks the flight recorder events of a held lock and
+	 * of a busy lock.
+	 */
+	@Test
+	void records_lock_events() throws Exception {
+		Path file = Files.createTempFile("locks", ".jfr");
+		try (Recording recording = new Recording()) {
+			recording.enable("com.dws.challenge.AccountLockHeld").withThreshold(Duration.ZERO);
+			recording.enable("com.dws.challenge.AccountLockBusy");
+			recording.start();
+			CountDownLatch locked = new CountDownLatch(1);
+			CountDownLatch release = new CountDownLatch(1);
+			Future<?> holder = hold(prefix + 2, locked, release);
+			assertThat(locked.await(10, TimeUnit.SECONDS)).isTrue();
+			assertThat(lockUtilByAccountNo.tryLock(prefix + 2)).isFalse();
+			release.countDown();
+			holder.get(10, TimeUnit.SECONDS);
+			recording.stop();
+			recording.dump(file);
+		}
+		List<RecordedEvent> events = RecordingFile.readAllEvents(file).stream()
+				.filter(event -> (prefix + 2).equals(event.getString("accountId"))).collect(Collectors.toList());
+		Files.delete(file);
+
+		assertThat(events).extracting(event -> event.getEventType().getName())
+				.containsExactlyInAnyOrder("com.dws.challenge.AccountLockBusy", "com.dws.challenge.AccountLockHeld");
+	}
+}
@@ -0,0 +1,153 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static org.springframework.test.web.servlet.setup.MockMvcBuilders.webAppContextSetup;
+
+import java.math.BigDecimal;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.web.context.WebApplicationContext;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.service.AccountsService;
+import com.dws.challenge.util.LockUtilByAccountNo;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest
+@WebAppConfiguration
+class MultiLegControllerTest {
+
+	private MockMvc mockMvc;
+
+	@Autowired
+	private AccountsService accountsService;
+
+	@Autowired
+	private LockUtilByAccountNo lockUtilByAccountNo;
+
+	@Autowired
+	private WebApplicationContext webApplicationContext;
+
+	private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+	/**
+	 * Fresh account ids per test, velocity limits and locks outlive a test.
+	 */
+	private String prefix;
+
+	@BeforeEach
+	void prepareMockMvc() {
+		this.mockMvc = webAppContextSetup(this.webApplicationContext).build();
+		prefix = "Id-M" + System.nanoTime() + "-";
+		accountsService.getAccountsRepository().clearAccounts();
+		accountsService.createAccount(new Account(prefix + "payer", new BigDecimal(2000000)));
+		accountsService.createAccount(new Account(prefix + "merchant", new BigDecimal(0)));
+		accountsService.createAccount(new Account(prefix + "fee", new BigDecimal(0)));
+	}
+
+	@AfterEach
+	void shutdown() {
+		executor.shutdownNow();
+	}
+
+	private ResultActions transfer(String to, String amount, String feeAmount) throws Exception {
+		String legs = "{\"legs\":[{\"fromAccountId\":\"" + prefix + "payer\",\"toAccountId\":\"" + prefix + to
+				+ "\",\"balance\":" + amount + "},{\"fromAccountId\":\"" + prefix + "payer\",\"toAccountId\":\""
+				+ prefix + "fee\",\"balance\":" + feeAmount + "}]}";
+		return this.mockMvc.perform(
+				post("/v1/accounts/transferAmount/multi-leg").contentType(MediaType.APPLICATION_JSON).content(legs));
+	}
+
+	private BigDecimal balance(String account) {
+		return accountsService.getAccount(prefix + account).getBalance();
+	}
+
+	@Test
+	void transferMultiLeg() throws Exception {
+		transfer("merchant", "100", "2").andExpect(status().isAccepted());
+
+		assertThat(balance("payer")).isEqualByComparingTo("1999898");
+		assertThat(balance("merchant")).isEqualByComparingTo("100");
+		assertThat(balance("fee")).isEqualByComparingTo("2");
+	}
+
+	@Test
+	void transferMultiLegAccountNotExists() throws Exception {
+		transfer("unknown", "100", "2").andExpect(status().isNotFound());
+
+		assertThat(balance("payer")).isEqualByComparingTo("2000000");
+		assertThat(balance("fee")).isEqualByComparingTo("0");
+	}
+
+	/**
+	 * Test method which checks that the legs are checked against the net
+	 * debit of an account, not leg by leg.
+	 */
+	@Test
+	void transferMultiLegInsufficientBalance() throws Exception {
+		transfer("merchant", "1999999", "2").andExpect(status().isNotAcceptable());
+
+		assertThat(balance("payer")).isEqualByComparingTo("2000000");
+		assertThat(balance("merchant")).isEqualByComparingTo("0");
+	}
+
+	@Test
+	void transferMultiLegAccountBusy() throws Exception {
+		CountDownLatch locked = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		Future<?> holder = executor.submit(() -> {
+			lockUtilByAccountNo.lock(prefix + "fee");
+			try {
+				locked.countDown();
+				release.await(10, TimeUnit.SECONDS);
+			} finally {
+				lockUtilByAccountNo.unlock(prefix + "fee");
+			}
+			return null;
+		});
+		assertThat(locked.await(10, TimeUnit.SECONDS)).isTrue();
+		try {
+			transfer("merchant", "100", "2").andExpect(status().isConflict());
+		} finally {
+			release.countDown();
+			holder.get(10, TimeUnit.SECONDS);
+		}
+
+		assertThat(balance("payer")).isEqualByComparingTo("2000000");
+	}
+
+	/**
+	 * Test method which checks that the net debit of the legs counts against
+	 * the hourly velocity limit of 1000000.
+	 */
+	@Test
+	void transferMultiLegVelocityLimitExceeded() throws Exception {
+		transfer("merchant", "999999", "2").andExpect(status().isUnprocessableEntity());
+
+		assertThat(balance("payer")).isEqualByComparingTo("2000000");
+		assertThat(balance("merchant")).isEqualByComparingTo("0");
+	}
+
+	@Test
+	void transferMultiLegNoLegs() throws Exception {
+		this.mockMvc.perform(post("/v1/accounts/transferAmount/multi-leg").contentType(MediaType.APPLICATION_JSON)
+				.content("{\"legs\":[]}")).andExpect(status().isBadRequest());
+	}
+}
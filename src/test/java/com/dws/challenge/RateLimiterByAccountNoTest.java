@@ -0,0 +1,146 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import org.junit.jupiter.api.Test;
+
+import com.dws.challenge.config.RateLimitProperties;
+import com.dws.challenge.exception.RateLimitExceededException;
+import com.dws.challenge.util.RateLimiterByAccountNo;
+
+class RateLimiterByAccountNoTest {
+
+	private static RateLimitProperties properties(int capacity, int maxConcurrent) {
+		RateLimitProperties properties = new RateLimitProperties();
+		properties.setMaxConcurrentTransfers(maxConcurrent);
+		properties.getDefaultClass().setCapacity(capacity);
+		properties.getDefaultClass().setRefillPerSecond(1);
+		return properties;
+	}
+
+	/**
+	 * Test method which checks the burst capacity of an account and that other
+	 * accounts are not affected.
+	 */
+	@Test
+	void rejects_after_burst_capacity() {
+		RateLimiterByAccountNo rateLimiter = new RateLimiterByAccountNo(properties(3, 100));
+
+		for (int i = 0; i < 3; i++) {
+			rateLimiter.acquire("Id-R001");
+			rateLimiter.release();
+		}
+		try {
+			rateLimiter.acquire("Id-R001");
+			fail("Should have failed after the burst capacity is used");
+		} catch (RateLimitExceededException rle) {
+			assertThat(rle.getRetryAfterSeconds()).isGreaterThanOrEqualTo(1);
+		}
+
+		rateLimiter.acquire("Id-R002");
+		rateLimiter.release();
+	}
+
+	/**
+	 * Test method which checks the account class selected by account id prefix.
+	 */
+	@Test
+	void account_class_by_prefix() {
+		RateLimitProperties properties = properties(1, 100);
+		RateLimitProperties.AccountClass corporate = new RateLimitProperties.AccountClass();
+		corporate.setAccountPrefix("CORP-");
+		corporate.setCapacity(5);
+		corporate.setRefillPerSecond(1);
+		properties.getClasses().put("corporate", corporate);
+		RateLimiterByAccountNo rateLimiter = new RateLimiterByAccountNo(properties);
+
+		for (int i = 0; i < 5; i++) {
+			rateLimiter.acquire("CORP-001");
+			rateLimiter.release();
+		}
+		rateLimiter.acquire("Id-R003");
+		rateLimiter.release();
+		try {
+			rateLimiter.acquire("Id-R003");
+			fail("Should have failed for the default account class");
+		} catch (RateLimitExceededException rle) {
+			assertThat(rle.getMessage()).contains("Id-R003");
+		}
+	}
+
+	/**
+	 * Test method which checks the global concurrency limit.
+	 */
+	@Test
+	void rejects_over_concurrency_limit() {
+		RateLimiterByAccountNo rateLimiter = new RateLimiterByAccountNo(properties(10, 1));
+
+		rateLimiter.acquire("Id-R004");
+		try {
+			rateLimiter.acquire("Id-R005");
+			fail("Should have failed while another transfer is in progress");
+		} catch (RateLimitExceededException rle) {
+			assertThat(rle.getRetryAfterSeconds()).isEqualTo(1);
+		}
+		rateLimiter.release();
+		rateLimiter.acquire("Id-R005");
+		rateLimiter.release();
+	}
+
+	/**
+	 * Test method which checks that refilled buckets are evicted.
+	 */
+	@Test
+	void evicts_idle_buckets() throws Exception {
+		RateLimitProperties properties = properties(1, 100);
+		properties.getDefaultClass().setRefillPerSecond(1000);
+		RateLimiterByAccountNo rateLimiter = new RateLimiterByAccountNo(properties);
+
+		rateLimiter.acquire("Id-R006");
+		rateLimiter.release();
+		assertThat(rateLimiter.trackedAccounts()).isEqualTo(1);
+
+		Thread.sleep(20);
+		rateLimiter.evictIdle();
+		assertThat(rateLimiter.trackedAccounts()).isZero();
+	}
+
+	/**
+	 * Test method which checks that a transfer rejected for its to account
+	 * gives the token of its from account back.
+	 */
+	@Test
+	void refunds_tokens_of_rejected_transfer() {
+		RateLimiterByAccountNo rateLimiter = new RateLimiterByAccountNo(properties(2, 100));
+		rateLimiter.acquire("Id-R006");
+		rateLimiter.release();
+		rateLimiter.acquire("Id-R006");
+		rateLimiter.release();
+
+		for (int i = 0; i < 5; i++) {
+			try {
+				rateLimiter.acquire("Id-R005", "Id-R006");
+				fail("Should have failed for the drained to account");
+			} catch (RateLimitExceededException rle) {
+				assertThat(rle.getMessage()).contains("Id-R006");
+			}
+		}
+		rateLimiter.acquire("Id-R005");
+		rateLimiter.release();
+		rateLimiter.acquire("Id-R005");
+		rateLimiter.release();
+	}
+
+	/**
+	 * Test method which checks that an account listed twice takes one token.
+	 */
+	@Test
+	void takes_one_token_per_distinct_account() {
+		RateLimiterByAccountNo rateLimiter = new RateLimiterByAccountNo(properties(2, 100));
+		rateLimiter.acquire("Id-R007", "Id-R007");
+		rateLimiter.release();
+		rateLimiter.acquire("Id-R007");
+		rateLimiter.release();
+	}
+}
@@ -0,0 +1,149 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.AccountTransfer;
+import com.dws.challenge.exception.ReadOnlyReplicaException;
+import com.dws.challenge.replication.ReplicationFollower;
+import com.dws.challenge.replication.ReplicationPrimary;
+import com.dws.challenge.service.AccountsService;
+
+/**
+ * Runs a primary and a follower in process and checks that committed changes
+ * reach the follower.
+ */
+class ReplicationTest {
+
+	private static ConfigurableApplicationContext primary;
+
+	private static ConfigurableApplicationContext follower;
+
+	private static int replicationPort;
+
+	@BeforeAll
+	static void startNodes() throws Exception {
+		try (ServerSocket socket = new ServerSocket(0)) {
+			replicationPort = socket.getLocalPort();
+		}
+		primary = new SpringApplicationBuilder(ChallengeApplication.class).properties("server.port=0",
+				"replication.role=PRIMARY", "replication.port=" + replicationPort, "replication.sync-commit=true").run();
+		follower = new SpringApplicationBuilder(ChallengeApplication.class).properties("server.port=0",
+				"replication.role=FOLLOWER", "replication.primary-port=" + replicationPort).run();
+
+		awaitFollowers(1);
+	}
+
+	private static void awaitFollowers(int count) throws InterruptedException {
+		ReplicationPrimary replicationPrimary = primary.getBean(ReplicationPrimary.class);
+		for (int i = 0; i < 100 && replicationPrimary.getFollowerCount() < count; i++) {
+			Thread.sleep(50);
+		}
+		assertThat(replicationPrimary.getFollowerCount()).isEqualTo(count);
+	}
+
+	@AfterAll
+	static void stopNodes() throws IOException {
+		follower.close();
+		primary.close();
+	}
+
+	/**
+	 * Test method which checks that with sync commit a transfer is applied on the
+	 * follower once it returns on the primary.
+	 */
+	@Test
+	void follower_applies_committed_transfer() {
+		AccountsService primaryService = primary.getBean(AccountsService.class);
+		AccountsService followerService = follower.getBean(AccountsService.class);
+
+		primaryService.createAccount(new Account("Id-P001", new BigDecimal(1000)));
+		primaryService.createAccount(new Account("Id-P002", new BigDecimal(500)));
+		primaryService.transferAmount(new AccountTransfer("Id-P001", "Id-P002", new BigDecimal(250)));
+
+		assertThat(followerService.getAccount("Id-P001").getBalance()).isEqualByComparingTo("750");
+		assertThat(followerService.getAccount("Id-P002").getBalance()).isEqualByComparingTo("750");
+	}
+
+	/**
+	 * Test method which checks that a follower rejects changes.
+	 */
+	@Test
+	void follower_is_read_only() {
+		try {
+			follower.getBean(AccountsService.class).createAccount(new Account("Id-P003", new BigDecimal(10)));
+			fail("Should have failed on a read-only replica");
+		} catch (ReadOnlyReplicaException rore) {
+			assertThat(rore.getMessage()).contains("read-only");
+		}
+	}
+
+	/**
+	 * Test method which checks that a follower which never acknowledges does not
+	 * keep the account locks of a sync commit: a second transfer of the same
+	 * accounts succeeds while the first one still waits for the ack.
+	 */
+	@Test
+	void sync_commit_waits_for_acks_outside_account_locks() throws Exception {
+		AccountsService primaryService = primary.getBean(AccountsService.class);
+		primaryService.createAccount(new Account("Id-P010", new BigDecimal(1000)));
+		primaryService.createAccount(new Account("Id-P011", new BigDecimal(0)));
+
+		try (Socket silentFollower = new Socket("localhost", replicationPort)) {
+			awaitFollowers(2);
+			CompletableFuture<Boolean> waiting = CompletableFuture.supplyAsync(() -> primaryService
+					.transferAmount(new AccountTransfer("Id-P010", "Id-P011", new BigDecimal(100))));
+			Thread.sleep(200);
+			assertThat(waiting).isNotDone();
+
+			assertThat(primaryService.transferAmount(new AccountTransfer("Id-P010", "Id-P011", new BigDecimal(100))))
+					.isTrue();
+			assertThat(waiting.get(5, TimeUnit.SECONDS)).isTrue();
+		}
+		awaitFollowers(1);
+		assertThat(primaryService.getAccount("Id-P011").getBalance()).isEqualByComparingTo("200");
+	}
+
+	/**
+	 * Test method which checks that a promoted follower accepts changes and no
+	 * longer applies the stream of the old primary.
+	 */
+	@Test
+	void promoted_follower_accepts_changes() throws Exception {
+		ConfigurableApplicationContext standby = new SpringApplicationBuilder(ChallengeApplication.class).properties(
+				"server.port=0", "replication.role=FOLLOWER", "replication.primary-port=" + replicationPort).run();
+		try {
+			awaitFollowers(2);
+			AccountsService primaryService = primary.getBean(AccountsService.class);
+			AccountsService standbyService = standby.getBean(AccountsService.class);
+			primaryService.createAccount(new Account("Id-P020", new BigDecimal(300)));
+			assertThat(standbyService.getAccount("Id-P020").getBalance()).isEqualByComparingTo("300");
+
+			ReplicationFollower replicationFollower = standby.getBean(ReplicationFollower.class);
+			assertThat(replicationFollower.promote()).isTrue();
+			assertThat(replicationFollower.promote()).isFalse();
+			awaitFollowers(1);
+
+			standbyService.createAccount(new Account("Id-P021", new BigDecimal(10)));
+			primaryService.createAccount(new Account("Id-P022", new BigDecimal(20)));
+			assertThat(standbyService.getAccount("Id-P021").getBalance()).isEqualByComparingTo("10");
+			assertThat(standbyService.getAccount("Id-P022")).isNull();
+		} finally {
+			standby.close();
+		}
+	}
+}
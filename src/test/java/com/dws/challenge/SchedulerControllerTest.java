@@ -0,0 +1,112 @@
+package com.dws.challenge;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static org.springframework.test.web.servlet.setup.MockMvcBuilders.webAppContextSetup;
+
+import java.math.BigDecimal;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.web.context.WebApplicationContext;
+
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.scheduling.Lane;
+import com.dws.challenge.scheduling.TransferScheduler;
+import com.dws.challenge.service.AccountsService;
+
+/**
+ * Checks how the priority lane headers of a transfer are answered and the
+ * lane statistics endpoint.
+ */
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(properties = { "transfer.scheduler.lanes.bulk.max-concurrent=1",
+		"transfer.scheduler.lanes.bulk.queue-timeout-millis=100", "transfer.scheduler.api-key-lanes.back-office=BULK" })
+@WebAppConfiguration
+class SchedulerControllerTest {
+
+	private static final String TRANSFER = "{\"fromAccountId\":\"Id-L001\",\"toAccountId\":\"Id-L002\",\"balance\":10}";
+
+	private MockMvc mockMvc;
+
+	@Autowired
+	private AccountsService accountsService;
+
+	@Autowired
+	private TransferScheduler transferScheduler;
+
+	@Autowired
+	private WebApplicationContext webApplicationContext;
+
+	@BeforeEach
+	void prepareMockMvc() {
+		this.mockMvc = webAppContextSetup(this.webApplicationContext).build();
+
+		accountsService.getAccountsRepository().clearAccounts();
+		accountsService.createAccount(new Account("Id-L001", new BigDecimal(1000)));
+		accountsService.createAccount(new Account("Id-L002", new BigDecimal(0)));
+		transferScheduler.resetStatistics();
+	}
+
+	@Test
+	void unknownLaneIsBadRequest() throws Exception {
+		this.mockMvc.perform(post("/v1/accounts/transferAmount").contentType(MediaType.APPLICATION_JSON)
+				.header(TransferScheduler.LANE_HEADER, "urgent").content(TRANSFER)).andExpect(status().isBadRequest());
+	}
+
+	/**
+	 * Test method which checks that a transfer mapped to a saturated lane by its
+	 * API key gets 503 and is counted as rejected.
+	 */
+	@Test
+	void saturatedLaneIsServiceUnavailable() throws Exception {
+		CountDownLatch running = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		CompletableFuture<Boolean> holder = CompletableFuture
+				.supplyAsync(() -> transferScheduler.execute(Lane.BULK, () -> {
+					running.countDown();
+					try {
+						return release.await(10, TimeUnit.SECONDS);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						return false;
+					}
+				}));
+		try {
+			running.await(5, TimeUnit.SECONDS);
+			this.mockMvc
+					.perform(post("/v1/accounts/transferAmount").contentType(MediaType.APPLICATION_JSON)
+							.header(TransferScheduler.API_KEY_HEADER, "back-office").content(TRANSFER))
+					.andExpect(status().isServiceUnavailable());
+		} finally {
+			release.countDown();
+			holder.get(5, TimeUnit.SECONDS);
+		}
+
+		this.mockMvc.perform(get("/v1/scheduler/lanes")).andExpect(status().isOk())
+				.andExpect(jsonPath("$[?(@.lane == 'BULK')].rejected").value(1));
+	}
+
+	@Test
+	void lanesReportCompletedTransfers() throws Exception {
+		this.mockMvc.perform(post("/v1/accounts/transferAmount").contentType(MediaType.APPLICATION_JSON)
+				.header(TransferScheduler.LANE_HEADER, "interactive").content(TRANSFER)).andExpect(status().isAccepted());
+
+		this.mockMvc.perform(get("/v1/scheduler/lanes")).andExpect(status().isOk())
+				.andExpect(jsonPath("$.length()").value(Lane.values().length))
+				.andExpect(jsonPath("$[?(@.lane == 'INTERACTIVE')].completed").value(1))
+				.andExpect(jsonPath("$[?(@.lane == 'STANDARD')].completed").value(0));
+	}
+}
@@ -0,0 +1,219 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.SequenceInputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import com.dws.challenge.config.ExportProperties;
+import com.dws.challenge.domain.Account;
+import com.dws.challenge.domain.AccountTransfer;
+import com.dws.challenge.export.AccountSnapshot;
+import com.dws.challenge.export.ExportFormat;
+import com.dws.challenge.export.SnapshotExporter;
+import com.dws.challenge.repository.AccountsRepositoryInMemory;
+import com.dws.challenge.service.AccountsService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+@ExtendWith(SpringExtension.class)
+@SpringBootTest(properties = "export.segment-rows=7")
+class SnapshotExporterTest {
+
+	private static final int ACCOUNTS = 30;
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+
+	@Autowired
+	private AccountsService accountsService;
+
+	@Autowired
+	private SnapshotExporter snapshotExporter;
+
+	/**
+	 * Fresh account ids per test, locks are kept across application contexts.
+	 */
+	private String prefix;
+
+	@BeforeEach
+	void createAccounts() {
+		prefix = "Id-E" + System.nanoTime() + "-";
+		accountsService.getAccountsRepository().clearAccounts();
+		for (int i = 0; i < ACCOUNTS; i++) {
+			accountsService.createAccount(new Account(prefix + i, new BigDecimal(1000)));
+		}
+	}
+
+	/**
+	 * Concatenated segments, one gzip member each.
+	 */
+	private static InputStream segments(AccountSnapshot snapshot) throws IOException {
+		List<InputStream> segments = new ArrayList<>();
+		for (Path segment : snapshot.getSegments()) {
+			segments.add(Files.newInputStream(segment));
+		}
+		return new GZIPInputStream(new SequenceInputStream(Collections.enumeration(segments)));
+	}
+
+	private Map<String, BigDecimal> readNdjson(AccountSnapshot snapshot) throws IOException {
+		Map<String, BigDecimal> balances = new LinkedHashMap<>();
+		try (BufferedReader reader = new BufferedReader(
+				new InputStreamReader(segments(snapshot), StandardCharsets.UTF_8))) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				JsonNode node = objectMapper.readTree(line);
+				balances.put(node.get("accountId").asText(), node.get("balance").decimalValue());
+			}
+		}
+		return balances;
+	}
+
+	private static Map<String, BigDecimal> readColumnar(AccountSnapshot snapshot) throws IOException {
+		Map<String, BigDecimal> balances = new LinkedHashMap<>();
+		for (Path segment : snapshot.getSegments()) {
+			try (DataInputStream in = new DataInputStream(new GZIPInputStream(Files.newInputStream(segment)))) {
+				assertThat(in.readInt()).isEqualTo(ExportFormat.COLUMNAR_MAGIC);
+				int rows = in.readInt();
+				List<String> accountIds = new ArrayList<>();
+				for (int i = 0; i < rows; i++) {
+					accountIds.add(in.readUTF());
+				}
+				for (String accountId : accountIds) {
+					int scale = in.readInt();
+					byte[] unscaled = new byte[in.readInt()];
+					in.readFully(unscaled);
+					balances.put(accountId, new BigDecimal(new BigInteger(unscaled), scale));
+				}
+			}
+		}
+		return balances;
+	}
+
+	/**
+	 * Test method which checks that a snapshot failing while the repository
+	 * streams the balances leaves no files behind.
+	 */
+	@Test
+	void removes_files_of_failed_snapshot(@TempDir Path directory) throws Exception {
+		AccountsRepositoryInMemory repository = new AccountsRepositoryInMemory() {
+			@Override
+			public void forEachBalance(BiConsumer<String, BigDecimal> consumer) {
+				for (int i = 0; i < 10; i++) {
+					consumer.accept("Id-F" + i, BigDecimal.ONE);
+				}
+				throw new IllegalStateException("scan failed");
+			}
+		};
+		ExportProperties properties = new ExportProperties();
+		properties.setDirectory(directory.toString());
+		properties.setSegmentRows(7);
+		SnapshotExporter exporter = new SnapshotExporter(repository, properties);
+
+		for (ExportFormat format : ExportFormat.values()) {
+			assertThatThrownBy(() -> exporter.snapshot(format)).isInstanceOf(IllegalStateException.class);
+		}
+		try (Stream<Path> files = Files.list(directory)) {
+			assertThat(files).isEmpty();
+		}
+	}
+
+	private static BigDecimal total(Map<String, BigDecimal> balances) {
+		return balances.values().stream().reduce(BigDecimal.ZERO, BigDecimal::add);
+	}
+
+	@Test
+	void writes_segments_in_both_formats() throws Exception {
+		accountsService.credit(prefix + 0, new BigDecimal("0.25"));
+
+		Path directory;
+		try (AccountSnapshot snapshot = snapshotExporter.snapshot(ExportFormat.NDJSON)) {
+			directory = snapshot.getDirectory();
+			assertThat(snapshot.getAccounts()).isEqualTo(ACCOUNTS);
+			assertThat(snapshot.getSegments()).hasSize(5);
+			Map<String, BigDecimal> balances = readNdjson(snapshot);
+			assertThat(balances).hasSize(ACCOUNTS);
+			assertThat(balances.get(prefix + 0)).isEqualByComparingTo("1000.25");
+		}
+		assertThat(directory).doesNotExist();
+
+		try (AccountSnapshot snapshot = snapshotExporter.snapshot(ExportFormat.COLUMNAR)) {
+			Map<String, BigDecimal> balances = readColumnar(snapshot);
+			assertThat(balances).hasSize(ACCOUNTS);
+			assertThat(balances.get(prefix + 0)).isEqualByComparingTo("1000.25");
+			assertThat(balances.get(prefix + 1)).isEqualByComparingTo("1000");
+		}
+	}
+
+	/**
+	 * Test method which checks that snapshots taken during concurrent
+	 * transfers always hold the same total, i.e. no transfer is seen halfway.
+	 */
+	@Test
+	void snapshots_are_consistent_during_concurrent_transfers() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		AtomicBoolean running = new AtomicBoolean(true);
+		List<Future<?>> transfers = new ArrayList<>();
+		for (int t = 0; t < 4; t++) {
+			transfers.add(executor.submit(() -> {
+				ThreadLocalRandom random = ThreadLocalRandom.current();
+				while (running.get()) {
+					int from = random.nextInt(ACCOUNTS);
+					int to = (from + 1 + random.nextInt(ACCOUNTS - 1)) % ACCOUNTS;
+					try {
+						accountsService.transferAmount(
+								new AccountTransfer(prefix + from, prefix + to, new BigDecimal(random.nextInt(1, 50))));
+					} catch (RuntimeException e) {
+						// busy, insufficient balance or velocity limit
+					}
+				}
+			}));
+		}
+		try {
+			for (int i = 0; i < 50; i++) {
+				try (AccountSnapshot snapshot = snapshotExporter.snapshot(ExportFormat.NDJSON)) {
+					Map<String, BigDecimal> balances = readNdjson(snapshot);
+					assertThat(balances).hasSize(ACCOUNTS);
+					assertThat(total(balances)).isEqualByComparingTo(new BigDecimal(ACCOUNTS * 1000));
+				}
+			}
+		} finally {
+			running.set(false);
+			for (Future<?> transfer : transfers) {
+				transfer.get(1, TimeUnit.MINUTES);
+			}
+			executor.shutdown();
+		}
+	}
+}
@@ -0,0 +1,179 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import com.dws.challenge.config.SchedulerProperties;
+import com.dws.challenge.config.SchedulerProperties.LaneSettings;
+import com.dws.challenge.exception.LaneSaturatedException;
+import com.dws.challenge.scheduling.Lane;
+import com.dws.challenge.scheduling.LaneStatistics;
+import com.dws.challenge.scheduling.TransferScheduler;
+
+class TransferSchedulerTest {
+
+	private final ExecutorService executor = Executors.newCachedThreadPool();
+
+	@AfterEach
+	void shutdown() {
+		executor.shutdownNow();
+	}
+
+	private static TransferScheduler scheduler(int maxConcurrent, int bulkMaxConcurrent, long queueTimeoutMillis) {
+		SchedulerProperties properties = new SchedulerProperties();
+		properties.setMaxConcurrent(maxConcurrent);
+		properties.getLanes().put(Lane.INTERACTIVE, new LaneSettings(8, maxConcurrent, 50, queueTimeoutMillis));
+		properties.getLanes().put(Lane.STANDARD, new LaneSettings(4, maxConcurrent, 50, queueTimeoutMillis));
+		properties.getLanes().put(Lane.BULK, new LaneSettings(1, bulkMaxConcurrent, 50, queueTimeoutMillis));
+		properties.getApiKeyLanes().put("back-office", Lane.BULK);
+		return new TransferScheduler(properties);
+	}
+
+	private static LaneStatistics statistics(TransferScheduler scheduler, Lane lane) {
+		return scheduler.getStatistics().stream().filter(s -> s.getLane() == lane).findFirst().orElseThrow();
+	}
+
+	private Future<Boolean> hold(TransferScheduler scheduler, Lane lane, CountDownLatch release) {
+		return executor.submit(() -> scheduler.execute(lane, () -> {
+			try {
+				return release.await(10, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return false;
+			}
+		}));
+	}
+
+	private static void awaitQueued(TransferScheduler scheduler, int queued) throws InterruptedException {
+		for (int i = 0; i < 500; i++) {
+			int current = scheduler.getStatistics().stream().mapToInt(LaneStatistics::getQueued).sum();
+			if (current == queued) {
+				return;
+			}
+			Thread.sleep(10);
+		}
+		fail("Expected " + queued + " queued transfers");
+	}
+
+	/**
+	 * Test method which checks that waiting lanes share the slots by weight.
+	 */
+	@Test
+	void shares_slots_by_weight() throws Exception {
+		TransferScheduler scheduler = scheduler(1, 1, 10000);
+		CountDownLatch release = new CountDownLatch(1);
+		Future<Boolean> holder = hold(scheduler, Lane.STANDARD, release);
+		awaitQueued(scheduler, 0);
+		Thread.sleep(50);
+
+		List<Lane> started = Collections.synchronizedList(new ArrayList<>());
+		List<Future<?>> waiting = new ArrayList<>();
+		for (int i = 0; i < 8; i++) {
+			for (Lane lane : List.of(Lane.BULK, Lane.INTERACTIVE)) {
+				waiting.add(executor.submit(() -> scheduler.execute(lane, () -> started.add(lane))));
+			}
+		}
+		awaitQueued(scheduler, 16);
+		release.countDown();
+		assertThat(holder.get(10, TimeUnit.SECONDS)).isTrue();
+		for (Future<?> future : waiting) {
+			future.get(10, TimeUnit.SECONDS);
+		}
+
+		long interactiveFirst = started.subList(0, 9).stream().filter(lane -> lane == Lane.INTERACTIVE).count();
+		assertThat(interactiveFirst).isGreaterThanOrEqualTo(7);
+		assertThat(statistics(scheduler, Lane.INTERACTIVE).getCompleted()).isEqualTo(8);
+		assertThat(statistics(scheduler, Lane.BULK).getCompleted()).isEqualTo(8);
+	}
+
+	/**
+	 * Test method which checks that a saturated bulk lane leaves the slots to
+	 * interactive transfers.
+	 */
+	@Test
+	void limits_lane_concurrency() throws Exception {
+		TransferScheduler scheduler = scheduler(10, 2, 10000);
+		CountDownLatch release = new CountDownLatch(1);
+		List<Future<Boolean>> bulk = new ArrayList<>();
+		for (int i = 0; i < 6; i++) {
+			bulk.add(hold(scheduler, Lane.BULK, release));
+		}
+		awaitQueued(scheduler, 4);
+
+		assertThat(statistics(scheduler, Lane.BULK).getRunning()).isEqualTo(2);
+		assertThat(scheduler.execute(Lane.INTERACTIVE, () -> "done")).isEqualTo("done");
+
+		release.countDown();
+		for (Future<Boolean> future : bulk) {
+			assertThat(future.get(10, TimeUnit.SECONDS)).isTrue();
+		}
+		assertThat(statistics(scheduler, Lane.BULK).getCompleted()).isEqualTo(6);
+	}
+
+	/**
+	 * Test method which checks that a transfer waiting longer than the lane
+	 * timeout is rejected.
+	 */
+	@Test
+	void rejects_after_queue_timeout() throws Exception {
+		TransferScheduler scheduler = scheduler(10, 1, 50);
+		CountDownLatch release = new CountDownLatch(1);
+		Future<Boolean> holder = hold(scheduler, Lane.BULK, release);
+		awaitQueued(scheduler, 0);
+		Thread.sleep(50);
+
+		try {
+			scheduler.execute(Lane.BULK, () -> true);
+			fail("Should have been rejected after the queue timeout");
+		} catch (LaneSaturatedException lse) {
+			assertThat(lse.getMessage()).isEqualTo("No execution slot in the bulk lane within 50 ms. Please try after sometime.");
+		}
+		release.countDown();
+		assertThat(holder.get(10, TimeUnit.SECONDS)).isTrue();
+		assertThat(statistics(scheduler, Lane.BULK).getRejected()).isEqualTo(1);
+	}
+
+	@Test
+	void selects_lane_by_api_key_then_header() {
+		TransferScheduler scheduler = scheduler(10, 1, 50);
+
+		assertThat(scheduler.laneOf("interactive", "back-office")).isEqualTo(Lane.BULK);
+		assertThat(scheduler.laneOf("Interactive", "unknown-key")).isEqualTo(Lane.INTERACTIVE);
+		assertThat(scheduler.laneOf(null, null)).isEqualTo(Lane.STANDARD);
+		try {
+			scheduler.laneOf("urgent", null);
+			fail("Should have failed for an unknown lane");
+		} catch (IllegalArgumentException iae) {
+			assertThat(iae.getMessage()).isEqualTo("Unknown priority lane urgent.");
+		}
+	}
+
+	/**
+	 * Test method which checks that lane queues able to hold every request
+	 * thread are refused at startup.
+	 */
+	@Test
+	void rejects_queues_exceeding_request_threads() {
+		SchedulerProperties properties = new SchedulerProperties();
+		properties.getLanes().put(Lane.BULK, new LaneSettings(1, 4, 10000, 30000));
+		try {
+			new TransferScheduler(properties);
+			fail("Should have failed for a bulk queue above the request threads");
+		} catch (IllegalStateException ise) {
+			assertThat(ise.getMessage()).isEqualTo(
+					"Transfer scheduler slots and lane queues hold up to 10144 request threads, there are only 200");
+		}
+	}
+}
@@ -0,0 +1,206 @@
+package com.dws.challenge;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.math.BigDecimal;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import org.junit.jupiter.api.Test;
+
+import com.dws.challenge.config.VelocityProperties;
+import com.dws.challenge.exception.VelocityLimitExceededException;
+import com.dws.challenge.velocity.VelocityLimiter;
+
+class VelocityLimiterTest {
+
+	/**
+	 * Clock moved by the test.
+	 */
+	private static final class TestClock extends Clock {
+
+		private long millis = Duration.ofDays(1000).toMillis();
+
+		@Override
+		public ZoneId getZone() {
+			return ZoneOffset.UTC;
+		}
+
+		@Override
+		public Clock withZone(ZoneId zone) {
+			return this;
+		}
+
+		@Override
+		public Instant instant() {
+			return Instant.ofEpochMilli(millis);
+		}
+
+		private void advance(Duration duration) {
+			millis += duration.toMillis();
+		}
+	}
+
+	private final TestClock clock = new TestClock();
+
+	private VelocityLimiter limiter(int maxCount, String maxAmount, int maxTrackedAccounts) {
+		VelocityProperties.Rule hourly = new VelocityProperties.Rule();
+		hourly.setName("hourly");
+		hourly.setWindow(Duration.ofHours(1));
+		hourly.setBuckets(12);
+		hourly.setMaxCount(maxCount);
+		hourly.setMaxAmount(maxAmount != null ? new BigDecimal(maxAmount) : null);
+		VelocityProperties properties = new VelocityProperties();
+		properties.getRules().add(hourly);
+		properties.setMaxTrackedAccounts(maxTrackedAccounts);
+		return new VelocityLimiter(properties, clock);
+	}
+
+	private static void transfer(VelocityLimiter limiter, String accountId, String amount) {
+		limiter.check(accountId, new BigDecimal(amount));
+		limiter.record(accountId, new BigDecimal(amount));
+	}
+
+	/**
+	 * Test method which checks the count limit and that the window slides.
+	 */
+	@Test
+	void limits_transfer_count_in_sliding_window() {
+		VelocityLimiter limiter = limiter(3, null, 100);
+		transfer(limiter, "Id-V1", "10");
+		clock.advance(Duration.ofMinutes(30));
+		transfer(limiter, "Id-V1", "10");
+		transfer(limiter, "Id-V1", "10");
+		try {
+			limiter.check("Id-V1", BigDecimal.ONE);
+			fail("Should have failed after the hourly count");
+		} catch (VelocityLimitExceededException vlee) {
+			assertThat(vlee.getRule()).isEqualTo("hourly");
+			assertThat(vlee.getMessage()).isEqualTo("Velocity limit hourly of 3 transfers exceeded for Account id Id-V1!!!");
+		}
+		limiter.check("Id-V2", BigDecimal.ONE);
+
+		// the first transfer leaves the window, the later two stay
+		clock.advance(Duration.ofMinutes(35));
+		transfer(limiter, "Id-V1", "10");
+		try {
+			limiter.check("Id-V1", BigDecimal.ONE);
+			fail("Should have failed with the two later transfers still in the window");
+		} catch (VelocityLimitExceededException vlee) {
+			assertThat(vlee.getRule()).isEqualTo("hourly");
+		}
+	}
+
+	/**
+	 * Test method which checks the amount limit in minor units.
+	 */
+	@Test
+	void limits_transferred_amount() {
+		VelocityLimiter limiter = limiter(0, "100.00", 100);
+		transfer(limiter, "Id-V1", "60.50");
+		transfer(limiter, "Id-V1", "39.50");
+		try {
+			limiter.check("Id-V1", new BigDecimal("0.01"));
+			fail("Should have failed after the hourly amount");
+		} catch (VelocityLimitExceededException vlee) {
+			assertThat(vlee.getMessage())
+					.isEqualTo("Velocity limit hourly of amount 100.00 exceeded for Account id Id-V1!!!");
+		}
+		try {
+			limiter.check("Id-V2", new BigDecimal("100.01"));
+			fail("Should have failed for a single transfer above the limit");
+		} catch (VelocityLimitExceededException vlee) {
+			assertThat(vlee.getRule()).isEqualTo("hourly");
+		}
+	}
+
+	/**
+	 * Test method which checks that a failed check records nothing.
+	 */
+	@Test
+	void check_does_not_count() {
+		VelocityLimiter limiter = limiter(1, null, 100);
+		limiter.check("Id-V1", BigDecimal.TEN);
+		limiter.check("Id-V1", BigDecimal.TEN);
+		assertThat(limiter.trackedAccounts()).isZero();
+		transfer(limiter, "Id-V1", "10");
+		assertThat(limiter.trackedAccounts()).isEqualTo(1);
+	}
+
+	/**
+	 * Test method which checks eviction of idle accounts and the account cap.
+	 */
+	@Test
+	void evicts_idle_accounts_and_caps_tracking() {
+		VelocityLimiter limiter = limiter(10, null, 2);
+		transfer(limiter, "Id-V1", "1");
+		transfer(limiter, "Id-V2", "1");
+		try {
+			limiter.check("Id-V3", BigDecimal.ONE);
+			fail("Should have failed with every tracked account active");
+		} catch (VelocityLimitExceededException vlee) {
+			assertThat(vlee.getRule()).isEqualTo("capacity");
+		}
+
+		clock.advance(Duration.ofMinutes(61));
+		limiter.check("Id-V3", BigDecimal.ONE);
+		assertThat(limiter.trackedAccounts()).isZero();
+	}
+
+	/**
+	 * Test method which checks that a released transfer no longer counts.
+	 */
+	@Test
+	void release_takes_back_recorded_transfer() {
+		VelocityLimiter limiter = limiter(2, "100", 100);
+		long recordedAt = clock.millis();
+		transfer(limiter, "Id-V1", "60");
+		clock.advance(Duration.ofMinutes(10));
+		transfer(limiter, "Id-V1", "40");
+
+		limiter.release("Id-V1", new BigDecimal("60"), recordedAt);
+		transfer(limiter, "Id-V1", "60");
+		try {
+			limiter.check("Id-V1", BigDecimal.ONE);
+			fail("Should have failed with two transfers in the window");
+		} catch (VelocityLimitExceededException vlee) {
+			assertThat(vlee.getRule()).isEqualTo("hourly");
+		}
+	}
+
+	/**
+	 * Test method which checks that transfers of new accounts at the cap do not
+	 * scan for idle accounts more often than the on-demand eviction interval.
+	 */
+	@Test
+	void rate_limits_on_demand_eviction() {
+		VelocityLimiter limiter = limiter(10, null, 1);
+		transfer(limiter, "Id-V1", "1");
+
+		// the last moment Id-V1 is in the window, the scan finds nothing to evict
+		clock.advance(Duration.ofHours(1).minusMillis(1));
+		try {
+			limiter.check("Id-V2", BigDecimal.ONE);
+			fail("Should have failed with the tracked account active");
+		} catch (VelocityLimitExceededException vlee) {
+			assertThat(vlee.getRule()).isEqualTo("capacity");
+		}
+
+		clock.advance(Duration.ofMillis(1));
+		try {
+			limiter.check("Id-V2", BigDecimal.ONE);
+			fail("Should have failed without a new scan");
+		} catch (VelocityLimitExceededException vlee) {
+			assertThat(vlee.getRule()).isEqualTo("capacity");
+		}
+		assertThat(limiter.trackedAccounts()).isEqualTo(1);
+
+		clock.advance(Duration.ofSeconds(1));
+		limiter.check("Id-V2", BigDecimal.ONE);
+		assertThat(limiter.trackedAccounts()).isZero();
+	}
+}